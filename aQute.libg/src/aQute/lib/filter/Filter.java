@@ -17,16 +17,234 @@ import java.math.*;
 import java.util.*;
 
 public class Filter {
-	final char			WILDCARD	= 65535;
+	final static char	WILDCARD	= 65535;
 
 	final static int	EQ			= 0;
 	final static int	LE			= 1;
 	final static int	GE			= 2;
 	final static int	APPROX		= 3;
 
-	String				filter;
+	/**
+	 * Compiled filters are interned by their filter string, the same filters
+	 * are used over and over again during a resolve.
+	 */
+	final static int				CACHE_SIZE	= 2000;
+	final static Map<String,Query>	cache		= Collections.synchronizedMap(new LinkedHashMap<String,Query>(
+														CACHE_SIZE, 0.75f, true) {
+													private static final long	serialVersionUID	= 1L;
+
+													@Override
+													protected boolean removeEldestEntry(Map.Entry<String,Query> eldest) {
+														return size() > CACHE_SIZE;
+													}
+												});
+
+	final static Set<Class< ? >>	NUMBERS		= new HashSet<Class< ? >>(Arrays.<Class< ? >> asList(Long.class,
+														Integer.class, Short.class, Byte.class, Double.class,
+														Float.class, BigInteger.class, BigDecimal.class));
+
+	String							filter;
+	final Query						query;
+
+	/**
+	 * The property lookup of the object that is matched
+	 */
+	interface Properties {
+		Object getProp(String key);
+	}
+
+	/**
+	 * A node in the compiled filter expression. Nodes are immutable and can be
+	 * shared between threads.
+	 */
+	static abstract class Query {
+		abstract boolean match(Properties properties);
+
+		String getError() {
+			return null;
+		}
+	}
+
+	static class And extends Query {
+		final Query[]	operands;
+
+		And(List<Query> operands) {
+			this.operands = operands.toArray(new Query[operands.size()]);
+		}
+
+		@Override
+		boolean match(Properties properties) {
+			for (Query q : operands)
+				if (!q.match(properties))
+					return false;
+			return true;
+		}
+	}
+
+	static class Or extends Query {
+		final Query[]	operands;
+
+		Or(List<Query> operands) {
+			this.operands = operands.toArray(new Query[operands.size()]);
+		}
+
+		@Override
+		boolean match(Properties properties) {
+			for (Query q : operands)
+				if (q.match(properties))
+					return true;
+			return false;
+		}
+	}
+
+	static class Not extends Query {
+		final Query	operand;
+
+		Not(Query operand) {
+			this.operand = operand;
+		}
+
+		@Override
+		boolean match(Properties properties) {
+			return !operand.match(properties);
+		}
+	}
+
+	/**
+	 * A filter that could not be parsed, it never matches.
+	 */
+	static class Invalid extends Query {
+		final String	error;
+
+		Invalid(String error) {
+			this.error = error;
+		}
+
+		@Override
+		boolean match(Properties properties) {
+			return false;
+		}
+
+		@Override
+		String getError() {
+			return error;
+		}
+	}
+
+	/**
+	 * The value converted to the type of a property, remembered for the last
+	 * type that was used. A null value means the conversion failed.
+	 */
+	static class Operand {
+		final Class< ? >	type;
+		final Object		value;
+
+		Operand(Class< ? > type, Object value) {
+			this.type = type;
+			this.value = value;
+		}
+	}
+
+	static class Simple extends Query {
+		final String		attr;
+		final int			op;
+		final String		value;
+		final String		approx;
+		final String[]		parts;
+		volatile Operand	operand;
+
+		Simple(String attr, int op, String value) {
+			this.attr = attr;
+			this.op = op;
+			this.value = value;
+			this.approx = op == APPROX ? fixupString(value) : null;
+			this.parts = op == EQ && value.indexOf(WILDCARD) >= 0 ? split(value) : null;
+		}
+
+		@Override
+		boolean match(Properties properties) {
+			return compare(properties.getProp(attr));
+		}
+
+		private boolean compare(Object obj) {
+			if (obj == null)
+				return false;
+			try {
+				Class< ? > numClass = obj.getClass();
+				if (numClass == String.class) {
+					return compareString((String) obj);
+				} else if (numClass == Character.class) {
+					return compareString(obj.toString());
+				} else if (obj instanceof Collection< ? >) {
+					for (Object x : (Collection< ? >) obj)
+						if (compare(x))
+							return true;
+					return false;
+				} else if (numClass.isArray()) {
+					int len = Array.getLength(obj);
+					for (int i = 0; i < len; i++)
+						if (compare(Array.get(obj, i)))
+							return true;
+					return false;
+				}
+
+				Object source = convert(numClass);
+				if (source == null)
+					return false;
+
+				if (numClass == Boolean.class) {
+					if (op != EQ)
+						return false;
+					return source.equals(obj);
+				}
+
+				if (op == EQ && !NUMBERS.contains(numClass))
+					return source.equals(obj);
 
-	abstract class Query {
+				@SuppressWarnings("unchecked")
+				Comparable<Object> a = (Comparable<Object>) source;
+				return compareSign(op, a.compareTo(obj));
+			}
+			catch (Exception e) {}
+			return false;
+		}
+
+		/**
+		 * Convert the value to the type of the property. The last conversion
+		 * is remembered since a filter is normally matched against properties
+		 * of the same type.
+		 */
+		private Object convert(Class< ? > type) {
+			Operand o = operand;
+			if (o == null || o.type != type) {
+				Object converted;
+				try {
+					if (type == Boolean.class)
+						converted = Boolean.valueOf(value);
+					else
+						converted = type.getConstructor(String.class).newInstance(value);
+				}
+				catch (Exception e) {
+					converted = null;
+				}
+				operand = o = new Operand(type, converted);
+			}
+			return o.value;
+		}
+
+		private boolean compareString(String s) {
+			switch (op) {
+				case EQ :
+					return parts == null ? value.equals(s) : patSubstr(s, parts);
+				case APPROX :
+					return approx.equals(fixupString(s));
+				default :
+					return compareSign(op, value.compareTo(s));
+			}
+		}
+	}
+
+	static class Parser {
 		static final String	GARBAGE		= "Trailing garbage";
 		static final String	MALFORMED	= "Malformed query";
 		static final String	EMPTY		= "Empty list";
@@ -35,20 +253,30 @@ public class Filter {
 		static final String	TRUNCATED	= "Truncated expression";
 		static final String	EQUALITY	= "Only equality supported";
 
-		private String		tail;
+		private final String	filter;
+		private String			tail;
 
-		boolean match() throws IllegalArgumentException {
-			tail = filter;
-			boolean val = doQuery();
-			if (tail.length() > 0)
-				error(GARBAGE);
-			return val;
+		Parser(String filter) {
+			this.filter = filter;
+		}
+
+		Query parse() {
+			try {
+				tail = filter;
+				Query val = doQuery();
+				if (tail.length() > 0)
+					error(GARBAGE);
+				return val;
+			}
+			catch (IllegalArgumentException e) {
+				return new Invalid(e.getMessage());
+			}
 		}
 
-		private boolean doQuery() throws IllegalArgumentException {
+		private Query doQuery() throws IllegalArgumentException {
 			if (tail.length() < 3 || !prefix("("))
 				error(MALFORMED);
-			boolean val;
+			Query val;
 
 			switch (tail.charAt(0)) {
 				case '&' :
@@ -70,40 +298,38 @@ public class Filter {
 			return val;
 		}
 
-		private boolean doAnd() throws IllegalArgumentException {
+		private Query doAnd() throws IllegalArgumentException {
 			tail = tail.substring(1);
-			boolean val = true;
 			if (!tail.startsWith("("))
 				error(EMPTY);
+			List<Query> operands = new ArrayList<Query>();
 			do {
-				if (!doQuery())
-					val = false;
+				operands.add(doQuery());
 			} while (tail.startsWith("("));
-			return val;
+			return new And(operands);
 		}
 
-		private boolean doOr() throws IllegalArgumentException {
+		private Query doOr() throws IllegalArgumentException {
 			tail = tail.substring(1);
-			boolean val = false;
 			if (!tail.startsWith("("))
 				error(EMPTY);
+			List<Query> operands = new ArrayList<Query>();
 			do {
-				if (doQuery())
-					val = true;
+				operands.add(doQuery());
 			} while (tail.startsWith("("));
-			return val;
+			return new Or(operands);
 		}
 
-		private boolean doNot() throws IllegalArgumentException {
+		private Query doNot() throws IllegalArgumentException {
 			tail = tail.substring(1);
 			if (!tail.startsWith("("))
 				error(SUBEXPR);
-			return !doQuery();
+			return new Not(doQuery());
 		}
 
-		private boolean doSimple() throws IllegalArgumentException {
+		private Query doSimple() throws IllegalArgumentException {
 			int op = 0;
-			Object attr = getAttr();
+			String attr = getAttr();
 
 			if (prefix("="))
 				op = EQ;
@@ -116,7 +342,7 @@ public class Filter {
 			else
 				error(OPERATOR);
 
-			return compare(attr, op, getValue());
+			return new Simple(attr, op, getValue());
 		}
 
 		private boolean prefix(String pre) {
@@ -126,7 +352,7 @@ public class Filter {
 			return true;
 		}
 
-		private Object getAttr() {
+		private String getAttr() {
 			int len = tail.length();
 			int ix = 0;
 			label: for (; ix < len; ix++) {
@@ -144,11 +370,9 @@ public class Filter {
 			}
 			String attr = tail.substring(0, ix).toLowerCase();
 			tail = tail.substring(ix);
-			return getProp(attr);
+			return attr;
 		}
 
-		abstract Object getProp(String key);
-
 		private String getValue() {
 			StringBuilder sb = new StringBuilder();
 			int len = tail.length();
@@ -179,85 +403,28 @@ public class Filter {
 		private void error(String m) throws IllegalArgumentException {
 			throw new IllegalArgumentException(m + " " + tail);
 		}
-
-		@SuppressWarnings("unchecked")
-		private <T> boolean compare(T obj, int op, String s) {
-			if (obj == null)
-				return false;
-			try {
-				Class< T > numClass = (Class<T>) obj.getClass();
-				if (numClass == String.class) {
-					return compareString((String) obj, op, s);
-				} else if (numClass == Character.class) {
-					return compareString(obj.toString(), op, s);
-				} else if (numClass == Long.class) {
-					return compareSign(op, Long.valueOf(s).compareTo((Long) obj));
-				} else if (numClass == Integer.class) {
-					return compareSign(op, Integer.valueOf(s).compareTo((Integer) obj));
-				} else if (numClass == Short.class) {
-					return compareSign(op, Short.valueOf(s).compareTo((Short) obj));
-				} else if (numClass == Byte.class) {
-					return compareSign(op, Byte.valueOf(s).compareTo((Byte) obj));
-				} else if (numClass == Double.class) {
-					return compareSign(op, Double.valueOf(s).compareTo((Double) obj));
-				} else if (numClass == Float.class) {
-					return compareSign(op, Float.valueOf(s).compareTo((Float) obj));
-				} else if (numClass == Boolean.class) {
-					if (op != EQ)
-						return false;
-					int a = Boolean.valueOf(s).booleanValue() ? 1 : 0;
-					int b = ((Boolean) obj).booleanValue() ? 1 : 0;
-					return compareSign(op, a - b);
-				} else if (numClass == BigInteger.class) {
-					return compareSign(op, new BigInteger(s).compareTo((BigInteger) obj));
-				} else if (numClass == BigDecimal.class) {
-					return compareSign(op, new BigDecimal(s).compareTo((BigDecimal) obj));
-				} else if (obj instanceof Collection< ? >) {
-					for (Object x : (Collection< ? >) obj)
-						if (compare(x, op, s))
-							return true;
-				} else if (numClass.isArray()) {
-					int len = Array.getLength(obj);
-					for (int i = 0; i < len; i++)
-						if (compare(Array.get(obj, i), op, s))
-							return true;
-				} else {
-					Constructor< T > constructor = numClass.getConstructor(String.class);
-					T source = constructor.newInstance(s);
-					if ( op == EQ )
-						return source.equals(obj);
-					Comparable<T> a = Comparable.class.cast(source);
-					Comparable<T> b = Comparable.class.cast(obj);
-						return compareSign(op,a.compareTo((T)b));
-				}
-			}
-			catch (Exception e) {}
-			return false;
-		}
 	}
 
-	class DictQuery extends Query {
+	static class DictQuery implements Properties {
 		private Dictionary< ? , ? >	dict;
 
 		DictQuery(Dictionary< ? , ? > dict) {
 			this.dict = dict;
 		}
 
-		@Override
-		Object getProp(String key) {
+		public Object getProp(String key) {
 			return dict.get(key);
 		}
 	}
 
-	class MapQuery extends Query {
+	static class MapQuery implements Properties {
 		private Map< ? , ? >	map;
 
 		MapQuery(Map< ? , ? > dict) {
 			this.map = dict;
 		}
 
-		@Override
-		Object getProp(String key) {
+		public Object getProp(String key) {
 			return map.get(key);
 		}
 	}
@@ -267,36 +434,26 @@ public class Filter {
 		this.filter = filter;
 		if (filter == null || filter.length() == 0)
 			throw new IllegalArgumentException("Null query");
+
+		Query q = cache.get(filter);
+		if (q == null) {
+			q = new Parser(filter).parse();
+			cache.put(filter, q);
+		}
+		this.query = q;
 	}
 
 	public boolean match(Dictionary< ? , ? > dict) {
-		try {
-			return new DictQuery(dict).match();
-		}
-		catch (IllegalArgumentException e) {
-			return false;
-		}
+		return query.match(new DictQuery(dict));
 	}
 
 	public boolean matchMap(Map< ? , ? > dict) {
-		try {
-			return new MapQuery(dict).match();
-		}
-		catch (IllegalArgumentException e) {
-			return false;
-		}
+		return query.match(new MapQuery(dict));
 	}
 
 	public String verify() {
-		try {
-			new DictQuery(new Hashtable<Object,Object>()).match();
-		}
-		catch (IllegalArgumentException e) {
-			return e.getMessage();
-		}
-		return null;
+		return query.getError();
 	}
-
 	@Override
 	public String toString() {
 		return filter;
@@ -312,18 +469,7 @@ public class Filter {
 		return filter.hashCode();
 	}
 
-	boolean compareString(String s1, int op, String s2) {
-		switch (op) {
-			case EQ :
-				return patSubstr(s1, s2);
-			case APPROX :
-				return fixupString(s2).equals(fixupString(s1));
-			default :
-				return compareSign(op, s2.compareTo(s1));
-		}
-	}
-
-	boolean compareSign(int op, int cmp) {
+	static boolean compareSign(int op, int cmp) {
 		switch (op) {
 			case LE :
 				return cmp >= 0;
@@ -336,7 +482,7 @@ public class Filter {
 		}
 	}
 
-	String fixupString(String s) {
+	static String fixupString(String s) {
 		StringBuilder sb = new StringBuilder();
 		int len = s.length();
 		boolean isStart = true;
@@ -358,23 +504,41 @@ public class Filter {
 		return sb.toString();
 	}
 
-	boolean patSubstr(String s, String pat) {
-		if (s == null)
-			return false;
-		if (pat.length() == 0)
-			return s.length() == 0;
-		if (pat.charAt(0) == WILDCARD) {
-			pat = pat.substring(1);
-			for (;;) {
-				if (patSubstr(s, pat))
-					return true;
-				if (s.length() == 0)
-					return false;
-				s = s.substring(1);
-			}
+	/**
+	 * Split a value on the wildcards. The result always has one more element
+	 * than there are wildcards.
+	 */
+	static String[] split(String value) {
+		List<String> parts = new ArrayList<String>();
+		int start = 0;
+		int n;
+		while ((n = value.indexOf(WILDCARD, start)) >= 0) {
+			parts.add(value.substring(start, n));
+			start = n + 1;
 		}
-		if (s.length() == 0 || s.charAt(0) != pat.charAt(0))
+		parts.add(value.substring(start));
+		return parts.toArray(new String[parts.size()]);
+	}
+
+	/**
+	 * Match a string against a value split on its wildcards. The first part
+	 * must be a prefix, the last part a suffix, and the parts in between must
+	 * appear in order.
+	 */
+	static boolean patSubstr(String s, String[] parts) {
+		String first = parts[0];
+		String last = parts[parts.length - 1];
+		int end = s.length() - last.length();
+		if (end < first.length() || !s.startsWith(first) || !s.startsWith(last, end))
 			return false;
-		return patSubstr(s.substring(1), pat.substring(1));
+
+		int pos = first.length();
+		for (int i = 1; i < parts.length - 1; i++) {
+			int n = s.indexOf(parts[i], pos);
+			if (n < 0 || n + parts[i].length() > end)
+				return false;
+			pos = n + parts[i].length();
+		}
+		return true;
 	}
 }
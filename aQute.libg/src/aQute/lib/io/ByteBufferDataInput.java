@@ -0,0 +1,199 @@
+package aQute.lib.io;
+
+import java.io.*;
+import java.nio.*;
+
+/**
+ * A DataInput that reads directly from a ByteBuffer. Unlike a DataInputStream
+ * this does not copy the data through a stream and it can hand out slices of
+ * the underlying buffer without copying them.
+ */
+public class ByteBufferDataInput implements DataInput {
+	final ByteBuffer	bb;
+
+	public ByteBufferDataInput(ByteBuffer bb) {
+		this.bb = bb.duplicate();
+		this.bb.order(ByteOrder.BIG_ENDIAN);
+	}
+
+	public ByteBufferDataInput(byte[] data) {
+		this(ByteBuffer.wrap(data));
+	}
+
+	/**
+	 * Answer a buffer for the next length bytes and skip them. The returned
+	 * buffer shares the content with this input.
+	 */
+	public ByteBuffer slice(int length) throws IOException {
+		check(length);
+		ByteBuffer slice = bb.slice();
+		slice.limit(length);
+		slice.order(ByteOrder.BIG_ENDIAN);
+		bb.position(bb.position() + length);
+		return slice;
+	}
+
+	public int position() {
+		return bb.position();
+	}
+
+	public void readFully(byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		check(len);
+		bb.get(b, off, len);
+	}
+
+	public int skipBytes(int n) {
+		int skip = Math.min(n, bb.remaining());
+		bb.position(bb.position() + skip);
+		return skip;
+	}
+
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	public byte readByte() throws IOException {
+		check(1);
+		return bb.get();
+	}
+
+	public int readUnsignedByte() throws IOException {
+		return readByte() & 0xFF;
+	}
+
+	public short readShort() throws IOException {
+		check(2);
+		return bb.getShort();
+	}
+
+	public int readUnsignedShort() throws IOException {
+		return readShort() & 0xFFFF;
+	}
+
+	public char readChar() throws IOException {
+		check(2);
+		return bb.getChar();
+	}
+
+	public int readInt() throws IOException {
+		check(4);
+		return bb.getInt();
+	}
+
+	public long readLong() throws IOException {
+		check(8);
+		return bb.getLong();
+	}
+
+	public float readFloat() throws IOException {
+		check(4);
+		return bb.getFloat();
+	}
+
+	public double readDouble() throws IOException {
+		check(8);
+		return bb.getDouble();
+	}
+
+	/**
+	 * Read a line like {@link DataInputStream#readLine()}, each byte is a
+	 * character and the line ends with a line feed, a carriage return or both.
+	 * 
+	 * @deprecated does not convert bytes to characters properly, like
+	 *             {@link DataInputStream#readLine()}
+	 */
+	@Deprecated
+	public String readLine() throws IOException {
+		if (!bb.hasRemaining())
+			return null;
+
+		StringBuilder sb = new StringBuilder();
+		while (bb.hasRemaining()) {
+			int c = bb.get() & 0xFF;
+			if (c == '\n')
+				break;
+			if (c == '\r') {
+				if (bb.hasRemaining() && bb.get(bb.position()) == '\n')
+					bb.get();
+				break;
+			}
+			sb.append((char) c);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Decode a modified UTF-8 string as written by
+	 * {@link DataOutput#writeUTF(String)}. The characters are decoded straight
+	 * from the buffer, ASCII, which is by far the most common, takes a fast
+	 * path.
+	 */
+	public String readUTF() throws IOException {
+		int length = readUnsignedShort();
+		check(length);
+		char[] chars = new char[length];
+		int end = bb.position() + length;
+		int n = 0;
+		int i = bb.position();
+
+		while (i < end) {
+			int c = bb.get(i) & 0xFF;
+			if (c >= 0x80)
+				break;
+			chars[n++] = (char) c;
+			i++;
+		}
+
+		while (i < end) {
+			int c = bb.get(i++) & 0xFF;
+			switch (c >> 4) {
+				case 0 :
+				case 1 :
+				case 2 :
+				case 3 :
+				case 4 :
+				case 5 :
+				case 6 :
+				case 7 :
+					chars[n++] = (char) c;
+					break;
+
+				case 12 :
+				case 13 : {
+					if (i + 1 > end)
+						throw new UTFDataFormatException("Partial character at end");
+					int c2 = bb.get(i++);
+					if ((c2 & 0xC0) != 0x80)
+						throw new UTFDataFormatException("Malformed input around byte " + i);
+					chars[n++] = (char) (((c & 0x1F) << 6) | (c2 & 0x3F));
+					break;
+				}
+
+				case 14 : {
+					if (i + 2 > end)
+						throw new UTFDataFormatException("Partial character at end");
+					int c2 = bb.get(i++);
+					int c3 = bb.get(i++);
+					if (((c2 & 0xC0) != 0x80) || ((c3 & 0xC0) != 0x80))
+						throw new UTFDataFormatException("Malformed input around byte " + (i - 1));
+					chars[n++] = (char) (((c & 0x0F) << 12) | ((c2 & 0x3F) << 6) | (c3 & 0x3F));
+					break;
+				}
+
+				default :
+					throw new UTFDataFormatException("Malformed input around byte " + i);
+			}
+		}
+		bb.position(end);
+		return new String(chars, 0, n);
+	}
+
+	private void check(int n) throws EOFException {
+		if (bb.remaining() < n)
+			throw new EOFException();
+	}
+}
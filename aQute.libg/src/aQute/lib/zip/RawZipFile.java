@@ -0,0 +1,165 @@
+package aQute.lib.zip;
+
+import java.io.*;
+import java.util.*;
+
+import aQute.lib.io.*;
+
+/**
+ * Gives access to the compressed data of the entries of a zip file. The
+ * central directory of the file is read the first time an entry is requested.
+ * Only plain entries are available: encrypted entries, entries with a method
+ * other than stored or deflated and zip64 archives are treated as not present
+ * so the caller falls back to the normal inflated content.
+ */
+public class RawZipFile {
+	final static int	CENSIG		= 0x02014b50;
+	final static int	ENDSIG		= 0x06054b50;
+	final static int	LOCSIG		= 0x04034b50;
+	final static int	ENDHDR		= 22;
+	final static int	CENHDR		= 46;
+	final static int	LOCHDR		= 30;
+
+	final File			file;
+	Map<String,Entry>	entries;
+
+	/**
+	 * An entry with its compressed data
+	 */
+	public static class Entry {
+		public final int	method;
+		public final long	crc;
+		public final long	compressedSize;
+		public final long	size;
+		final long			offset;
+
+		Entry(int method, long crc, long compressedSize, long size, long offset) {
+			this.method = method;
+			this.crc = crc;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.offset = offset;
+		}
+	}
+
+	public RawZipFile(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Answer the entry with the given name or null if the entry is not
+	 * present or its compressed data cannot be used as is.
+	 */
+	public synchronized Entry getEntry(String name) {
+		if (entries == null) {
+			try {
+				entries = readCentralDirectory();
+			}
+			catch (IOException e) {
+				entries = Collections.emptyMap();
+			}
+		}
+		return entries.get(name);
+	}
+
+	/**
+	 * Open the compressed data of an entry.
+	 */
+	public InputStream openRaw(Entry entry) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			byte[] header = new byte[LOCHDR];
+			in.getChannel().position(entry.offset);
+			readFully(in, header);
+			if (getInt(header, 0) != LOCSIG)
+				throw new IOException("Invalid local header in " + file);
+
+			long start = entry.offset + LOCHDR + getShort(header, 26) + getShort(header, 28);
+			in.getChannel().position(start);
+			return new LimitedInputStream(in, (int) entry.compressedSize);
+		}
+		catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	private Map<String,Entry> readCentralDirectory() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			long length = raf.length();
+			int tail = (int) Math.min(length, ENDHDR + 0xFFFF);
+			byte[] buffer = new byte[tail];
+			raf.seek(length - tail);
+			raf.readFully(buffer);
+
+			int end = -1;
+			for (int i = tail - ENDHDR; i >= 0; i--) {
+				if (getInt(buffer, i) == ENDSIG) {
+					end = i;
+					break;
+				}
+			}
+			if (end < 0)
+				throw new IOException("No end of central directory in " + file);
+
+			int count = getShort(buffer, end + 10);
+			long size = getInt(buffer, end + 12);
+			long offset = getInt(buffer, end + 16);
+			if (count == 0xFFFF || size == 0xFFFFFFFFL || offset == 0xFFFFFFFFL)
+				return Collections.emptyMap(); // zip64
+
+			byte[] cen = new byte[(int) size];
+			raf.seek(offset);
+			raf.readFully(cen);
+
+			Map<String,Entry> result = new HashMap<String,Entry>();
+			int n = 0;
+			for (int i = 0; i < count; i++) {
+				if (getInt(cen, n) != CENSIG)
+					throw new IOException("Invalid central directory in " + file);
+
+				int flags = getShort(cen, n + 8);
+				int method = getShort(cen, n + 10);
+				long crc = getInt(cen, n + 16);
+				long compressedSize = getInt(cen, n + 20);
+				long uncompressedSize = getInt(cen, n + 24);
+				int nameLength = getShort(cen, n + 28);
+				int extraLength = getShort(cen, n + 30);
+				int commentLength = getShort(cen, n + 32);
+				long local = getInt(cen, n + 42);
+				String name = new String(cen, n + CENHDR, nameLength, "UTF-8");
+
+				boolean usable = (flags & 1) == 0 && (method == 0 || method == 8)
+						&& compressedSize <= Integer.MAX_VALUE && uncompressedSize != 0xFFFFFFFFL
+						&& local != 0xFFFFFFFFL;
+				if (usable)
+					result.put(name, new Entry(method, crc, compressedSize, uncompressedSize, local));
+
+				n += CENHDR + nameLength + extraLength + commentLength;
+			}
+			return result;
+		}
+		finally {
+			raf.close();
+		}
+	}
+
+	private static void readFully(InputStream in, byte[] b) throws IOException {
+		int n = 0;
+		while (n < b.length) {
+			int r = in.read(b, n, b.length - n);
+			if (r < 0)
+				throw new EOFException();
+			n += r;
+		}
+	}
+
+	static int getShort(byte[] b, int n) {
+		return (b[n] & 0xFF) | (b[n + 1] & 0xFF) << 8;
+	}
+
+	static long getInt(byte[] b, int n) {
+		return (getShort(b, n) | (long) getShort(b, n + 2) << 16) & 0xFFFFFFFFL;
+	}
+}
@@ -0,0 +1,412 @@
+package aQute.lib.zip;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * A zip output stream that can also copy entries that are already compressed,
+ * for example entries of another zip file, without inflating and deflating
+ * them again. See {@link #putRawEntry(ZipEntry, int, long, long, long, InputStream)}.
+ * <p>
+ * Normal entries are written like {@link ZipOutputStream} writes them. The
+ * {@link ZipOutputStream} cannot be given compressed data so this class writes
+ * the zip format itself, it only uses the deflater of its super class. Like
+ * {@link ZipOutputStream}, the zip64 extensions are only written for the
+ * sizes, offsets and entry counts that do not fit the normal fields.
+ */
+public class RawZipOutputStream extends ZipOutputStream {
+	final static int	LOCSIG				= 0x04034b50;
+	final static int	EXTSIG				= 0x08074b50;
+	final static int	CENSIG				= 0x02014b50;
+	final static int	ENDSIG				= 0x06054b50;
+	final static int	ZIP64_ENDSIG		= 0x06064b50;
+	final static int	ZIP64_LOCSIG		= 0x07064b50;
+	final static int	ZIP64_EXTID			= 0x0001;
+	final static long	ZIP64_MAGICVAL		= 0xFFFFFFFFL;
+	final static int	ZIP64_MAGICCOUNT	= 0xFFFF;
+	final static int	JAR_MAGIC			= 0xCAFE;
+
+	final static int	FLAG_DATADESCR	= 0x08;
+	final static int	FLAG_UTF8		= 0x800;
+
+	static class Entry {
+		byte[]	name;
+		byte[]	extra;
+		int		flags;
+		int		method;
+		long	time;
+		long	crc;
+		long	compressedSize;
+		long	size;
+		long	offset;
+	}
+
+	final Counter		counter;
+	final List<Entry>	entries		= new ArrayList<Entry>();
+	final CRC32			crc			= new CRC32();
+	final byte[]		buffer		= new byte[8192];
+	final boolean		jar;
+	Entry				current;
+	int					method		= DEFLATED;
+	long				written;
+	byte[]				comment;
+	boolean				finished;
+
+	/**
+	 * Counts the bytes written to the underlying stream
+	 */
+	static class Counter extends FilterOutputStream {
+		long	count;
+
+		Counter(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+
+	public RawZipOutputStream(OutputStream out) {
+		this(out, false);
+	}
+
+	/**
+	 * @param jar
+	 *            mark the archive as a jar like {@link java.util.jar.JarOutputStream}
+	 *            does
+	 */
+	public RawZipOutputStream(OutputStream out, boolean jar) {
+		super(new Counter(out));
+		this.counter = (Counter) this.out;
+		this.jar = jar;
+	}
+
+	@Override
+	public void setMethod(int method) {
+		if (method != DEFLATED && method != STORED)
+			throw new IllegalArgumentException("invalid compression method");
+		this.method = method;
+	}
+
+	@Override
+	public void setComment(String comment) {
+		try {
+			this.comment = comment == null ? null : comment.getBytes("UTF-8");
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void putNextEntry(ZipEntry ze) throws IOException {
+		Entry e = start(ze, ze.getMethod() == -1 ? method : ze.getMethod());
+		if (e.method == STORED) {
+			if (ze.getSize() == -1 || ze.getCrc() == -1)
+				throw new ZipException("STORED entry missing size, compressed size, or crc-32");
+			e.size = e.compressedSize = ze.getSize();
+			e.crc = ze.getCrc();
+		} else
+			e.flags |= FLAG_DATADESCR;
+
+		writeLocalHeader(e);
+		current = e;
+		written = 0;
+		crc.reset();
+		def.reset();
+	}
+
+	/**
+	 * Write an entry with data that is already compressed with the given
+	 * method. The name, time and extra field are taken from the given entry,
+	 * the crc and sizes must be those of the compressed data.
+	 */
+	public void putRawEntry(ZipEntry ze, int method, long crc, long compressedSize, long size, InputStream data)
+			throws IOException {
+		Entry e = start(ze, method);
+		e.crc = crc;
+		e.compressedSize = compressedSize;
+		e.size = size;
+		writeLocalHeader(e);
+
+		long left = compressedSize;
+		while (left > 0) {
+			int n = data.read(buffer, 0, (int) Math.min(buffer.length, left));
+			if (n < 0)
+				throw new EOFException("Compressed data of " + ze.getName() + " is too short");
+			counter.write(buffer, 0, n);
+			left -= n;
+		}
+		entries.add(e);
+	}
+
+	private Entry start(ZipEntry ze, int method) throws IOException {
+		if (finished)
+			throw new IOException("Stream is finished");
+		if (current != null)
+			closeEntry();
+
+		Entry e = new Entry();
+		String name = ze.getName();
+		e.name = name.getBytes("UTF-8");
+		e.flags = FLAG_UTF8;
+		e.method = method;
+		e.time = ze.getTime() == -1 ? System.currentTimeMillis() : ze.getTime();
+		e.extra = ze.getExtra();
+		if (jar && entries.isEmpty())
+			e.extra = addJarMagic(e.extra);
+		e.offset = counter.count;
+		return e;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (current == null)
+			throw new ZipException("no current ZIP entry");
+
+		crc.update(b, off, len);
+		written += len;
+		if (current.method == STORED) {
+			counter.write(b, off, len);
+		} else {
+			def.setInput(b, off, len);
+			while (!def.needsInput())
+				deflate();
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] {
+			(byte) b
+		}, 0, 1);
+	}
+
+	@Override
+	public void closeEntry() throws IOException {
+		Entry e = current;
+		if (e == null)
+			return;
+		current = null;
+
+		if (e.method == STORED) {
+			if (written != e.size)
+				throw new ZipException("invalid entry size (expected " + e.size + " but got " + written + " bytes)");
+			if (crc.getValue() != e.crc)
+				throw new ZipException("invalid entry crc-32 (expected 0x" + Long.toHexString(e.crc) + " but got 0x"
+						+ Long.toHexString(crc.getValue()) + ")");
+		} else {
+			def.finish();
+			while (!def.finished())
+				deflate();
+			e.crc = crc.getValue();
+			e.compressedSize = def.getBytesWritten();
+			e.size = def.getBytesRead();
+
+			writeInt(EXTSIG);
+			writeInt(e.crc);
+			if (e.compressedSize >= ZIP64_MAGICVAL || e.size >= ZIP64_MAGICVAL) {
+				writeLong(e.compressedSize);
+				writeLong(e.size);
+			} else {
+				writeInt(e.compressedSize);
+				writeInt(e.size);
+			}
+		}
+		entries.add(e);
+	}
+
+	@Override
+	protected void deflate() throws IOException {
+		int n = def.deflate(buffer, 0, buffer.length);
+		if (n > 0)
+			counter.write(buffer, 0, n);
+	}
+
+	@Override
+	public void finish() throws IOException {
+		if (finished)
+			return;
+		closeEntry();
+
+		long start = counter.count;
+		for (Entry e : entries)
+			writeCentralHeader(e);
+		long size = counter.count - start;
+
+		int count = Math.min(entries.size(), ZIP64_MAGICCOUNT);
+		if (size >= ZIP64_MAGICVAL || start >= ZIP64_MAGICVAL || count == ZIP64_MAGICCOUNT) {
+			long end64 = counter.count;
+			writeInt(ZIP64_ENDSIG);
+			writeLong(44);
+			writeShort(45);
+			writeShort(45);
+			writeInt(0);
+			writeInt(0);
+			writeLong(entries.size());
+			writeLong(entries.size());
+			writeLong(size);
+			writeLong(start);
+
+			writeInt(ZIP64_LOCSIG);
+			writeInt(0);
+			writeLong(end64);
+			writeInt(1);
+		}
+
+		writeInt(ENDSIG);
+		writeShort(0);
+		writeShort(0);
+		writeShort(count);
+		writeShort(count);
+		writeInt(Math.min(size, ZIP64_MAGICVAL));
+		writeInt(Math.min(start, ZIP64_MAGICVAL));
+		if (comment == null)
+			writeShort(0);
+		else {
+			writeShort(comment.length);
+			counter.write(comment, 0, comment.length);
+		}
+		counter.flush();
+		finished = true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			finish();
+		}
+		finally {
+			def.end();
+			counter.close();
+		}
+	}
+
+	private void writeLocalHeader(Entry e) throws IOException {
+		boolean descriptor = (e.flags & FLAG_DATADESCR) != 0;
+		boolean zip64 = !descriptor && (e.compressedSize >= ZIP64_MAGICVAL || e.size >= ZIP64_MAGICVAL);
+		int extraLength = (e.extra == null ? 0 : e.extra.length) + (zip64 ? 20 : 0);
+		writeInt(LOCSIG);
+		writeShort(zip64 ? 45 : e.method == STORED ? 10 : 20);
+		writeShort(e.flags);
+		writeShort(e.method);
+		writeInt(toDosTime(e.time));
+		writeInt(descriptor ? 0 : e.crc);
+		writeInt(descriptor ? 0 : zip64 ? ZIP64_MAGICVAL : e.compressedSize);
+		writeInt(descriptor ? 0 : zip64 ? ZIP64_MAGICVAL : e.size);
+		writeShort(e.name.length);
+		writeShort(checkExtra(extraLength));
+		counter.write(e.name, 0, e.name.length);
+		if (zip64) {
+			writeShort(ZIP64_EXTID);
+			writeShort(16);
+			writeLong(e.size);
+			writeLong(e.compressedSize);
+		}
+		if (e.extra != null)
+			counter.write(e.extra, 0, e.extra.length);
+	}
+
+	private void writeCentralHeader(Entry e) throws IOException {
+		int zip64 = 0;
+		if (e.size >= ZIP64_MAGICVAL)
+			zip64 += 8;
+		if (e.compressedSize >= ZIP64_MAGICVAL)
+			zip64 += 8;
+		if (e.offset >= ZIP64_MAGICVAL)
+			zip64 += 8;
+		int extraLength = (e.extra == null ? 0 : e.extra.length) + (zip64 == 0 ? 0 : 4 + zip64);
+		int version = zip64 != 0 ? 45 : e.method == STORED ? 10 : 20;
+
+		writeInt(CENSIG);
+		writeShort(version);
+		writeShort(version);
+		writeShort(e.flags);
+		writeShort(e.method);
+		writeInt(toDosTime(e.time));
+		writeInt(e.crc);
+		writeInt(Math.min(e.compressedSize, ZIP64_MAGICVAL));
+		writeInt(Math.min(e.size, ZIP64_MAGICVAL));
+		writeShort(e.name.length);
+		writeShort(checkExtra(extraLength));
+		writeShort(0); // comment
+		writeShort(0); // disk
+		writeShort(0); // internal attributes
+		writeInt(0); // external attributes
+		writeInt(Math.min(e.offset, ZIP64_MAGICVAL));
+		counter.write(e.name, 0, e.name.length);
+		if (zip64 != 0) {
+			writeShort(ZIP64_EXTID);
+			writeShort(zip64);
+			if (e.size >= ZIP64_MAGICVAL)
+				writeLong(e.size);
+			if (e.compressedSize >= ZIP64_MAGICVAL)
+				writeLong(e.compressedSize);
+			if (e.offset >= ZIP64_MAGICVAL)
+				writeLong(e.offset);
+		}
+		if (e.extra != null)
+			counter.write(e.extra, 0, e.extra.length);
+	}
+
+	private static byte[] addJarMagic(byte[] extra) {
+		if (extra != null) {
+			for (int n = 0; n + 4 <= extra.length; n += 4 + RawZipFile.getShort(extra, n + 2)) {
+				if (RawZipFile.getShort(extra, n) == JAR_MAGIC)
+					return extra;
+			}
+		}
+		int length = extra == null ? 0 : extra.length;
+		byte[] result = new byte[length + 4];
+		result[0] = (byte) JAR_MAGIC;
+		result[1] = (byte) (JAR_MAGIC >> 8);
+		if (extra != null)
+			System.arraycopy(extra, 0, result, 4, length);
+		return result;
+	}
+
+	private static int checkExtra(int length) throws ZipException {
+		if (length > 0xFFFF)
+			throw new ZipException("Extra field too long: " + length);
+		return length;
+	}
+
+	/**
+	 * Convert a time to the MS-DOS date and time format in the local time
+	 * zone, as {@link ZipEntry} does.
+	 */
+	static long toDosTime(long time) {
+		Calendar c = Calendar.getInstance();
+		c.setTimeInMillis(time);
+		int year = c.get(Calendar.YEAR);
+		if (year < 1980)
+			return (1 << 21) | (1 << 16);
+		return (long) (year - 1980) << 25 | (c.get(Calendar.MONTH) + 1) << 21 | c.get(Calendar.DAY_OF_MONTH) << 16
+				| c.get(Calendar.HOUR_OF_DAY) << 11 | c.get(Calendar.MINUTE) << 5 | c.get(Calendar.SECOND) >> 1;
+	}
+
+	private void writeShort(int v) throws IOException {
+		counter.write(v & 0xFF);
+		counter.write((v >>> 8) & 0xFF);
+	}
+
+	private void writeInt(long v) throws IOException {
+		writeShort((int) (v & 0xFFFF));
+		writeShort((int) ((v >>> 16) & 0xFFFF));
+	}
+
+	private void writeLong(long v) throws IOException {
+		writeInt(v & 0xFFFFFFFFL);
+		writeInt(v >>> 32);
+	}
+}
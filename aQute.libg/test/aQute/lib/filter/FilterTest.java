@@ -1,5 +1,9 @@
 package aQute.lib.filter;
 
+import java.io.*;
+import java.math.*;
+import java.util.*;
+
 import junit.framework.*;
 
 public class FilterTest extends TestCase {
@@ -18,6 +22,51 @@ public class FilterTest extends TestCase {
 		verify("(willResolve=false)");
 	}
 
+	public void testWildcards() {
+		Map<String,Object> map = new HashMap<String,Object>();
+		map.put("a", "xaybz");
+		assertTrue(new Filter("(a=*)").matchMap(map));
+		assertTrue(new Filter("(a=x*)").matchMap(map));
+		assertTrue(new Filter("(a=*z)").matchMap(map));
+		assertTrue(new Filter("(a=x*y*z)").matchMap(map));
+		assertTrue(new Filter("(a=*a*b*)").matchMap(map));
+		assertFalse(new Filter("(a=*b*a*)").matchMap(map));
+		assertFalse(new Filter("(a=xay)").matchMap(map));
+		assertFalse(new Filter("(a=xa*ay*)").matchMap(map));
+		assertFalse(new Filter("(a=x\\*)").matchMap(map));
+	}
+
+	public void testTypes() {
+		Map<String,Object> map = new HashMap<String,Object>();
+		map.put("osgi.wiring.package", "org.osgi.framework");
+		map.put("version", new BigDecimal("1.7"));
+		map.put("file", new File("b"));
+		map.put("long", 5L);
+		map.put("list", Arrays.asList("a", "b"));
+
+		Filter filter = new Filter("(&(osgi.wiring.package=org.osgi.framework)(version>=1.5)(!(version>=2.0)))");
+		for (int i = 0; i < 3; i++)
+			assertTrue(filter.matchMap(map));
+
+		map.put("version", new BigDecimal("2.00"));
+		assertFalse(filter.matchMap(map));
+		map.put("version", "2.0");
+		assertFalse(filter.matchMap(map));
+
+		assertTrue(new Filter("(&(file>=a)(file<=c)(file=b))").matchMap(map));
+		assertFalse(new Filter("(file=c)").matchMap(map));
+
+		assertTrue(new Filter("(LONG>=4)").matchMap(map));
+		assertFalse(new Filter("(long<=4)").matchMap(map));
+		assertTrue(new Filter("(list=b)").match(new Hashtable<String,Object>(map)));
+	}
+
+	public void testInvalid() {
+		assertNotNull(new Filter("(a=b))").verify());
+		assertNotNull(new Filter("(&)").verify());
+		assertFalse(new Filter("(a=b))").matchMap(Collections.singletonMap("a", "b")));
+	}
+
 	private void verify(String string) {
 		assertNull("Invalid filter", new Filter(string).verify());
 		
@@ -0,0 +1,87 @@
+package aQute.lib.io;
+
+import java.io.*;
+import java.nio.*;
+
+import junit.framework.*;
+
+public class ByteBufferDataInputTest extends TestCase {
+
+	public static void testPrimitives() throws Exception {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bout);
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0xFFFE);
+		out.writeByte(7);
+		out.writeLong(Long.MIN_VALUE);
+		out.writeDouble(Math.PI);
+		out.writeFloat(1.5f);
+		out.close();
+
+		ByteBufferDataInput in = new ByteBufferDataInput(bout.toByteArray());
+		assertEquals(0xCAFEBABE, in.readInt());
+		assertEquals(0xFFFE, in.readUnsignedShort());
+		assertEquals(7, in.readByte());
+		assertEquals(Long.MIN_VALUE, in.readLong());
+		assertEquals(Math.PI, in.readDouble());
+		assertEquals(1.5f, in.readFloat());
+		try {
+			in.readByte();
+			fail("Expected EOF");
+		}
+		catch (EOFException e) {
+			// expected
+		}
+	}
+
+	public static void testUTF() throws Exception {
+		String[] strings = {
+				"", "java/lang/Object", "caf\u00e9", "\u0000", "\u20ac uro", "\ud83d\ude00 surrogates"
+		};
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bout);
+		for (String s : strings)
+			out.writeUTF(s);
+		out.close();
+
+		ByteBufferDataInput in = new ByteBufferDataInput(bout.toByteArray());
+		for (String s : strings)
+			assertEquals(s, in.readUTF());
+	}
+
+	public static void testSlice() throws Exception {
+		ByteBufferDataInput in = new ByteBufferDataInput(new byte[] {
+				1, 2, 3, 4, 5
+		});
+		assertEquals(1, in.readByte());
+		ByteBuffer slice = in.slice(3);
+		assertEquals(3, slice.remaining());
+		assertEquals(2, slice.get());
+		assertEquals(5, in.readByte());
+		assertEquals(5, in.position());
+	}
+
+	/**
+	 * Lines must be read like a DataInputStream reads them
+	 */
+	@SuppressWarnings("deprecation")
+	public static void testReadLine() throws Exception {
+		String[] inputs = {
+				"", "one", "one\ntwo\n", "one\rtwo\r\nthree\n\rfour", "\n\n\r\r\n", "caf\u00e9\u00ff\r"
+		};
+		for (String input : inputs) {
+			byte[] data = input.getBytes("ISO-8859-1");
+			DataInputStream expected = new DataInputStream(new ByteArrayInputStream(data));
+			ByteBufferDataInput in = new ByteBufferDataInput(data);
+			String line;
+			do {
+				line = expected.readLine();
+				assertEquals(line, in.readLine());
+			} while (line != null);
+		}
+
+		ByteBufferDataInput in = new ByteBufferDataInput("a\r\nb".getBytes("ISO-8859-1"));
+		assertEquals("a", in.readLine());
+		assertEquals('b', in.readByte());
+	}
+}
@@ -0,0 +1,187 @@
+package aQute.lib.zip;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import junit.framework.*;
+
+public class RawZipOutputStreamTest extends TestCase {
+
+	public static void testNormalEntries() throws Exception {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		RawZipOutputStream out = new RawZipOutputStream(bout, true);
+		out.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+		out.write("Manifest-Version: 1.0\r\n\r\n".getBytes("UTF-8"));
+		out.putNextEntry(new ZipEntry("dir/"));
+		out.closeEntry();
+		ZipEntry entry = new ZipEntry("dir/été.txt");
+		entry.setExtra(new byte[] {
+				1, 2, 0, 0
+		});
+		out.putNextEntry(entry);
+		byte[] content = content(100000);
+		out.write(content);
+		out.closeEntry();
+		out.close();
+
+		Map<String,byte[]> entries = readZipInputStream(bout.toByteArray());
+		assertEquals(Arrays.asList("META-INF/MANIFEST.MF", "dir/", "dir/été.txt"),
+				new ArrayList<String>(entries.keySet()));
+		assertTrue(Arrays.equals(content, entries.get("dir/été.txt")));
+
+		File file = write(bout.toByteArray());
+		try {
+			ZipFile zip = new ZipFile(file);
+			try {
+				assertTrue(Arrays.equals(content, read(zip.getInputStream(zip.getEntry("dir/été.txt")))));
+				byte[] extra = zip.getEntry("META-INF/MANIFEST.MF").getExtra();
+				assertEquals(0xCAFE, RawZipFile.getShort(extra, 0));
+			}
+			finally {
+				zip.close();
+			}
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	public static void testRawCopy() throws Exception {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		ZipOutputStream zout = new ZipOutputStream(bout);
+		byte[] deflated = content(50000);
+		zout.putNextEntry(new ZipEntry("a/deflated.bin"));
+		zout.write(deflated);
+		byte[] stored = "stored".getBytes("UTF-8");
+		ZipEntry storedEntry = new ZipEntry("stored.txt");
+		storedEntry.setMethod(ZipEntry.STORED);
+		storedEntry.setSize(stored.length);
+		CRC32 crc = new CRC32();
+		crc.update(stored);
+		storedEntry.setCrc(crc.getValue());
+		zout.putNextEntry(storedEntry);
+		zout.write(stored);
+		zout.close();
+
+		File source = write(bout.toByteArray());
+		try {
+			RawZipFile raw = new RawZipFile(source);
+			assertNull(raw.getEntry("missing"));
+
+			ByteArrayOutputStream copy = new ByteArrayOutputStream();
+			RawZipOutputStream out = new RawZipOutputStream(copy);
+			for (String name : new String[] {
+					"a/deflated.bin", "stored.txt"
+			}) {
+				RawZipFile.Entry e = raw.getEntry(name);
+				assertNotNull(e);
+				InputStream in = raw.openRaw(e);
+				try {
+					out.putRawEntry(new ZipEntry(name), e.method, e.crc, e.compressedSize, e.size, in);
+				}
+				finally {
+					in.close();
+				}
+			}
+			out.putNextEntry(new ZipEntry("normal.txt"));
+			out.write(stored);
+			out.close();
+
+			assertEquals(ZipEntry.DEFLATED, raw.getEntry("a/deflated.bin").method);
+			assertEquals(ZipEntry.STORED, raw.getEntry("stored.txt").method);
+
+			Map<String,byte[]> entries = readZipInputStream(copy.toByteArray());
+			assertEquals(3, entries.size());
+			assertTrue(Arrays.equals(deflated, entries.get("a/deflated.bin")));
+			assertTrue(Arrays.equals(stored, entries.get("stored.txt")));
+			assertTrue(Arrays.equals(stored, entries.get("normal.txt")));
+		}
+		finally {
+			source.delete();
+		}
+	}
+
+	/**
+	 * More entries than fit the end of central directory record need the
+	 * zip64 end records
+	 */
+	public static void testZip64EntryCount() throws Exception {
+		int count = 0x10000 + 10;
+		File file = File.createTempFile("rawzip", ".zip");
+		try {
+			RawZipOutputStream out = new RawZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			byte[] content = "x".getBytes("UTF-8");
+			for (int i = 0; i < count; i++) {
+				out.putNextEntry(new ZipEntry("e" + i));
+				out.write(content);
+			}
+			out.close();
+
+			ZipFile zip = new ZipFile(file);
+			try {
+				assertEquals(count, zip.size());
+				ZipEntry last = zip.getEntry("e" + (count - 1));
+				assertNotNull(last);
+				assertTrue(Arrays.equals(content, read(zip.getInputStream(last))));
+			}
+			finally {
+				zip.close();
+			}
+
+			ZipInputStream in = new ZipInputStream(new FileInputStream(file));
+			try {
+				int n = 0;
+				while (in.getNextEntry() != null)
+					n++;
+				assertEquals(count, n);
+			}
+			finally {
+				in.close();
+			}
+
+			assertNull(new RawZipFile(file).getEntry("e0"));
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	static byte[] content(int size) {
+		Random random = new Random(42);
+		byte[] content = new byte[size];
+		for (int i = 0; i < size; i++)
+			content[i] = (byte) ('a' + random.nextInt(8));
+		return content;
+	}
+
+	static Map<String,byte[]> readZipInputStream(byte[] data) throws IOException {
+		Map<String,byte[]> result = new LinkedHashMap<String,byte[]>();
+		ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(data));
+		for (ZipEntry e = in.getNextEntry(); e != null; e = in.getNextEntry())
+			result.put(e.getName(), read(in));
+		in.close();
+		return result;
+	}
+
+	static byte[] read(InputStream in) throws IOException {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int n;
+		while ((n = in.read(buffer)) > 0)
+			bout.write(buffer, 0, n);
+		return bout.toByteArray();
+	}
+
+	static File write(byte[] data) throws IOException {
+		File file = File.createTempFile("rawzip", ".zip");
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(data);
+		}
+		finally {
+			out.close();
+		}
+		return file;
+	}
+}
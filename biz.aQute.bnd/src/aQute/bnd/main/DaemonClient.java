@@ -0,0 +1,151 @@
+package aQute.bnd.main;
+
+import java.io.*;
+import java.net.*;
+
+/**
+ * The client of the build daemon, see {@link DaemonCommand}. It sends the
+ * directory and the arguments of a bnd command to the daemon and prints the
+ * output of the command. The client only uses the JRE so it starts quickly:
+ *
+ * <pre>
+ * java -cp bnd.jar aQute.bnd.main.DaemonClient [--port &lt;port&gt;] &lt;bnd arguments&gt;
+ * </pre>
+ *
+ * The exit status is the exit status of the command. The daemon only accepts
+ * requests with the token it wrote in {@link #getTokenFile(int)}, a file only
+ * readable by its owner, so only the user that runs the daemon can use it.
+ */
+public class DaemonClient {
+	public final static int	DEFAULT_PORT	= 29998;
+
+	/*
+	 * The requests, they start with the token of the daemon
+	 */
+	final static byte		RUN				= 1;
+	final static byte		STOP			= 2;
+
+	/*
+	 * The response is a number of output frames followed by the exit status
+	 */
+	final static byte		EXIT			= 0;
+	final static byte		OUT				= 1;
+	final static byte		ERR				= 2;
+
+	public static void main(String[] args) throws Exception {
+		int port = DEFAULT_PORT;
+		int start = 0;
+		if (args.length > 1 && (args[0].equals("-p") || args[0].equals("--port"))) {
+			port = Integer.parseInt(args[1]);
+			start = 2;
+		}
+		String[] command = new String[args.length - start];
+		System.arraycopy(args, start, command, 0, command.length);
+
+		try {
+			System.exit(run(port, new File("").getAbsoluteFile(), command, System.out, System.err));
+		}
+		catch (ConnectException e) {
+			System.err.println("No bnd daemon on port " + port + ", start one with 'bnd daemon'");
+			System.exit(-1);
+		}
+	}
+
+	/**
+	 * Run a bnd command in the daemon as if it was run in the given directory
+	 * and answer its exit status.
+	 */
+	public static int run(int port, File dir, String[] command, OutputStream out, OutputStream err) throws IOException {
+		return run(port, readToken(port), dir, command, out, err);
+	}
+
+	/**
+	 * Run a bnd command in the daemon with the given token
+	 */
+	public static int run(int port, String token, File dir, String[] command, OutputStream out, OutputStream err)
+			throws IOException {
+		Socket socket = connect(port);
+		try {
+			DataOutputStream request = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			request.writeUTF(token);
+			request.writeByte(RUN);
+			request.writeUTF(dir.getAbsolutePath());
+			request.writeInt(command.length);
+			for (String arg : command)
+				request.writeUTF(arg);
+			request.flush();
+
+			DataInputStream response = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			while (true) {
+				byte channel = response.readByte();
+				if (channel == EXIT) {
+					out.flush();
+					err.flush();
+					return response.readInt();
+				}
+
+				byte[] data = new byte[response.readInt()];
+				response.readFully(data);
+				OutputStream target = channel == ERR ? err : out;
+				target.write(data);
+				target.flush();
+			}
+		}
+		finally {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Stop the daemon, it finishes the command it is executing.
+	 */
+	public static void stop(int port) throws IOException {
+		stop(port, readToken(port));
+	}
+
+	/**
+	 * Stop the daemon with the given token
+	 */
+	public static void stop(int port, String token) throws IOException {
+		Socket socket = connect(port);
+		try {
+			DataOutputStream request = new DataOutputStream(socket.getOutputStream());
+			request.writeUTF(token);
+			request.writeByte(STOP);
+			request.flush();
+
+			// The daemon closes the connection when it stops
+			if (socket.getInputStream().read() != -1)
+				throw new IOException("The daemon did not accept the token");
+		}
+		finally {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Answer the file with the token of the daemon on the given port
+	 */
+	public static File getTokenFile(int port) {
+		return new File(System.getProperty("user.home"), ".bnd/daemon-" + port + ".token");
+	}
+
+	private static String readToken(int port) throws IOException {
+		File file = getTokenFile(port);
+		if (!file.isFile())
+			throw new ConnectException("No token " + file);
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String token = reader.readLine();
+			return token == null ? "" : token.trim();
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	private static Socket connect(int port) throws IOException {
+		return new Socket(InetAddress.getByName(null), port);
+	}
+}
@@ -0,0 +1,290 @@
+package aQute.bnd.main;
+
+import java.io.*;
+import java.net.*;
+import java.security.*;
+import java.util.*;
+
+import aQute.bnd.build.*;
+import aQute.bnd.osgi.*;
+import aQute.lib.getopt.*;
+import aQute.lib.hex.*;
+import aQute.lib.io.*;
+
+/**
+ * A build daemon that keeps workspaces in memory between bnd commands. For
+ * small builds most of the time goes to starting bnd, loading the workspace
+ * with its plugins and repositories, and parsing the jars on the build paths.
+ * The daemon listens on a local port and executes the commands sent by the
+ * {@link DaemonClient} one at a time, with the directory of the client as the
+ * base, and streams their output back.
+ * <p>
+ * The workspaces are kept with their projects. Before each command the bnd
+ * files of the workspace and its projects are checked for changes, the same
+ * way bnd checks them on a refresh, and only the processors that changed are
+ * reloaded. The repositories are refreshed so that the bundles released or
+ * deployed since the last command are seen. Sources and jars are checked by the
+ * build itself.
+ * <p>
+ * The daemon executes commands as its user, so it only accepts requests that
+ * start with a random token that it writes in a file in the home directory that
+ * only this user can read.
+ */
+public class DaemonCommand {
+	/*
+	 * The time a client has to send its request
+	 */
+	final static int			TIMEOUT		= 10000;
+
+	@Description("Run a build daemon that keeps workspaces, their projects, repositories and parsed jars in memory "
+			+ "between commands. Send commands with: java -cp bnd.jar aQute.bnd.main.DaemonClient <bnd arguments>")
+	interface daemonOptions extends Options {
+		@Description("The local port, default is " + DaemonClient.DEFAULT_PORT)
+		int port();
+
+		@Description("Stop the daemon that runs on the port")
+		boolean stop();
+	}
+
+	final bnd					bnd;
+
+	/*
+	 * The workspace cache only has weak references, these keep them warm
+	 */
+	final Map<File,Workspace>	workspaces	= new HashMap<File,Workspace>();
+
+	DaemonCommand(bnd bnd) {
+		this.bnd = bnd;
+	}
+
+	void daemon(daemonOptions options) throws Exception {
+		int port = options.port() > 0 ? options.port() : DaemonClient.DEFAULT_PORT;
+		if (options.stop()) {
+			DaemonClient.stop(port);
+			return;
+		}
+
+		ServerSocket server = new ServerSocket(port, 50, InetAddress.getByName(null));
+		try {
+			File tokenFile = DaemonClient.getTokenFile(server.getLocalPort());
+			String token = createToken(tokenFile);
+			try {
+				bnd.out.println("bnd daemon listening on " + server.getLocalSocketAddress());
+				run(server, token);
+			}
+			finally {
+				IO.delete(tokenFile);
+			}
+		}
+		finally {
+			server.close();
+		}
+	}
+
+	/*
+	 * Serve the requests on the server socket until a client stops the daemon
+	 */
+	void run(ServerSocket server, String token) throws IOException {
+		while (true) {
+			Socket socket = server.accept();
+			try {
+				socket.setSoTimeout(TIMEOUT);
+				if (!serve(socket, token))
+					break;
+			}
+			catch (Exception e) {
+				bnd.err.println("Failed to serve a request " + e);
+			}
+			finally {
+				socket.close();
+			}
+		}
+	}
+
+	/*
+	 * Create a random token and store it in a file that only the owner can
+	 * read. The permissions are set before the token is written. Windows
+	 * cannot take the read permission from others with java.io.File, there the
+	 * file inherits the access of the home directory of the user.
+	 */
+	static String createToken(File file) throws Exception {
+		byte[] data = new byte[32];
+		new SecureRandom().nextBytes(data);
+		String token = Hex.toHexString(data);
+
+		file.getParentFile().mkdirs();
+		IO.delete(file);
+		if (!file.createNewFile())
+			throw new IOException("Cannot create the token file " + file);
+
+		if (File.separatorChar == '/'
+				&& !(file.setReadable(false, false) && file.setWritable(false, false) && file.setReadable(true, true) && file
+						.setWritable(true, true)))
+			throw new IOException("Cannot restrict the access to the token file " + file);
+
+		IO.store(token, file);
+		return token;
+	}
+
+	/*
+	 * Serve one request, answer false when the daemon must stop
+	 */
+	private boolean serve(Socket socket, String token) throws Exception {
+		DataInputStream request = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		if (!MessageDigest.isEqual(token.getBytes("UTF-8"), request.readUTF().getBytes("UTF-8"))) {
+			DataOutputStream response = new DataOutputStream(socket.getOutputStream());
+			byte[] message = "Invalid bnd daemon token\n".getBytes("UTF-8");
+			response.writeByte(DaemonClient.ERR);
+			response.writeInt(message.length);
+			response.write(message);
+			response.writeByte(DaemonClient.EXIT);
+			response.writeInt(-1);
+			response.flush();
+			return true;
+		}
+
+		if (request.readByte() == DaemonClient.STOP)
+			return false;
+
+		File dir = new File(request.readUTF());
+		String[] args = new String[request.readInt()];
+		for (int i = 0; i < args.length; i++)
+			args[i] = request.readUTF();
+
+		DataOutputStream response = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		int status = execute(dir, args, response);
+		response.writeByte(DaemonClient.EXIT);
+		response.writeInt(status);
+		response.flush();
+		return true;
+	}
+
+	/*
+	 * Execute a command like the bnd main does, with the standard output and
+	 * error sent to the client.
+	 */
+	private int execute(File dir, String[] args, DataOutputStream response) {
+		PrintStream out = System.out;
+		PrintStream err = System.err;
+		PrintStream clientOut = new PrintStream(new BufferedOutputStream(new Frames(response, DaemonClient.OUT)));
+		PrintStream clientErr = new PrintStream(new BufferedOutputStream(new Frames(response, DaemonClient.ERR)));
+		final int[] status = new int[1];
+		System.setOut(clientOut);
+		System.setErr(clientErr);
+		try {
+			refresh(dir);
+
+			// bnd picks up the client streams when created
+			bnd command = new bnd() {
+				@Override
+				void exit(int code) {
+					// The messages are reported, the process would end here
+					status[0] = code;
+					clear();
+				}
+			};
+			try {
+				command.setBase(dir);
+				command.start(args);
+			}
+			finally {
+				command.close();
+			}
+		}
+		catch (Throwable t) {
+			t.printStackTrace();
+			status[0] = -1;
+		}
+		finally {
+			clientOut.flush();
+			clientErr.flush();
+			System.setOut(out);
+			System.setErr(err);
+		}
+		return status[0];
+	}
+
+	/*
+	 * Keep the workspace of the directory and reload the processors of which
+	 * a bnd file changed. Workspace.refresh() always reloads the plugins, so
+	 * it is only called when the workspace itself changed. Otherwise the
+	 * repositories are refreshed, this also clears the versions cached for
+	 * them. The messages of the workspace are cleared first so that those of a
+	 * previous command are not reported again.
+	 */
+	private void refresh(File dir) throws Exception {
+		Workspace ws = Workspace.findWorkspace(dir);
+		if (ws == null)
+			return;
+
+		workspaces.put(ws.getBase(), ws);
+		ws.clear();
+		if (isStale(ws))
+			ws.refresh();
+		else
+			ws.refreshRepositories();
+
+		for (Project project : new ArrayList<Project>(ws.getCurrentProjects())) {
+			if (isStale(project))
+				project.refresh();
+		}
+	}
+
+	/*
+	 * Answer if the properties file or one of the included files changed since
+	 * it was read, like Processor.refresh() checks it
+	 */
+	static boolean isStale(Processor processor) {
+		File file = processor.getPropertiesFile();
+		if (file == null)
+			return false;
+
+		if (file.lastModified() > processor.lastModified())
+			return true;
+
+		List<File> included = processor.getIncluded();
+		if (included != null) {
+			for (File f : included) {
+				if (!f.exists() || f.lastModified() > processor.lastModified())
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Send the output of a command as frames on one of the channels
+	 */
+	private static class Frames extends OutputStream {
+		final DataOutputStream	response;
+		final byte				channel;
+
+		Frames(DataOutputStream response, byte channel) {
+			this.response = response;
+			this.channel = channel;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] {
+				(byte) b
+			}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			synchronized (response) {
+				response.writeByte(channel);
+				response.writeInt(len);
+				response.write(b, off, len);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			synchronized (response) {
+				response.flush();
+			}
+		}
+	}
+}
@@ -6,8 +6,6 @@ import java.net.*;
 import java.security.*;
 import java.util.*;
 import java.util.Map.Entry;
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.*;
 import java.util.jar.*;
 import java.util.jar.Attributes.Name;
 import java.util.regex.*;
@@ -27,6 +25,7 @@ import aQute.bnd.header.*;
 import aQute.bnd.help.*;
 import aQute.bnd.main.BaselineCommands.baseLineOptions;
 import aQute.bnd.main.BaselineCommands.schemaOptions;
+import aQute.bnd.main.DaemonCommand.daemonOptions;
 import aQute.bnd.main.DiffCommand.diffOptions;
 import aQute.bnd.main.RepoCommand.repoOptions;
 import aQute.bnd.maven.*;
@@ -56,13 +55,13 @@ import aQute.lib.tag.*;
 import aQute.lib.utf8properties.*;
 import aQute.libg.classdump.*;
 import aQute.libg.cryptography.*;
-import aQute.libg.forker.*;
 import aQute.libg.generics.*;
 import aQute.libg.glob.*;
 import aQute.libg.qtokens.*;
 import aQute.libg.reporter.*;
 import aQute.libg.sed.*;
 import aQute.service.reporter.*;
+import biz.aQute.resolve.*;
 
 /**
  * Utility to make bundles.
@@ -297,11 +296,19 @@ public class bnd extends Processor {
 		if (!check(options.ignore())) {
 			System.err.flush();
 			System.err.flush();
-			Thread.sleep(1000);
-			System.exit(getErrors().size());
+			exit(getErrors().size());
 		}
 	}
 
+	/**
+	 * Exit with the given status. The daemon overrides this since it executes
+	 * the commands of its clients in its own process.
+	 */
+	void exit(int status) throws Exception {
+		Thread.sleep(1000);
+		System.exit(status);
+	}
+
 	/**
 	 * Options for the jar create command.
 	 */
@@ -911,6 +918,79 @@ public class bnd extends Processor {
 		getInfo(run.getWorkspace());
 	}
 
+	@Description("Resolve bndrun files concurrently and show the time each resolve took, slowest first")
+	@Arguments(arg = {
+			"<bndrun>", "..."
+	})
+	interface resolveOptions extends Options {
+		@Description("The number of bndrun files resolved at the same time, default is the number of processors")
+		int threads();
+
+		@Description("Show the resolved resources and the resolver log")
+		boolean verbose();
+
+		@Description("Show the provider lookups per requirement with their time and number of candidates")
+		boolean instrument();
+	}
+
+	@Description("Resolve bndrun files concurrently and show the time each resolve took, slowest first")
+	public void _resolve(resolveOptions options) throws Exception {
+		int threads = options.threads() > 0 ? options.threads() : Runtime.getRuntime().availableProcessors();
+
+		// The bndrun files of a workspace share its repositories
+		Map<Workspace,List<File>> bndruns = new LinkedHashMap<Workspace,List<File>>();
+		for (String arg : options._()) {
+			File f = getFile(arg);
+			Run run = Workspace.getRun(f);
+			if (run == null) {
+				messages.NoRunFile(f);
+				continue;
+			}
+			List<File> files = bndruns.get(run.getWorkspace());
+			if (files == null) {
+				files = new ArrayList<File>();
+				bndruns.put(run.getWorkspace(), files);
+			}
+			files.add(f);
+			run.close();
+		}
+
+		List<BatchResolveProcess.Result> results = new ArrayList<BatchResolveProcess.Result>();
+		long total = 0;
+		for (Entry<Workspace,List<File>> entry : bndruns.entrySet()) {
+			BatchResolveProcess process = new BatchResolveProcess(entry.getKey(), threads);
+			if (!options.verbose())
+				process.setLogLevel(ResolverLogger.LOG_ERROR);
+			process.setInstrument(options.instrument());
+			long start = System.currentTimeMillis();
+			results.addAll(process.resolve(entry.getValue()));
+			total += System.currentTimeMillis() - start;
+			getInfo(entry.getKey());
+		}
+
+		Collections.sort(results, new Comparator<BatchResolveProcess.Result>() {
+			public int compare(BatchResolveProcess.Result a, BatchResolveProcess.Result b) {
+				return a.getTime() < b.getTime() ? 1 : a.getTime() > b.getTime() ? -1 : 0;
+			}
+		});
+
+		for (BatchResolveProcess.Result result : results) {
+			out.printf("%-40s %8d ms  %s\n", result.getBndrun().getName(), result.getTime(), result.isOk() ? "ok"
+					: "failed");
+			if (options.verbose()) {
+				if (result.getRequired() != null) {
+					for (org.osgi.resource.Resource resource : result.getRequired().keySet())
+						out.printf("    %s\n", GenericResolveContext.getResourceIdentity(resource));
+				}
+				out.print(result.getLog());
+			}
+			if (result.getInstrumentation() != null)
+				out.print(result.getInstrumentation().report());
+			getInfo(result.getReporter(), result.getBndrun().getName() + ": ");
+		}
+		out.printf("%d bndrun files resolved in %d ms\n", results.size(), total);
+	}
+
 	@Description("Clean a project")
 	interface cleanOptions extends Options {
 		@Description("Path to another project than the current project")
@@ -2618,6 +2698,15 @@ public class bnd extends Processor {
 		baseliner._schema(opts);
 	}
 
+	/**
+	 * Run a build daemon
+	 */
+	@Description("Run a build daemon that keeps workspaces, their projects, repositories and parsed jars in memory between commands")
+	public void _daemon(daemonOptions opts) throws Exception {
+		DaemonCommand daemon = new DaemonCommand(this);
+		daemon.daemon(opts);
+	}
+
 	public Project getProject() throws Exception {
 		return getProject(null);
 	}
@@ -3619,75 +3708,55 @@ public class bnd extends Processor {
 	}
 
 	/**
-	 * Lets see if we can build in parallel
+	 * Build the projects in parallel, each project starts as soon as the
+	 * projects it depends on are built.
 	 * 
 	 * @throws Exception
 	 */
 
 	@Description("experimental - parallel build")
 	interface ParallelBuildOptions extends buildoptions {
-
+		@Description("The number of projects to build concurrently, overrides " + Constants.BUILDTHREADS)
+		int threads();
 	}
 
 	public void __par(final ParallelBuildOptions options) throws Exception {
-		ExecutorService pool = Executors.newCachedThreadPool();
-		final AtomicBoolean quit = new AtomicBoolean();
-
-		try {
-			final Project p = getProject(options.project());
-			final Workspace workspace = p == null || options.full() ? Workspace.getWorkspace(getBase()) : p
-					.getWorkspace();
+		final Project p = getProject(options.project());
+		final Workspace workspace = p == null || options.full() ? Workspace.getWorkspace(getBase()) : p.getWorkspace();
 
-			if (!workspace.exists()) {
-				error("cannot find workspace");
-				return;
-			}
+		if (!workspace.exists()) {
+			error("cannot find workspace");
+			return;
+		}
 
+		try {
 			final Collection<Project> targets = p == null ? workspace.getAllProjects() : p.getDependson();
 
-			final Forker<Project> forker = new Forker<Project>(pool);
-
-			for (final Project dep : targets) {
-				forker.doWhen(dep.getDependson(), dep, new Runnable() {
-
-					public void run() {
-						System.out.println("start " + dep);
-						if (!quit.get()) {
-
-							try {
-								dep.compile(false);
-								if (!quit.get())
-									dep.build();
-								if (!dep.isOk())
-									quit.set(true);
-							}
-							catch (Exception e) {
-								e.printStackTrace();
-							}
-							System.out.println("done " + dep);
-						}
-					}
-				});
-			}
-			System.err.flush();
+			BuildScheduler scheduler = new BuildScheduler(workspace);
+			if (options.threads() > 0)
+				scheduler.setThreads(options.threads());
 
-			forker.start(20000);
+			Map<Project,Processor> reports = scheduler.run(targets, new BuildScheduler.Action() {
+				public void perform(Project dep) throws Exception {
+					dep.compile(false);
+					if (dep.isOk())
+						dep.build();
+				}
+			});
 
-			for (Project dep : targets) {
-				getInfo(dep, dep + ": ");
+			for (Map.Entry<Project,Processor> report : reports.entrySet()) {
+				getInfo(report.getValue(), report.getKey() + ": ");
 			}
-			if (p != null && p.isOk() && !options.full()) {
+			if (p != null && isOk() && !options.full()) {
 				p.compile(options.test());
 				p.build();
 				if (options.test() && p.isOk())
 					p.test();
 				getInfo(p);
 			}
-
-			workspace.close();
 		}
 		finally {
-			pool.shutdownNow();
+			workspace.close();
 		}
 	}
 
@@ -0,0 +1,271 @@
+package aQute.bnd.main;
+
+import java.io.*;
+import java.net.*;
+import java.util.concurrent.atomic.*;
+
+import junit.framework.*;
+import aQute.bnd.osgi.*;
+import aQute.bnd.service.*;
+import aQute.lib.io.*;
+
+public class DaemonTest extends TestCase {
+	File	tmp	= new File("tmp-daemon").getAbsoluteFile();
+	File	project;
+
+	@Override
+	protected void setUp() throws Exception {
+		IO.delete(tmp);
+		project = new File(tmp, "p");
+		project.mkdirs();
+		new File(tmp, "cnf").mkdirs();
+		// The embedded repo is only in the bnd jar
+		IO.store("-nobuildincache: true\n", new File(tmp, "cnf/build.bnd"));
+		IO.store("", new File(project, "bnd.bnd"));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		IO.delete(tmp);
+	}
+
+	/**
+	 * A daemon on an ephemeral port that serves requests in its own thread
+	 */
+	static class Daemon extends Thread {
+		final ServerSocket		server;
+		final DaemonCommand		command	= new DaemonCommand(new bnd());
+		volatile boolean		closed;
+		volatile Throwable		failure;
+
+		Daemon() throws IOException {
+			super("daemon");
+			server = new ServerSocket(0, 50, InetAddress.getByName(null));
+		}
+
+		int getPort() {
+			return server.getLocalPort();
+		}
+
+		@Override
+		public void run() {
+			try {
+				command.run(server, "secret");
+			}
+			catch (Throwable t) {
+				// Closing the server socket ends a daemon that is not stopped
+				if (!closed)
+					failure = t;
+			}
+		}
+
+		/**
+		 * Close the server socket and fail when the daemon thread failed
+		 */
+		void close() throws Exception {
+			closed = true;
+			server.close();
+			join(10000);
+			if (failure != null) {
+				AssertionFailedError e = new AssertionFailedError("The daemon failed: " + failure);
+				e.initCause(failure);
+				throw e;
+			}
+		}
+	}
+
+	private Daemon startDaemon() throws IOException {
+		Daemon daemon = new Daemon();
+		daemon.start();
+		return daemon;
+	}
+
+	/**
+	 * Run commands through the client on a daemon on an ephemeral port
+	 */
+	public void testRunAndStop() throws Exception {
+		Daemon daemon = startDaemon();
+		try {
+			int port = daemon.getPort();
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ByteArrayOutputStream err = new ByteArrayOutputStream();
+			int status = DaemonClient.run(port, "secret", project, new String[] {
+				"version"
+			}, out, err);
+			assertEquals(0, status);
+			assertEquals(getBndVersion(), new String(out.toByteArray(), "UTF-8").trim());
+			assertEquals(0, err.size());
+
+			// The macro command prints on the standard error
+			out.reset();
+			err.reset();
+			status = DaemonClient.run(port, "secret", project, new String[] {
+					"macro", "${sum;1,2}"
+			}, out, err);
+			assertEquals(0, status);
+			assertEquals("3", new String(err.toByteArray(), "UTF-8").trim());
+
+			out.reset();
+			err.reset();
+			status = DaemonClient.run(port, "secret", project, new String[] {
+					"macro", "${error;Failed}"
+			}, out, err);
+			assertEquals(1, status);
+			assertTrue(new String(err.toByteArray(), "UTF-8").contains("Failed"));
+
+			out.reset();
+			err.reset();
+			status = DaemonClient.run(port, "wrong", project, new String[] {
+					"macro", "${sum;1,2}"
+			}, out, err);
+			assertEquals(-1, status);
+			assertEquals(0, out.size());
+			assertTrue(new String(err.toByteArray(), "UTF-8").contains("Invalid bnd daemon token"));
+
+			try {
+				DaemonClient.stop(port, "wrong");
+				fail();
+			}
+			catch (IOException e) {
+				// expected
+			}
+			daemon.join(1000);
+			assertTrue(daemon.isAlive());
+
+			DaemonClient.stop(port, "secret");
+			daemon.join(10000);
+			assertFalse(daemon.isAlive());
+		}
+		finally {
+			daemon.close();
+		}
+	}
+
+	/**
+	 * A client that does not send a request must not block the daemon
+	 */
+	public void testTimeout() throws Exception {
+		Daemon daemon = startDaemon();
+		Socket idle = new Socket(InetAddress.getByName(null), daemon.getPort());
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			int status = DaemonClient.run(daemon.getPort(), "secret", project, new String[] {
+				"version"
+			}, out, new ByteArrayOutputStream());
+			assertEquals(0, status);
+			assertEquals(getBndVersion(), new String(out.toByteArray(), "UTF-8").trim());
+
+			DaemonClient.stop(daemon.getPort(), "secret");
+			daemon.join(10000);
+			assertFalse(daemon.isAlive());
+		}
+		finally {
+			idle.close();
+			daemon.close();
+		}
+	}
+
+	/**
+	 * Counts the refreshes of the repositories of the workspace
+	 */
+	public static class Refreshes implements RepositoryListenerPlugin {
+		static final AtomicInteger	count	= new AtomicInteger();
+
+		public void bundleAdded(RepositoryPlugin repository, Jar jar, File file) {}
+
+		public void bundleRemoved(RepositoryPlugin repository, Jar jar, File file) {}
+
+		public void repositoryRefreshed(RepositoryPlugin repository) {}
+
+		public void repositoriesRefreshed() {
+			count.incrementAndGet();
+		}
+	}
+
+	/**
+	 * The repositories are refreshed before each command, so that a command
+	 * sees the bundles released since the previous one
+	 */
+	public void testRefreshRepositories() throws Exception {
+		IO.store("-nobuildincache: true\n-plugin: " + Refreshes.class.getName() + "\n", new File(tmp, "cnf/build.bnd"));
+		Daemon daemon = startDaemon();
+		try {
+			int status = DaemonClient.run(daemon.getPort(), "secret", project, new String[] {
+				"version"
+			}, new ByteArrayOutputStream(), new ByteArrayOutputStream());
+			assertEquals(0, status);
+			int refreshes = Refreshes.count.get();
+
+			status = DaemonClient.run(daemon.getPort(), "secret", project, new String[] {
+				"version"
+			}, new ByteArrayOutputStream(), new ByteArrayOutputStream());
+			assertEquals(0, status);
+			assertEquals(refreshes + 1, Refreshes.count.get());
+
+			DaemonClient.stop(daemon.getPort(), "secret");
+			daemon.join(10000);
+			assertFalse(daemon.isAlive());
+		}
+		finally {
+			daemon.close();
+		}
+	}
+
+	public void testToken() throws Exception {
+		File file = new File(tmp, "sub/daemon.token");
+		String token = DaemonCommand.createToken(file);
+		assertEquals(64, token.length());
+		assertEquals(token, IO.collect(file));
+		assertFalse(token.equals(DaemonCommand.createToken(file)));
+	}
+
+	/**
+	 * A processor is stale when its bnd file or an included file changed since
+	 * it was read
+	 */
+	public void testIsStale() throws Exception {
+		File bnd = new File(tmp, "p.bnd");
+		File include = new File(tmp, "include.bnd");
+		IO.store("-include: include.bnd\na=1\n", bnd);
+		IO.store("b=2\n", include);
+		long now = System.currentTimeMillis() - 10000;
+		bnd.setLastModified(now);
+		include.setLastModified(now);
+
+		Processor p = new Processor();
+		try {
+			assertFalse(DaemonCommand.isStale(p));
+
+			p.setProperties(bnd);
+			assertEquals("2", p.getProperty("b"));
+			assertFalse(DaemonCommand.isStale(p));
+
+			include.setLastModified(now + 5000);
+			assertTrue(DaemonCommand.isStale(p));
+			p.refresh();
+			assertFalse(DaemonCommand.isStale(p));
+
+			bnd.setLastModified(now + 8000);
+			assertTrue(DaemonCommand.isStale(p));
+			p.refresh();
+			assertFalse(DaemonCommand.isStale(p));
+
+			IO.delete(include);
+			assertTrue(DaemonCommand.isStale(p));
+		}
+		finally {
+			p.close();
+		}
+	}
+
+	private String getBndVersion() {
+		Analyzer a = new Analyzer();
+		try {
+			return String.valueOf(a.getBndVersion());
+		}
+		finally {
+			a.close();
+		}
+	}
+}
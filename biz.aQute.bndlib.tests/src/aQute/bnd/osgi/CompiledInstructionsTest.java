@@ -0,0 +1,143 @@
+package aQute.bnd.osgi;
+
+import java.util.*;
+
+import junit.framework.*;
+import aQute.bnd.header.*;
+
+public class CompiledInstructionsTest extends TestCase {
+
+	final static String[]	VALUES	= {
+			"", "com", "com.foo", "com.foo.bar", "com.foo.bar.baz", "com.foobar", "com.foo.internal",
+			"com.foo.internal.x", "com.foo.internal.y", "com.foo.impl", "com.bar.impl", "com.a", "com.b.c", "COM.FOO",
+			"org.example", "org.example.Impl$1", "aXa", "aXb", "com.foo.\nbar", "x.y.z", "com.foo.bar.impl"
+											};
+
+	/**
+	 * The first instruction that matches wins, also when it is negated
+	 */
+	public void testFirstMatchWins() throws Exception {
+		CompiledInstructions compiled = compile("!com.foo.internal.*", "com.foo.internal.x", "com.foo.*", "com.*",
+				"*");
+		assertMatches(compiled);
+
+		assertEquals("!com.foo.internal.*", compiled.matcher("com.foo.internal.x").toString());
+		assertTrue(compiled.matcher("com.foo.internal").isNegated());
+		assertEquals("com.foo.*", compiled.matcher("com.foo").toString());
+		assertEquals("com.*", compiled.matcher("com.foobar").toString());
+		assertEquals("*", compiled.matcher("org.example").toString());
+
+		// A later negation does not hide an earlier match
+		compiled = compile("com.foo.*", "!com.foo.internal.*");
+		assertMatches(compiled);
+		assertEquals("com.foo.*", compiled.matcher("com.foo.internal.x").toString());
+		assertNull(compiled.matcher("org.example"));
+
+		// A duplicate literal keeps the first index
+		compiled = compile("!com.foo", "com.foo.*", "com.foo~");
+		assertMatches(compiled);
+		assertTrue(compiled.matcher("com.foo").isNegated());
+	}
+
+	/**
+	 * Literals and the package and plain prefixes do not need a regular
+	 * expression
+	 */
+	public void testLiteralsAndPrefixes() throws Exception {
+		CompiledInstructions compiled = compile("com.foo.*", "com.foo*", "=org.example", "com.foo.bar", "org.*",
+				"com.b.c$");
+		assertTrue(compiled.others.isEmpty());
+		assertNull(compiled.combined);
+		assertEquals(3, compiled.literals.size());
+		assertMatches(compiled);
+
+		assertEquals("com.foo.*", compiled.matcher("com.foo").toString());
+		assertEquals("com.foo.*", compiled.matcher("com.foo.bar").toString());
+		assertEquals("com.foo*", compiled.matcher("com.foobar").toString());
+		assertEquals("=org.example", compiled.matcher("org.example").toString());
+		assertEquals("org.*", compiled.matcher("org.example.Impl$1").toString());
+		assertNull(compiled.matcher("com"));
+		assertNull(compiled.matcher("com.fo"));
+	}
+
+	/**
+	 * Instructions that are not literals or prefixes are combined in one
+	 * regular expression, the groups of an instruction must not shift the
+	 * groups of the ones that follow
+	 */
+	public void testCombined() throws Exception {
+		CompiledInstructions compiled = compile("com.*.impl", "com.(a|b)", "*.internal.*", "com.foo.*",
+				"com.foo*:i", "*.bar.*", "x.?.z");
+		assertEquals(6, compiled.others.size());
+		assertNotNull(compiled.combined);
+		assertMatches(compiled);
+
+		assertEquals("com.*.impl", compiled.matcher("com.foo.impl").toString());
+		assertEquals("com.(a|b)", compiled.matcher("com.a").toString());
+		assertEquals("*.internal.*", compiled.matcher("com.foo.internal.x").toString());
+		assertEquals("com.foo.*", compiled.matcher("com.foo.bar").toString());
+		assertEquals("com.foo*:i", compiled.matcher("COM.FOO").toString());
+		assertEquals("x.?.z", compiled.matcher("x.y.z").toString());
+		assertNull(compiled.matcher("org.example"));
+	}
+
+	/**
+	 * Patterns with back references and values with line terminators are
+	 * matched instruction by instruction
+	 */
+	public void testFallback() throws Exception {
+		CompiledInstructions compiled = compile("com.foo.bar", "(a)*\\1", "com.*.impl", "com.foo.*");
+		assertEquals(2, compiled.others.size());
+		assertNull(compiled.combined);
+		assertMatches(compiled);
+		assertEquals("(a)*\\1", compiled.matcher("aXa").toString());
+		assertNull(compiled.matcher("aXb"));
+
+		// A wildcard does not match a line terminator, unlike the trie
+		compiled = compile("com.*.impl", "*.bar.*", "com.foo.*");
+		assertNotNull(compiled.combined);
+		assertMatches(compiled);
+		assertNull(compiled.matcher("com.foo.\nbar"));
+
+		// An invalid pattern is left to the instruction
+		compiled = compile("com.*.impl", "com.(*", "*");
+		assertNull(compiled.combined);
+		assertEquals("com.*.impl", compiled.matcher("com.bar.impl").toString());
+	}
+
+	/**
+	 * The selection of Instructions uses the compiled instructions and must
+	 * keep the order of the instructions
+	 */
+	public void testSelect() throws Exception {
+		Instructions instructions = new Instructions(new Parameters("!com.foo.internal.*, com.foo.*, *.impl, org.*"));
+		Set<Instruction> unused = new HashSet<Instruction>();
+		Collection<String> selected = instructions.select(Arrays.asList(VALUES), unused, false);
+		assertEquals(Arrays.asList("com.foo", "com.foo.bar", "com.foo.bar.baz", "com.foo.impl", "com.foo.bar.impl",
+				"com.bar.impl", "org.example", "org.example.Impl$1"), new ArrayList<String>(selected));
+		assertTrue(unused.isEmpty());
+	}
+
+	private CompiledInstructions compile(String... instructions) {
+		List<Instruction> list = new ArrayList<Instruction>();
+		for (String s : instructions)
+			list.add(new Instruction(s));
+		return new CompiledInstructions(list);
+	}
+
+	/*
+	 * Compare with trying the instructions in order
+	 */
+	private void assertMatches(CompiledInstructions compiled) {
+		for (String value : VALUES) {
+			Instruction expected = null;
+			for (Instruction instruction : compiled.instructions) {
+				if (instruction.matches(value)) {
+					expected = instruction;
+					break;
+				}
+			}
+			assertSame(value, expected, compiled.matcher(value));
+		}
+	}
+}
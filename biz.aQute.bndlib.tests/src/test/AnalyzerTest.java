@@ -24,6 +24,52 @@ class T3 extends T2 {}
 public class AnalyzerTest extends BndTestCase {
 	static File	cwd	= new File(System.getProperty("user.dir"));
 
+	/**
+	 * Parsing the classes in parallel must give the same manifest as the
+	 * serial analysis, also with the errors of bad class files
+	 */
+	public void testParallelAnalysis() throws Exception {
+		Analyzer serial = analyzeSpring(false);
+		Analyzer parallel = analyzeSpring(true);
+		try {
+			Manifest expected = serial.calcManifest();
+			Manifest actual = parallel.calcManifest();
+			expected.getMainAttributes().remove(new Attributes.Name(Constants.BND_LASTMODIFIED));
+			actual.getMainAttributes().remove(new Attributes.Name(Constants.BND_LASTMODIFIED));
+			assertEquals(expected.getMainAttributes(), actual.getMainAttributes());
+			assertEquals(serial.getErrors().size(), parallel.getErrors().size());
+			assertEquals(serial.getWarnings().size(), parallel.getWarnings().size());
+
+			// The parse errors are reported in the order of the serial analysis
+			List<String> invalid = new ArrayList<String>();
+			for (String error : parallel.getErrors())
+				if (error.startsWith("Invalid class file"))
+					invalid.add(error.substring(0, error.indexOf(".class") + 6));
+			assertEquals(Arrays.asList("Invalid class file org/springframework/Bad.class",
+					"Invalid class file org/springframework/aop/Bad.class"), invalid);
+		}
+		finally {
+			serial.close();
+			parallel.close();
+		}
+	}
+
+	private Analyzer analyzeSpring(boolean parallel) throws Exception {
+		Jar jar = new Jar(IO.getFile("jar/spring.jar"));
+		byte[] bad = {
+				1, 2, 3
+		};
+		jar.putResource("org/springframework/Bad.class", new EmbeddedResource(bad, 0));
+		jar.putResource("org/springframework/aop/Bad.class", new EmbeddedResource(bad, 0));
+
+		Analyzer analyzer = new Analyzer();
+		analyzer.setJar(jar);
+		analyzer.setProperty(Constants.EXPORT_PACKAGE, "org.springframework.*");
+		analyzer.setProperty(Constants.PARALLELANALYSIS, Boolean.toString(parallel));
+		analyzer.setProperty(Constants.PARALLELANALYSIS_THREADS, "4");
+		return analyzer;
+	}
+
 	/**
 	 * #525 Test if exceptions are imported
 	 */
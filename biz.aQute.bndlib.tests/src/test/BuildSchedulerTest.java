@@ -0,0 +1,102 @@
+package test;
+
+import java.util.*;
+
+import junit.framework.*;
+import aQute.bnd.build.*;
+import aQute.bnd.osgi.*;
+import aQute.lib.io.*;
+
+public class BuildSchedulerTest extends TestCase {
+
+	/**
+	 * A project is only started after the projects it depends on are done
+	 */
+	public void testDependencyOrder() throws Exception {
+		Workspace ws = new Workspace(IO.getFile("testresources/ws"));
+		try {
+			Project top = ws.getProject("p-stale");
+			Project bottom = ws.getProject("p-stale-dep");
+			final List<Project> order = Collections.synchronizedList(new ArrayList<Project>());
+
+			BuildScheduler scheduler = new BuildScheduler(ws);
+			scheduler.setThreads(4);
+			Map<Project,Processor> reports = scheduler.run(Arrays.asList(top), new BuildScheduler.Action() {
+				public void perform(Project project) throws Exception {
+					order.add(project);
+				}
+			});
+
+			assertEquals(Arrays.asList(bottom, top), order);
+			assertEquals(Arrays.asList(bottom, top), new ArrayList<Project>(reports.keySet()));
+			assertTrue(reports.get(top).isOk());
+			assertTrue(reports.get(bottom).isOk());
+		}
+		finally {
+			ws.close();
+		}
+	}
+
+	/**
+	 * The dependents of a failed project are skipped, other projects are still
+	 * built and the failed project keeps its errors
+	 */
+	public void testFailedDependency() throws Exception {
+		Workspace ws = new Workspace(IO.getFile("testresources/ws"));
+		try {
+			Project top = ws.getProject("p-stale");
+			final Project bottom = ws.getProject("p-stale-dep");
+			Project other = ws.getProject("p1");
+			final List<Project> performed = Collections.synchronizedList(new ArrayList<Project>());
+
+			BuildScheduler scheduler = new BuildScheduler(ws);
+			Map<Project,Processor> reports = scheduler.run(Arrays.asList(top, other), new BuildScheduler.Action() {
+				public void perform(Project project) throws Exception {
+					performed.add(project);
+					if (project == bottom)
+						project.error("failed on purpose");
+				}
+			});
+
+			assertTrue(performed.contains(bottom));
+			assertTrue(performed.contains(other));
+			assertFalse(performed.contains(top));
+
+			assertFalse(bottom.isOk());
+			assertEquals(1, bottom.getErrors().size());
+			assertTrue(bottom.getErrors().get(0).contains("failed on purpose"));
+
+			assertEquals(1, reports.get(bottom).getErrors().size());
+			assertTrue(reports.get(bottom).getErrors().get(0).contains("failed on purpose"));
+			assertFalse(reports.get(top).isOk());
+			assertTrue(reports.get(top).getErrors().get(0).contains("Not built"));
+			assertTrue(reports.get(other).isOk());
+		}
+		finally {
+			ws.close();
+		}
+	}
+
+	/**
+	 * An exception of the action is reported as an error of the project
+	 */
+	public void testException() throws Exception {
+		Workspace ws = new Workspace(IO.getFile("testresources/ws"));
+		try {
+			Project project = ws.getProject("p1");
+
+			BuildScheduler scheduler = new BuildScheduler(ws);
+			Map<Project,Processor> reports = scheduler.run(Arrays.asList(project), new BuildScheduler.Action() {
+				public void perform(Project p) throws Exception {
+					throw new Exception("thrown on purpose");
+				}
+			});
+
+			assertFalse(project.isOk());
+			assertFalse(reports.get(project).isOk());
+		}
+		finally {
+			ws.close();
+		}
+	}
+}
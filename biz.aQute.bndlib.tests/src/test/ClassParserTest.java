@@ -1,6 +1,7 @@
 package test;
 
 import java.io.*;
+import java.lang.annotation.*;
 import java.lang.reflect.*;
 import java.net.*;
 import java.util.*;
@@ -8,7 +9,9 @@ import java.util.*;
 import junit.framework.*;
 import aQute.bnd.osgi.*;
 import aQute.bnd.osgi.Descriptors.PackageRef;
+import aQute.bnd.osgi.Descriptors.TypeRef;
 import aQute.bnd.service.*;
+import aQute.bnd.service.classparser.*;
 import aQute.lib.io.*;
 import aQute.service.reporter.*;
 
@@ -329,6 +332,179 @@ public class ClassParserTest extends TestCase {
 		clazz.getReferred();
 	}
 
+	static class MemberAnnotated {
+		@Deprecated
+		public void foo() {}
+	}
+
+	public void testMayHaveAnnotation() throws Exception {
+		TypeRef deprecated = a.getTypeRefFromFQN(Deprecated.class.getName());
+		TypeRef documented = a.getTypeRefFromFQN(Documented.class.getName());
+		Clazz clazz = new Clazz(a, "test", null);
+
+		// Not parsed yet
+		assertTrue(clazz.mayHaveAnnotation(documented));
+
+		clazz.parseClassFile(getClass().getResourceAsStream("ClassParserTest$MemberAnnotated.class"));
+		assertTrue(clazz.mayHaveAnnotation(deprecated));
+		assertTrue(clazz.mayHaveAnnotation(documented, deprecated));
+		assertFalse(clazz.mayHaveAnnotation(documented));
+	}
+
+	/**
+	 * Logs the events of the classes it visits
+	 */
+	static class EventLog extends ClassDataCollector {
+		final Map<String,List<String>>	events	= new TreeMap<String,List<String>>();
+		List<String>					current;
+		Clazz.FieldDef					member;
+
+		// Collectors only see the events from the class start on
+		void log(String event) {
+			if (current != null)
+				current.add(event);
+		}
+
+		static String format(Object value) {
+			if (value instanceof Object[]) {
+				List<String> elements = new ArrayList<String>();
+				for (Object element : (Object[]) value)
+					elements.add(format(element));
+				return elements.toString();
+			}
+			if (value instanceof aQute.bnd.osgi.Annotation) {
+				aQute.bnd.osgi.Annotation annotation = (aQute.bnd.osgi.Annotation) value;
+				StringBuilder sb = new StringBuilder().append(annotation.getName()).append(' ')
+						.append(annotation.getElementType());
+				for (String key : new TreeSet<String>(annotation.keySet()))
+					sb.append(' ').append(key).append('=').append(format(annotation.get(key)));
+				return sb.toString();
+			}
+			return String.valueOf(value);
+		}
+
+		@Override
+		public boolean classStart(Clazz c) {
+			current = new ArrayList<String>();
+			events.put(c.getFQN(), current);
+			return true;
+		}
+
+		@Override
+		public void classEnd() {
+			current = null;
+		}
+
+		@Override
+		public void extendsClass(TypeRef zuper) {
+			log("extends " + zuper);
+		}
+
+		@Override
+		public void implementsInterfaces(TypeRef[] interfaces) {
+			log("implements " + Arrays.toString(interfaces));
+		}
+
+		@Override
+		public void addReference(TypeRef ref) {
+			log("reference " + ref);
+		}
+
+		@Override
+		public void annotation(aQute.bnd.osgi.Annotation annotation) {
+			log("annotation " + format(annotation));
+		}
+
+		@Override
+		public void parameter(int p) {
+			log("parameter " + p);
+		}
+
+		@Override
+		public void method(Clazz.MethodDef defined) {
+			member = defined;
+			log("method " + defined.getName() + defined.getDescriptor());
+		}
+
+		@Override
+		public void field(Clazz.FieldDef defined) {
+			member = defined;
+			log("field " + defined.getName() + defined.getDescriptor());
+		}
+
+		@Override
+		public void deprecated() {
+			log("deprecated");
+		}
+
+		@Override
+		public void innerClass(TypeRef innerClass, TypeRef outerClass, String innerName, int innerClassAccessFlags) {
+			log("inner " + innerClass + " " + outerClass + " " + innerName + " " + innerClassAccessFlags);
+		}
+
+		@Override
+		public void signature(String signature) {
+			log("signature " + signature + " " + (member == null ? null : member.getSignature()));
+		}
+
+		@Override
+		public void constant(Object object) {
+			log("constant " + format(object) + " " + format(member.getConstant()));
+		}
+
+		@Override
+		public void memberEnd() {
+			log("end");
+			member = null;
+		}
+
+		@Override
+		public void referTo(TypeRef typeRef, int modifiers) {
+			log("refer " + typeRef + " " + modifiers);
+		}
+
+		@Override
+		public void annotationDefault(Clazz.MethodDef last) {
+			log("default " + last.getName() + "=" + format(last.getConstant()));
+		}
+	}
+
+	/**
+	 * During the analysis the class parser plugins receive recorded events,
+	 * they must be the same events as when the class file is parsed directly
+	 */
+	public void testRecordedEventsMatchParse() throws Exception {
+		final EventLog replayed = new EventLog();
+		Builder b = new Builder();
+		try {
+			b.addClasspath(IO.getFile("bin"));
+			b.setPrivatePackage("test.component");
+			b.addBasicPlugin(new ClassParser() {
+				public ClassDataCollector getClassDataCollector(Analyzer analyzer) {
+					return replayed;
+				}
+			});
+			b.build();
+			assertTrue(b.check());
+
+			EventLog parsed = new EventLog();
+			for (Clazz c : b.getClassspace().values())
+				c.parseClassFileWithCollector(parsed);
+
+			assertFalse(parsed.events.isEmpty());
+			assertEquals(parsed.events.keySet(), replayed.events.keySet());
+			for (String name : parsed.events.keySet())
+				assertEquals(name, parsed.events.get(name), replayed.events.get(name));
+
+			// The defaults of the component property types
+			assertTrue(parsed.events.toString().contains("default "));
+			assertFalse(parsed.events.toString().contains("=null"));
+		}
+		finally {
+			b.close();
+		}
+	}
+
 	public void testParameterAnnotation() throws Exception {
 		InputStream in = getClass().getResourceAsStream("Test2.jclass");
 		assertNotNull(in);
@@ -0,0 +1,205 @@
+package test;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.util.*;
+
+import junit.framework.*;
+import aQute.bnd.build.*;
+import aQute.bnd.osgi.*;
+import aQute.bnd.osgi.Clazz.QUERY;
+import aQute.lib.io.*;
+
+public class ClazzCacheTest extends TestCase {
+	File	tmp	= new File("tmp-clazzcache");
+
+	@Override
+	protected void setUp() throws Exception {
+		IO.delete(tmp);
+		tmp.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		IO.delete(tmp);
+	}
+
+	@Deprecated
+	public static class Inner implements Serializable {
+		private static final long	serialVersionUID	= 1L;
+	}
+
+	/**
+	 * A miss parses the class and stores an entry, a hit must answer the same
+	 * as a parse
+	 */
+	public void testMissAndHit() throws Exception {
+		Analyzer a = new Analyzer();
+		try {
+			ClazzCache cache = new ClazzCache(tmp);
+			for (String name : new String[] {
+					"test/ClazzCacheTest$Inner.class", "test/ClazzCacheTest.class", "test/ClazzTest$Catching.class"
+			}) {
+				Resource r = new FileResource(IO.getFile("bin/" + name));
+
+				Clazz parsed = new Clazz(a, name, r);
+				parsed.parseClassFile();
+
+				assertEquals(0, countEntries());
+				Clazz miss = cache.parse(a, name, r);
+				assertEquals(1, countEntries());
+				assertSameState(parsed, miss);
+
+				Clazz hit = cache.parse(a, name, r);
+				assertEquals(1, countEntries());
+				assertSameState(parsed, hit);
+				for (QUERY query : QUERY.values()) {
+					Instruction instr = new Instruction(query == QUERY.VERSION ? "49" : "*");
+					assertEquals(query.toString(), parsed.is(query, instr, a), hit.is(query, instr, a));
+				}
+				cache.clear();
+			}
+		}
+		finally {
+			a.close();
+		}
+	}
+
+	/**
+	 * The state of a class that has been changed after the parse, as the
+	 * differ does, must survive the cache
+	 */
+	public void testInnerAccessAndDeprecated() throws Exception {
+		Analyzer a = new Analyzer();
+		try {
+			Clazz c = new Clazz(a, "", null);
+			c.parseClassFile(new FileInputStream("bin/test/ClazzCacheTest$Inner.class"), null);
+			c.setInnerAccess(Modifier.PUBLIC | Modifier.STATIC);
+			c.setDeprecated(true);
+
+			Clazz copy = new Clazz(a, "", null);
+			copy.setSummary(c.getSummary());
+			assertSameState(c, copy);
+			assertTrue(copy.isDeprecated());
+			assertEquals(Modifier.PUBLIC | Modifier.STATIC, copy.getAccess());
+		}
+		finally {
+			a.close();
+		}
+	}
+
+	/**
+	 * Entries are keyed by content, a changed class file must not use the
+	 * entry of the old content
+	 */
+	public void testStaleness() throws Exception {
+		Analyzer a = new Analyzer();
+		try {
+			ClazzCache cache = new ClazzCache(tmp);
+			File f = new File(tmp, "C.class");
+			IO.copy(IO.getFile("bin/test/ClazzCacheTest$Inner.class"), f);
+			Resource r = new FileResource(f);
+
+			Clazz first = cache.parse(a, "C.class", r);
+			assertEquals("test.ClazzCacheTest$Inner", first.getFQN());
+			assertEquals(1, countEntries());
+
+			IO.copy(IO.getFile("bin/test/ClazzTest$Catching.class"), f);
+			Clazz second = cache.parse(a, "C.class", new FileResource(f));
+			assertEquals("test.ClazzTest$Catching", second.getFQN());
+			assertEquals(2, countEntries());
+		}
+		finally {
+			a.close();
+		}
+	}
+
+	/**
+	 * A damaged entry is parsed again and overwritten
+	 */
+	public void testDamagedEntry() throws Exception {
+		Analyzer a = new Analyzer();
+		try {
+			ClazzCache cache = new ClazzCache(tmp);
+			Resource r = new FileResource(IO.getFile("bin/test/ClazzCacheTest$Inner.class"));
+			cache.parse(a, "Inner.class", r);
+			List<File> entries = entries();
+			assertEquals(1, entries.size());
+			IO.store("{ garbage", entries.get(0));
+
+			Clazz c = cache.parse(a, "Inner.class", r);
+			assertEquals("test.ClazzCacheTest$Inner", c.getFQN());
+			assertTrue(IO.collect(entries.get(0)).contains("test/ClazzCacheTest$Inner"));
+		}
+		finally {
+			a.close();
+		}
+	}
+
+	/**
+	 * The workspace cache must be enabled explicitly
+	 */
+	public void testWorkspaceOptIn() throws Exception {
+		Workspace ws = new Workspace(IO.getFile("testresources/ws"));
+		try {
+			assertNull(ws.getClazzCache());
+			ws.setProperty(Constants.CLASSCACHE, "true");
+			assertNotNull(ws.getClazzCache());
+		}
+		finally {
+			ws.close();
+		}
+	}
+
+	/**
+	 * The cache can also be enabled in the bnd.bnd file of a project
+	 */
+	public void testProjectOptIn() throws Exception {
+		Workspace ws = new Workspace(IO.getFile("testresources/ws"));
+		try {
+			Project project = ws.getProject("p1");
+			assertNull(ws.getClazzCache(project));
+			project.setProperty(Constants.CLASSCACHE, "true");
+			assertNotNull(ws.getClazzCache(project));
+			assertNull(ws.getClazzCache());
+		}
+		finally {
+			ws.close();
+		}
+	}
+
+	private void assertSameState(Clazz expected, Clazz actual) throws Exception {
+		for (Field f : Clazz.class.getDeclaredFields()) {
+			if (Modifier.isStatic(f.getModifiers()))
+				continue;
+
+			String name = f.getName();
+			// Identity of the class and state that only lives during a parse
+			if (name.equals("path") || name.equals("resource") || name.equals("analyzer") || name.equals("forName")
+					|| name.equals("class$") || name.equals("detectLdc"))
+				continue;
+
+			f.setAccessible(true);
+			Object e = f.get(expected);
+			Object a = f.get(actual);
+			if (e instanceof Object[])
+				assertTrue(name, Arrays.equals((Object[]) e, (Object[]) a));
+			else
+				assertEquals(name, e, a);
+		}
+	}
+
+	private int countEntries() {
+		return entries().size();
+	}
+
+	private List<File> entries() {
+		List<File> entries = new ArrayList<File>();
+		File[] dirs = new File(tmp, "v2").listFiles();
+		if (dirs != null)
+			for (File dir : dirs)
+				for (File f : dir.listFiles())
+					entries.add(f);
+		return entries;
+	}
+}
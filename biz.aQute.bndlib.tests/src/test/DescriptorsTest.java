@@ -1,7 +1,11 @@
 package test;
 
+import java.util.*;
+import java.util.concurrent.*;
+
 import junit.framework.*;
 import aQute.bnd.osgi.*;
+import aQute.bnd.osgi.Descriptors.Descriptor;
 import aQute.bnd.osgi.Descriptors.PackageRef;
 import aQute.bnd.osgi.Descriptors.TypeRef;
 
@@ -20,4 +24,74 @@ public class DescriptorsTest extends TestCase {
 		assertTrue(a == b);
 
 	}
+
+	public static void testConcurrentInterning() throws Exception {
+		final Descriptors d = new Descriptors();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<List<Object>>> futures = new ArrayList<Future<List<Object>>>();
+			for (int t = 0; t < 4; t++) {
+				futures.add(executor.submit(new Callable<List<Object>>() {
+					public List<Object> call() throws Exception {
+						List<Object> refs = new ArrayList<Object>();
+						for (int i = 0; i < 1000; i++) {
+							refs.add(d.getTypeRef("com/example/p" + (i % 10) + "/C" + i));
+							refs.add(d.getPackageRef("com.example.p" + (i % 10)));
+							refs.add(d.getDescriptor("(Lcom/example/p" + (i % 10) + "/C" + i + ";)V"));
+						}
+						return refs;
+					}
+				}));
+			}
+			List<Object> first = futures.get(0).get();
+			for (Future<List<Object>> f : futures) {
+				List<Object> refs = f.get();
+				for (int i = 0; i < refs.size(); i++)
+					assertSame(first.get(i), refs.get(i));
+			}
+			Descriptor descriptor = (Descriptor) first.get(2);
+			assertTrue(descriptor.getPrototype()[0] == first.get(0));
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	public static void testShared() {
+		Descriptors shared = Descriptors.getShared();
+		assertTrue(shared == Descriptors.getShared());
+
+		TypeRef a = shared.getTypeRef("com/example/Shared");
+		TypeRef b = shared.getTypeRef("Lcom/example/Shared;");
+		assertTrue(a == b);
+		assertTrue(a.getPackageRef() == shared.getPackageRef("com.example"));
+		assertEquals(".", shared.getPackageRef("").getFQN());
+		assertFalse(a == new Descriptors().getTypeRef("com/example/Shared"));
+	}
+
+	/**
+	 * The project collects the packages of its sub bundles by reference, a
+	 * sub builder therefore never shares the references of others
+	 */
+	public static void testSubBuilderHasOwnReferences() throws Exception {
+		Builder parent = new Builder();
+		try {
+			parent.setProperty(Constants.SHAREDDESCRIPTORS, "true");
+			Builder sub = parent.getSubBuilder();
+			assertFalse(sub.getTypeRef("com/example/Foo") == parent.getTypeRef("com/example/Foo"));
+			assertTrue(parent.getTypeRef("com/example/Foo") == Descriptors.getShared().getTypeRef("com/example/Foo"));
+		}
+		finally {
+			parent.close();
+		}
+
+		Analyzer a = new Analyzer();
+		a.setProperty(Constants.SHAREDDESCRIPTORS, "true");
+		Analyzer b = new Analyzer();
+		b.setProperty(Constants.SHAREDDESCRIPTORS, "true");
+		assertTrue(a.getPackageRef("com.example") == b.getPackageRef("com.example"));
+		assertFalse(new Analyzer().getPackageRef("com.example") == a.getPackageRef("com.example"));
+		a.close();
+		b.close();
+	}
 }
@@ -38,6 +38,19 @@ public class InstructionTest extends TestCase {
 
 	}
 
+	public static void testPrefix() {
+		assertEquals("com.foo", new Instruction("com.foo.*").getPrefix());
+		assertEquals("com.foo", new Instruction("!com.foo.*~").getPrefix());
+		assertEquals("com.f", new Instruction("com.f?o").getPrefix());
+		assertEquals("-plugin", new Instruction("-plugin|-plugin.*").getPrefix());
+		assertEquals("a", new Instruction("ab*|ac").getPrefix());
+		assertEquals("", new Instruction("a*|b").getPrefix());
+		assertEquals("", new Instruction("*").getPrefix());
+		assertEquals("", new Instruction("com.foo.*:i").getPrefix());
+		assertEquals("", new Instruction("(com|org).*").getPrefix());
+		assertEquals("literal", new Instruction("=literal").getPrefix());
+	}
+
 	public static void testLiteral() {
 		assertTrue(new Instruction("literal").isLiteral());
 		assertTrue(new Instruction("literal").matches("literal"));
@@ -211,6 +211,17 @@ public class MacroTest extends TestCase {
 		assertEquals( "a\nb\nc\n",s);
 	}
 	
+	/**
+	 * Test splitting the command arguments
+	 */
+	public void testCommandArguments() throws Exception {
+		Processor p = new Processor();
+		assertEquals("x;y", p.getReplacer().process("${replace;a;a;x\\;y}"));
+		assertEquals("a,b", p.getReplacer().process("${sort;b,a;;}"));
+		assertEquals("${no-such-command;a}", p.getReplacer().process("${no-such-command;a}"));
+		assertEquals("plain text", p.getReplacer().process("plain text"));
+	}
+
 	/**
 	 * Test the custom macros
 	 */
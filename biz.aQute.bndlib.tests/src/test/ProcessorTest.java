@@ -30,6 +30,27 @@ public class ProcessorTest extends TestCase {
 	public static void testPlugins() {
 
 	}
+
+	public static void testWildcardKeys() throws IOException {
+		Processor top = new Processor();
+		top.setProperty("-plugin.a", "A");
+		top.setProperty("-pluginx", "X");
+		Processor p = new Processor(top);
+		p.setProperty("-plugin", "P");
+		assertEquals("P,A", p.mergeProperties("-plugin"));
+
+		// Changes are seen, also when made directly on the properties
+		p.getProperties().put("-plugin.b", "B");
+		top.getProperties().remove("-plugin.a");
+		assertEquals("P,B", p.mergeProperties("-plugin"));
+		top.setProperty("-plugin.c", "C");
+		assertEquals("P,B,C", p.mergeProperties("-plugin"));
+		p.setParent(new Processor());
+		assertEquals("P,B", p.mergeProperties("-plugin"));
+		assertEquals("P,B", p.getProperty("-plugin|-plugin.b|x*"));
+		p.close();
+		top.close();
+	}
 	
 	public void testFixupMessages() throws IOException {
 		Processor p = new Processor();
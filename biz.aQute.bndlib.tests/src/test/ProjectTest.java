@@ -176,6 +176,50 @@ public class ProjectTest extends TestCase {
 		assertEquals(0, runbundles.size());
 	}
 
+	/**
+	 * With -parallelpaths the project clauses are still resolved on the
+	 * calling thread, a project that refers to itself must report the circular
+	 * dependency and not wait for itself
+	 */
+	public void testRunBundlesContainsSelfParallel() throws Exception {
+		Workspace ws = getWorkspace(IO.getFile("testresources/ws"));
+		Project top = ws.getProject("p1");
+		top.setDelayRunDependencies(false);
+		top.setProperty(Constants.PARALLELPATHS, "true");
+		top.setProperty("-runbundles",
+				"p1;version=latest,org.apache.felix.configadmin;version='[1.0.1,1.0.1]',org.apache.felix.configadmin;version='[1.1.0,1.1.0]'");
+		top.setChanged();
+		top.isStale();
+		Collection<Container> runbundles = top.getRunbundles();
+		assertTrue(top.check("Circular dependency"));
+		assertNotNull(runbundles);
+		assertEquals(0, runbundles.size());
+	}
+
+	/**
+	 * The bundles fetched concurrently with -parallelpaths must be the same as
+	 * the bundles looked up one by one
+	 */
+	public void testParallelPaths() throws Exception {
+		Workspace ws = getWorkspace(IO.getFile("testresources/ws"));
+		Project top = ws.getProject("p1");
+		String path = "org.apache.felix.configadmin;version='[1.0.1,1.0.1]',org.apache.felix.configadmin;version=latest,"
+				+ "org.apache.felix.ipojo;version=1.0,p2;version=latest,org.apache.felix.configadmin;version='[1.1.0,1.1.0]',"
+				+ "does.not.exist;version=1";
+
+		List<Container> serial = top.getBundles(Strategy.HIGHEST, path, "test");
+		top.setProperty(Constants.PARALLELPATHS, "true");
+		List<Container> parallel = top.getBundles(Strategy.HIGHEST, path, "test");
+
+		assertEquals(6, serial.size());
+		assertEquals(serial, parallel);
+		for (int i = 0; i < serial.size(); i++) {
+			assertEquals(serial.get(i).getFile(), parallel.get(i).getFile());
+			assertEquals(serial.get(i).getError(), parallel.get(i).getError());
+		}
+		assertTrue(top.check("Cannot find /error/does.not.exist"));
+	}
+
 	/**
 	 * Test 2 equal bsns but diff. versions
 	 */
@@ -246,6 +290,61 @@ public class ProjectTest extends TestCase {
 		// assertFalse(bottom.isStale());
 	}
 
+	/**
+	 * The build state compares the content of the inputs, a file that is only
+	 * touched does not make a project stale
+	 */
+	public void testBuildState() throws Exception {
+		Workspace ws = getWorkspace(IO.getFile("testresources/ws"));
+		ws.setOffline(false);
+		Project top = ws.getProject("p-stale");
+		Project bottom = ws.getProject("p-stale-dep");
+		bottom.build();
+		top.build();
+		assertTrue(top.check());
+		assertTrue(bottom.check());
+		assertFalse(bottom.isStale());
+		assertFalse(top.isStale());
+		File jar = top.getBuildFiles(false)[0];
+		long built = jar.lastModified();
+
+		// Touch the bnd file and the jar of the dependency
+		File bnd = top.getPropertiesFile();
+		bnd.setLastModified(bnd.lastModified() + 10000);
+		File dep = bottom.getBuildFiles(false)[0];
+		long depBuilt = dep.lastModified();
+		dep.setLastModified(depBuilt + 10000);
+		assertFalse(top.isStale());
+		assertEquals(built, top.build()[0].lastModified());
+		dep.setLastModified(depBuilt);
+
+		// Change the content of the bnd file, the jar is made older so it
+		// is written again within the same millisecond
+		IO.store(IO.collect(bnd) + "\nX-Test: 1\n", bnd);
+		assertTrue(top.isStale());
+		top.refresh();
+		jar.setLastModified(built - 10000);
+		top.build();
+		assertTrue(top.check());
+		assertTrue(jar.lastModified() > built - 10000);
+		assertFalse(top.isStale());
+		built = jar.lastModified();
+
+		// Change the dependency
+		File depBnd = bottom.getPropertiesFile();
+		IO.store(IO.collect(depBnd).replace("hello", "world"), depBnd);
+		assertTrue(bottom.isStale());
+		assertTrue(top.isStale());
+		bottom.refresh();
+		dep.setLastModified(depBuilt - 10000);
+		bottom.build();
+		assertTrue(bottom.check());
+		assertFalse(bottom.isStale());
+		assertTrue(top.isStale());
+		top.build();
+		assertFalse(top.isStale());
+	}
+
 	private  void stale(Project project, boolean b) throws Exception {
 		File file = project.getBuildFiles(false)[0];
 		if (b)
@@ -273,6 +372,80 @@ public class ProjectTest extends TestCase {
 		assertEquals(1, bundles.size());
 	}
 
+	/**
+	 * The sub builders only share the classpath jars of their parent when they
+	 * are built in parallel. A shared jar is closed by the parent, not by the
+	 * sub builder.
+	 */
+	public void testSubBuilderClasspath() throws Exception {
+		Workspace ws = getWorkspace("testresources/ws");
+		Project project = ws.getProject("p4-sub");
+
+		ProjectBuilder parent = project.getBuilder(null);
+		try {
+			List<Jar> classpath = parent.getClasspath();
+			assertFalse(classpath.isEmpty());
+			List<Builder> subs = parent.getSubBuilders();
+			assertEquals(3, subs.size());
+			for (Builder sub : subs) {
+				assertEquals(classpath.size(), sub.getClasspath().size());
+				for (Jar jar : sub.getClasspath())
+					assertFalse(containsSame(classpath, jar));
+			}
+
+			Jar own = subs.get(0).getClasspath().get(0);
+			subs.get(0).close();
+			assertTrue(isClosed(own));
+			assertFalse(isClosed(classpath.get(0)));
+		}
+		finally {
+			parent.close();
+		}
+
+		project.setProperty(Constants.PARALLELSUB, "true");
+		parent = project.getBuilder(null);
+		try {
+			List<Jar> classpath = parent.getClasspath();
+			List<Builder> subs = parent.getSubBuilders();
+			assertEquals(3, subs.size());
+			for (Builder sub : subs) {
+				assertEquals(classpath.size(), sub.getClasspath().size());
+				for (Jar jar : sub.getClasspath())
+					assertTrue(containsSame(classpath, jar));
+			}
+
+			subs.get(0).close();
+			for (Jar jar : classpath)
+				assertFalse(isClosed(jar));
+			assertFalse(isClosed(subs.get(1).getClasspath().get(0)));
+
+			parent.close();
+			for (Jar jar : classpath)
+				assertTrue(isClosed(jar));
+		}
+		finally {
+			parent.close();
+		}
+		ws.close();
+	}
+
+	private boolean containsSame(List<Jar> jars, Jar jar) {
+		for (Jar j : jars)
+			if (j == jar)
+				return true;
+		return false;
+	}
+
+	private boolean isClosed(Jar jar) {
+		try {
+			jar.getResources();
+			return false;
+		}
+		catch (RuntimeException e) {
+			return true;
+		}
+	}
+
 	/**
 	 * Check if the getSubBuilders properly predicts the output.
 	 */
@@ -0,0 +1,115 @@
+package test;
+
+import static org.mockito.Mockito.*;
+
+import java.io.*;
+import java.util.*;
+
+import junit.framework.*;
+import aQute.bnd.build.*;
+import aQute.bnd.osgi.*;
+import aQute.bnd.service.*;
+import aQute.bnd.version.*;
+import aQute.lib.io.*;
+
+/**
+ * With -versioncache the versions of the repositories and the workspace
+ * projects are shared by the projects of a workspace until something changes.
+ */
+public class VersionCacheTest extends TestCase {
+	File	tmp	= new File("tmp-versioncache");
+
+	@Override
+	protected void setUp() throws Exception {
+		IO.delete(tmp);
+		IO.copy(IO.getFile("testresources/ws"), tmp);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		IO.delete(tmp);
+	}
+
+	/**
+	 * A repository is asked once for the versions of a bsn, until it is
+	 * refreshed
+	 */
+	public void testRepositoryVersions() throws Exception {
+		Workspace ws = new Workspace(tmp);
+		try {
+			ws.setProperty(Constants.VERSIONCACHE, "true");
+			RepositoryPlugin repo = mock(RepositoryPlugin.class);
+			when(repo.versions("com.example.cached")).thenReturn(new TreeSet<Version>(Arrays.asList(new Version("1.0.0"))));
+			ws.addBasicPlugin(repo);
+
+			Project p1 = ws.getProject("p1");
+			Project p2 = ws.getProject("p2");
+			p1.getBundle("com.example.cached", "[1,2)", Strategy.HIGHEST, null);
+			p2.getBundle("com.example.cached", "[1,2)", Strategy.HIGHEST, null);
+			verify(repo, times(1)).versions("com.example.cached");
+
+			for (RepositoryListenerPlugin listener : ws.getPlugins(RepositoryListenerPlugin.class))
+				listener.repositoryRefreshed(repo);
+			p1.getBundle("com.example.cached", "[1,2)", Strategy.HIGHEST, null);
+			verify(repo, times(2)).versions("com.example.cached");
+
+			ws.refreshRepositories();
+			p2.getBundle("com.example.cached", "[1,2)", Strategy.HIGHEST, null);
+			verify(repo, times(3)).versions("com.example.cached");
+		}
+		finally {
+			ws.close();
+		}
+	}
+
+	/**
+	 * Without -versioncache the repositories are asked for each lookup, so a
+	 * bundle that another process added is seen
+	 */
+	public void testNotCached() throws Exception {
+		Workspace ws = new Workspace(tmp);
+		try {
+			RepositoryPlugin repo = mock(RepositoryPlugin.class);
+			when(repo.versions("com.example.cached")).thenReturn(new TreeSet<Version>(Arrays.asList(new Version("1.0.0"))));
+			ws.addBasicPlugin(repo);
+
+			Project p1 = ws.getProject("p1");
+			Project p2 = ws.getProject("p2");
+			p1.getBundle("com.example.cached", "[1,2)", Strategy.HIGHEST, null);
+			p2.getBundle("com.example.cached", "[1,2)", Strategy.HIGHEST, null);
+			verify(repo, times(2)).versions("com.example.cached");
+		}
+		finally {
+			ws.close();
+		}
+	}
+
+	/**
+	 * A project that changes its version is found with its new version after
+	 * it is refreshed
+	 */
+	public void testWorkspaceVersions() throws Exception {
+		Workspace ws = new Workspace(tmp);
+		try {
+			ws.setProperty(Constants.VERSIONCACHE, "true");
+			Project p1 = ws.getProject("p1");
+			Project p2 = ws.getProject("p2");
+
+			Container c = p2.getBundle("p1", "[1,2)", Strategy.HIGHEST, null);
+			assertEquals(Container.TYPE.PROJECT, c.getType());
+			c = p2.getBundle("p1", "[3,4)", Strategy.HIGHEST, null);
+			assertEquals(Container.TYPE.ERROR, c.getType());
+
+			IO.store("Bundle-Version: 3.0.0\n", p1.getPropertiesFile());
+			p1.refresh();
+
+			c = p2.getBundle("p1", "[3,4)", Strategy.HIGHEST, null);
+			assertEquals(Container.TYPE.PROJECT, c.getType());
+			c = p2.getBundle("p1", "[1,2)", Strategy.HIGHEST, null);
+			assertEquals(Container.TYPE.ERROR, c.getType());
+		}
+		finally {
+			ws.close();
+		}
+	}
+}
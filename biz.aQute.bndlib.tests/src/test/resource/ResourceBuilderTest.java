@@ -0,0 +1,79 @@
+package test.resource;
+
+import java.util.*;
+
+import junit.framework.*;
+
+import org.osgi.framework.*;
+import org.osgi.resource.*;
+
+import aQute.bnd.osgi.resource.*;
+
+public class ResourceBuilderTest extends TestCase {
+
+	public void testCompactModel() throws Exception {
+		Map<String,Object> attributes = new HashMap<String,Object>();
+		attributes.put("osgi.wiring.package", new String("com.example"));
+		attributes.put("version", new Version("1.2.3"));
+		attributes.put("bundle-symbolic-name", "com.example.bundle");
+
+		ResourceBuilder rb = new ResourceBuilder();
+		rb.addCapability(new CapReqBuilder("osgi.wiring.package").addAttributes(attributes).addDirective("uses",
+				"com.example.api"));
+		rb.addCapability(new CapReqBuilder("osgi.wiring.package").addAttribute("osgi.wiring.package", "com.example.api")
+				.addAttribute("version", new Version("1.2.3")));
+		rb.addCapability(new CapReqBuilder("osgi.identity").addAttribute("osgi.identity", "com.example.bundle"));
+		rb.addRequirement(new CapReqBuilder("osgi.wiring.package").addDirective("filter",
+				"(osgi.wiring.package=org.osgi.framework)"));
+		rb.addRequirement(new CapReqBuilder("osgi.wiring.package").addDirective("filter",
+				"(osgi.wiring.package=org.osgi.framework)").addDirective("resolution", "optional"));
+		Resource r = rb.build();
+
+		assertEquals(3, r.getCapabilities(null).size());
+		assertEquals(2, r.getCapabilities("osgi.wiring.package").size());
+		assertEquals(1, r.getCapabilities("osgi.identity").size());
+		assertEquals(0, r.getCapabilities("osgi.service").size());
+		assertEquals(2, r.getRequirements("osgi.wiring.package").size());
+
+		// The attributes behave like a map
+		Capability capability = r.getCapabilities(null).get(0);
+		assertEquals(attributes, capability.getAttributes());
+		assertEquals(capability.getAttributes(), attributes);
+		assertEquals(attributes.hashCode(), capability.getAttributes().hashCode());
+		assertEquals(attributes.keySet(), capability.getAttributes().keySet());
+		assertEquals("com.example", capability.getAttributes().get("osgi.wiring.package"));
+		assertNull(capability.getAttributes().get("missing"));
+		assertNull(capability.getAttributes().get(null));
+		assertEquals(Collections.singletonMap("uses", "com.example.api"), capability.getDirectives());
+		assertEquals(Collections.emptyMap(), r.getCapabilities(null).get(2).getDirectives());
+
+		// Values and directives are shared
+		Capability api = r.getCapabilities(null).get(1);
+		assertSame(capability.getAttributes().get("version"), api.getAttributes().get("version"));
+		assertSame(capability.getAttributes().get("bundle-symbolic-name"), r.getCapabilities("osgi.identity").get(0)
+				.getAttributes().get("osgi.identity"));
+
+		ResourceBuilder other = new ResourceBuilder();
+		other.addRequirement(new CapReqBuilder("osgi.wiring.package").addDirective("filter",
+				"(osgi.wiring.package=org.osgi.framework)"));
+		assertSame(r.getRequirements(null).get(0).getDirectives(), other.build().getRequirements(null).get(0)
+				.getDirectives());
+
+		// The model is immutable
+		try {
+			capability.getAttributes().put("x", "y");
+			fail();
+		}
+		catch (UnsupportedOperationException e) {}
+		try {
+			capability.getAttributes().entrySet().iterator().next().setValue("y");
+			fail();
+		}
+		catch (UnsupportedOperationException e) {}
+		try {
+			r.getCapabilities(null).clear();
+			fail();
+		}
+		catch (UnsupportedOperationException e) {}
+	}
+}
@@ -0,0 +1,201 @@
+package aQute.bnd.build;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import aQute.bnd.osgi.*;
+
+/**
+ * Builds a set of projects in dependency order while building independent
+ * projects concurrently. The projects and the projects they depend on form a
+ * graph through {@link Project#getDependson()}. A project is started as soon
+ * as all the projects it depends on are built, there is no global ordering
+ * beyond that. If a project fails then the projects that depend on it are not
+ * built, other projects are still built.
+ * <p>
+ * The errors and warnings of each project are copied to a separate reporter
+ * when the project is done so the messages of concurrent builds are not
+ * interleaved, the project keeps its own messages. These reporters are returned in the order the projects
+ * finished.
+ * <p>
+ * The number of concurrent builds is set with {@link Constants#BUILDTHREADS}
+ * in the workspace and defaults to the number of available processors.
+ */
+public class BuildScheduler {
+
+	/**
+	 * The action that is performed for each project.
+	 */
+	public interface Action {
+		void perform(Project project) throws Exception;
+	}
+
+	final Workspace	workspace;
+	int				threads;
+
+	public BuildScheduler(Workspace workspace) {
+		this.workspace = workspace;
+		this.threads = getThreads(workspace);
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Build the given projects, and the projects they depend on.
+	 */
+	public Map<Project,Processor> build(Collection<Project> projects, final boolean test) throws Exception {
+		return run(projects, new Action() {
+			public void perform(Project project) throws Exception {
+				project.build(test);
+			}
+		});
+	}
+
+	/**
+	 * Perform the action on the given projects and the projects they depend
+	 * on. The action is performed on a project after it has completed
+	 * successfully on all the projects it depends on.
+	 *
+	 * @return a reporter with the messages of each project, in the order the
+	 *         projects finished
+	 */
+	public Map<Project,Processor> run(Collection<Project> projects, final Action action) throws Exception {
+
+		//
+		// Calculate the graph up front, in this thread. This prepares all
+		// projects before any build starts.
+		//
+
+		Set<Project> all = new LinkedHashSet<Project>();
+		for (Project project : projects) {
+			all.addAll(project.getDependson());
+			all.add(project);
+		}
+
+		Map<Project,Set<Project>> dependencies = new HashMap<Project,Set<Project>>();
+		Map<Project,List<Project>> dependents = new HashMap<Project,List<Project>>();
+		for (Project project : all) {
+			Set<Project> deps = new LinkedHashSet<Project>(project.getDependson());
+			deps.retainAll(all);
+			deps.remove(project);
+			dependencies.put(project, deps);
+			for (Project dep : deps) {
+				List<Project> list = dependents.get(dep);
+				if (list == null) {
+					list = new ArrayList<Project>();
+					dependents.put(dep, list);
+				}
+				list.add(project);
+			}
+		}
+
+		Map<Project,Processor> result = new LinkedHashMap<Project,Processor>();
+		Map<Project,Integer> waiting = new HashMap<Project,Integer>();
+		Set<Project> failed = new HashSet<Project>();
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+		try {
+			CompletionService<Project> completion = new ExecutorCompletionService<Project>(executor);
+			int running = 0;
+
+			for (Project project : all) {
+				int n = dependencies.get(project).size();
+				waiting.put(project, n);
+				if (n == 0) {
+					submit(completion, project, action);
+					running++;
+				}
+			}
+
+			while (running > 0) {
+				Project done = completion.take().get();
+				running--;
+
+				if (!done.isOk())
+					failed.add(done);
+				Processor reporter = new Processor();
+				reporter.copyInfo(done, "");
+				result.put(done, reporter);
+
+				//
+				// Start the dependents that no longer wait for anything and
+				// skip the ones that depend on a failed project
+				//
+
+				Deque<Project> ready = new ArrayDeque<Project>();
+				ready.add(done);
+				while (!ready.isEmpty()) {
+					Project p = ready.poll();
+					List<Project> list = dependents.get(p);
+					if (list == null)
+						continue;
+
+					for (Project dependent : list) {
+						int n = waiting.get(dependent) - 1;
+						waiting.put(dependent, n);
+						if (n > 0)
+							continue;
+
+						Set<Project> failedDependencies = new LinkedHashSet<Project>(dependencies.get(dependent));
+						failedDependencies.retainAll(failed);
+						if (failedDependencies.isEmpty()) {
+							submit(completion, dependent, action);
+							running++;
+						} else {
+							Processor skipped = new Processor();
+							skipped.error("Not built because the projects it depends on failed: %s", failedDependencies);
+							failed.add(dependent);
+							result.put(dependent, skipped);
+							ready.add(dependent);
+						}
+					}
+				}
+			}
+
+			for (Project project : all) {
+				if (!result.containsKey(project)) {
+					Processor circular = new Processor();
+					circular.error("Not built because of a circular dependency");
+					result.put(project, circular);
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		return result;
+	}
+
+	private void submit(CompletionService<Project> completion, final Project project, final Action action) {
+		completion.submit(new Callable<Project>() {
+			public Project call() {
+				try {
+					action.perform(project);
+				}
+				catch (Exception e) {
+					project.exception(e, "Building %s failed: %s", project, e);
+				}
+				return project;
+			}
+		});
+	}
+
+	static int getThreads(Workspace workspace) {
+		String threads = workspace.getProperty(Constants.BUILDTHREADS);
+		if (threads != null) {
+			try {
+				return Integer.parseInt(threads.trim());
+			}
+			catch (NumberFormatException e) {
+				workspace.error("%s must be a number, is %s", Constants.BUILDTHREADS, threads);
+			}
+		}
+		return Runtime.getRuntime().availableProcessors();
+	}
+}
@@ -0,0 +1,163 @@
+package aQute.bnd.build;
+
+import java.io.*;
+import java.util.*;
+
+import aQute.lib.io.*;
+import aQute.libg.cryptography.*;
+
+/**
+ * The state of the inputs of a project when it was last built. For each input
+ * file the state records the length, the modification time and the SHA-1 of
+ * the content. A file whose length and modification time did not change is
+ * assumed to be unchanged, otherwise its digest is compared. This makes the
+ * check cheap for the common case while a file that was only touched, for
+ * example by a checkout, does not make the project stale.
+ * <p>
+ * The state also records the modification time of the build files. A build
+ * file that is missing or older than when it was built, for example because
+ * it was replaced by an older copy, makes the project stale.
+ * <p>
+ * The state is stored as a text file with one line per input:
+ * {@code sha1 TAB length TAB lastModified TAB path}. A build file has a
+ * {@code -} instead of the digest.
+ */
+class BuildState {
+	final static class Input {
+		final String	sha;
+		final long		length;
+		final long		lastModified;
+
+		Input(String sha, long length, long lastModified) {
+			this.sha = sha;
+			this.length = length;
+			this.lastModified = lastModified;
+		}
+
+		boolean isSameFile(File file) {
+			return file.length() == length && file.lastModified() == lastModified;
+		}
+	}
+
+	final static String		OUTPUT	= "-";
+
+	final Map<String,Input>	inputs	= new TreeMap<String,Input>();
+	final Map<String,Input>	outputs	= new TreeMap<String,Input>();
+	boolean					touched;
+
+	/**
+	 * Read a build state file
+	 *
+	 * @return the state or null if there is no or no valid state
+	 */
+	static BuildState read(File file) {
+		if (!file.isFile())
+			return null;
+
+		try {
+			BuildState state = new BuildState();
+			BufferedReader rdr = IO.reader(file);
+			try {
+				for (String line = rdr.readLine(); line != null; line = rdr.readLine()) {
+					String[] parts = line.split("\t", 4);
+					if (parts.length != 4)
+						return null;
+					Input input = new Input(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+					if (OUTPUT.equals(parts[0]))
+						state.outputs.put(parts[3], input);
+					else
+						state.inputs.put(parts[3], input);
+				}
+			}
+			finally {
+				rdr.close();
+			}
+			return state;
+		}
+		catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Calculate the state for the given input files and build files. The
+	 * digests of the previous state are reused for files that did not change
+	 * length or modification time.
+	 */
+	static BuildState create(Collection<File> files, File[] outputs, BuildState previous) throws Exception {
+		BuildState state = new BuildState();
+		for (File file : outputs)
+			state.outputs.put(file.getAbsolutePath(), new Input(OUTPUT, file.length(), file.lastModified()));
+
+		for (File file : files) {
+			String path = file.getAbsolutePath();
+			Input input = previous == null ? null : previous.inputs.get(path);
+			if (input == null || !input.isSameFile(file))
+				input = new Input(SHA1.digest(file).asHex(), file.length(), file.lastModified());
+			state.inputs.put(path, input);
+		}
+		return state;
+	}
+
+	/**
+	 * Answer if the given files have the same content as when this state was
+	 * recorded and the build files are still there. When a file only has a
+	 * new modification time then the state is updated and {@link #touched} is
+	 * set so the caller can save it.
+	 */
+	boolean isUpToDate(Collection<File> files, File[] outputs) throws Exception {
+		if (outputs.length != this.outputs.size())
+			return false;
+
+		for (File file : outputs) {
+			Input output = this.outputs.get(file.getAbsolutePath());
+			if (output == null || !file.isFile() || file.lastModified() < output.lastModified)
+				return false;
+		}
+
+		if (files.size() != inputs.size())
+			return false;
+
+		for (File file : files) {
+			String path = file.getAbsolutePath();
+			Input input = inputs.get(path);
+			if (input == null || !file.isFile())
+				return false;
+
+			if (input.isSameFile(file))
+				continue;
+
+			if (file.length() != input.length)
+				return false;
+
+			String sha = SHA1.digest(file).asHex();
+			if (!sha.equals(input.sha))
+				return false;
+
+			inputs.put(path, new Input(sha, file.length(), file.lastModified()));
+			touched = true;
+		}
+		return true;
+	}
+
+	void write(File file) throws IOException {
+		Writer fw = IO.writer(file);
+		try {
+			write(fw, inputs);
+			write(fw, outputs);
+		}
+		finally {
+			fw.close();
+		}
+	}
+
+	private static void write(Writer fw, Map<String,Input> inputs) throws IOException {
+		for (Map.Entry<String,Input> e : inputs.entrySet()) {
+			Input input = e.getValue();
+			fw.append(input.sha).append('\t');
+			fw.append(Long.toString(input.length)).append('\t');
+			fw.append(Long.toString(input.lastModified)).append('\t');
+			fw.append(e.getKey()).append('\n');
+		}
+	}
+}
@@ -5,6 +5,7 @@ import java.lang.reflect.*;
 import java.net.*;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.*;
 import java.util.concurrent.locks.*;
 import java.util.jar.*;
 import java.util.regex.*;
@@ -457,6 +458,8 @@ public class Project extends Processor {
 		Parameters bundles = new Parameters(spec);
 
 		try {
+			Map<String,BundleFetch> fetches = fetchBundlesInParallel(bundles, strategyx);
+
 			for (Iterator<Entry<String,Attrs>> i = bundles.entrySet().iterator(); i.hasNext();) {
 				Entry<String,Attrs> entry = i.next();
 				String bsn = removeDuplicateMarker(entry.getKey());
@@ -468,7 +471,7 @@ public class Project extends Processor {
 
 				if (versionRange != null) {
 					if (versionRange.equals(VERSION_ATTR_LATEST) || versionRange.equals(VERSION_ATTR_SNAPSHOT)) {
-						found = getBundle(bsn, versionRange, strategyx, attrs);
+						found = getBundle(fetches, entry.getKey(), bsn, versionRange, strategyx, attrs);
 					}
 				}
 				if (found == null) {
@@ -503,7 +506,7 @@ public class Project extends Processor {
 							found = new Container(this, bsn, "file", Container.TYPE.EXTERNAL, f, error, attrs, null);
 						}
 					} else {
-						found = getBundle(bsn, versionRange, strategyx, attrs);
+						found = getBundle(fetches, entry.getKey(), bsn, versionRange, strategyx, attrs);
 					}
 				}
 
@@ -541,6 +544,117 @@ public class Project extends Processor {
 		return result;
 	}
 
+	/**
+	 * Fetches the bundle of a clause from the repositories on another thread.
+	 * The fetch only talks to the repositories, it reads the repository
+	 * versions into the version cache and starts the download of the version
+	 * the strategy selects. The container is still made on the calling thread
+	 * with {@link #getBundle(String, String, Strategy, Map)}, it then finds the
+	 * versions cached and the download done or under way. The fetch never
+	 * touches a workspace project since the calling thread may hold the lock
+	 * of the project while it waits for the fetch. Problems are ignored here,
+	 * they are reported when the container is made.
+	 */
+	class BundleFetch implements Callable<Object> {
+		final String				bsn;
+		final String				range;
+		final Strategy				strategy;
+		final Map<String,String>	attrs;
+		final FutureTask<Object>	task	= new FutureTask<Object>(this);
+
+		BundleFetch(String bsn, String range, Strategy strategy, Map<String,String> attrs) {
+			this.bsn = bsn;
+			this.range = range == null ? "0" : range;
+			this.strategy = strategy;
+			this.attrs = attrs;
+		}
+
+		public Object call() throws Exception {
+			boolean latest = VERSION_ATTR_LATEST.equals(range);
+			Strategy useStrategy = overrideStrategy(attrs, latest ? Strategy.HIGHEST : strategy);
+			List<RepositoryPlugin> plugins = workspace.getRepositories();
+
+			if (useStrategy == Strategy.EXACT) {
+				if (Verifier.isVersion(range)) {
+					Version version = new Version(range);
+					for (RepositoryPlugin plugin : plugins) {
+						if (plugin.get(bsn, version, attrs, new DownloadBlocker(null)) != null)
+							break;
+					}
+				}
+				return null;
+			}
+
+			VersionRange versionRange = new VersionRange(latest ? "0" : range);
+			SortedMap<Version,RepositoryPlugin> versions = new TreeMap<Version,RepositoryPlugin>();
+			for (Entry<RepositoryPlugin,SortedSet<Version>> entry : workspace.versionCache.getRepositoryVersions(bsn,
+					plugins).entrySet()) {
+				if (entry.getValue() != null) {
+					for (Version v : entry.getValue()) {
+						if (!versions.containsKey(v) && versionRange.includes(v))
+							versions.put(v, entry.getKey());
+					}
+				}
+			}
+
+			if (!versions.isEmpty()) {
+				Version version = useStrategy == Strategy.LOWEST ? versions.firstKey() : versions.lastKey();
+				versions.get(version).get(bsn, version, attrs, new DownloadBlocker(null));
+			}
+			return null;
+		}
+
+		void await() {
+			try {
+				task.get();
+			}
+			catch (Exception e) {
+				// reported when the container is made
+			}
+		}
+	}
+
+	/**
+	 * If {@link Constants#PARALLELPATHS} is set, start fetching the bundles of
+	 * all repository clauses of a path concurrently. The repository lookups
+	 * and downloads then overlap and we only wait for them when the
+	 * containers are made. Clauses that are or may be a workspace project are
+	 * not fetched, they are resolved on the calling thread as before. Returns
+	 * null when the bundles should be looked up one by one.
+	 */
+	private Map<String,BundleFetch> fetchBundlesInParallel(Parameters bundles, Strategy strategy) throws Exception {
+		if (bundles.size() < 2 || !isTrue(getProperty(PARALLELPATHS)))
+			return null;
+
+		// Make sure the repositories are created before they are shared
+		getWorkspace().getRepositories();
+
+		Map<String,BundleFetch> fetches = new HashMap<String,BundleFetch>();
+		for (Entry<String,Attrs> entry : bundles.entrySet()) {
+			String versionRange = entry.getValue().get("version");
+			if (VERSION_ATTR_PROJECT.equals(versionRange) || VERSION_ATTR_SNAPSHOT.equals(versionRange)
+					|| "file".equals(versionRange))
+				continue;
+
+			String bsn = removeDuplicateMarker(entry.getKey());
+			if (VERSION_ATTR_LATEST.equals(versionRange) && getBundleProject(bsn) != null)
+				continue;
+
+			BundleFetch fetch = new BundleFetch(bsn, versionRange, strategy, entry.getValue());
+			fetches.put(entry.getKey(), fetch);
+			getExecutor().execute(fetch.task);
+		}
+		return fetches;
+	}
+
+	private Container getBundle(Map<String,BundleFetch> fetches, String key, String bsn, String range,
+			Strategy strategy, Map<String,String> attrs) throws Exception {
+		BundleFetch fetch = fetches == null ? null : fetches.remove(key);
+		if (fetch != null)
+			fetch.await();
+		return getBundle(bsn, range, strategy, attrs);
+	}
+
 	/**
 	 * Just calls a new method with a default parm.
 	 *
@@ -942,17 +1056,16 @@ public class Project extends Processor {
 			// multiple repos we take the first
 
 			SortedMap<Version,RepositoryPlugin> versions = new TreeMap<Version,RepositoryPlugin>();
-			for (RepositoryPlugin plugin : plugins) {
-				try {
-					SortedSet<Version> vs = plugin.versions(bsn);
-					if (vs != null) {
-						for (Version v : vs) {
-							if (!versions.containsKey(v) && versionRange.includes(v))
-								versions.put(v, plugin);
-						}
+			for (Entry<RepositoryPlugin,SortedSet<Version>> entry : workspace.versionCache.getRepositoryVersions(bsn,
+					plugins).entrySet()) {
+				RepositoryPlugin plugin = entry.getKey();
+				SortedSet<Version> vs = entry.getValue();
+				if (vs != null) {
+					for (Version v : vs) {
+						if (!versions.containsKey(v) && versionRange.includes(v))
+							versions.put(v, plugin);
 					}
-				}
-				catch (UnsupportedOperationException ose) {
+				} else {
 					// We have a plugin that cannot list versions, try
 					// if it has this specific version
 					// The main reaosn for this code was the Maven Remote
@@ -976,7 +1089,7 @@ public class Project extends Processor {
 			// to indicate that it is a workspace project
 			//
 
-			SortedSet<Version> localVersions = getWorkspace().getWorkspaceRepository().versions(bsn);
+			SortedSet<Version> localVersions = workspace.versionCache.getWorkspaceVersions(bsn);
 			for (Version v : localVersions) {
 				if (!versions.containsKey(v) && versionRange.includes(v))
 					versions.put(v, null);
@@ -1093,13 +1206,23 @@ public class Project extends Processor {
 	 * @throws Exception
 	 */
 	private Container getBundleFromProject(String bsn, Map<String,String> attrs) throws Exception {
+		Project p = getBundleProject(bsn);
+		if (p == null)
+			return null;
+
+		return p.getDeliverable(bsn, attrs);
+	}
+
+	/**
+	 * Answer the workspace project that delivers the bsn, this is the project
+	 * with the bsn or a prefix of it as name
+	 */
+	private Project getBundleProject(String bsn) throws Exception {
 		String pname = bsn;
 		while (true) {
 			Project p = getWorkspace().getProject(pname);
-			if (p != null && p.isValid()) {
-				Container c = p.getDeliverable(bsn, attrs);
-				return c;
-			}
+			if (p != null && p.isValid())
+				return p;
 
 			int n = pname.lastIndexOf('.');
 			if (n <= 0)
@@ -1289,6 +1412,15 @@ public class Project extends Processor {
 
 	/**
 	 * Check if this project needs building. This is defined as:
+	 * <ul>
+	 * <li>The project has no build files</li>
+	 * <li>A project it depends on is stale</li>
+	 * <li>The content of an input differs from the last build, see
+	 * {@link #getBuildInputs()}</li>
+	 * </ul>
+	 * If the project has no build state, for example because it was built by
+	 * an older version, then the modification times of the build files are
+	 * compared with the bnd files and the build files of the dependencies.
 	 */
 	public boolean isStale() throws Exception {
 		if (workspace == null || workspace.isOffline()) {
@@ -1296,28 +1428,59 @@ public class Project extends Processor {
 			return true;
 		}
 
-		Set<Project> visited = new HashSet<Project>();
-		return isStale(visited);
+		return isStale(new HashMap<Project,Boolean>());
 	}
 
-	boolean isStale(Set<Project> visited) throws Exception {
-		// When we do not generate anything ...
-		if (isNoBundles())
-			return false;
+	/**
+	 * Check if the project is stale, the answer for each project visited is
+	 * remembered in the given map so shared dependencies are only checked
+	 * once.
+	 */
+	boolean isStale(Map<Project,Boolean> visited) throws Exception {
+		if (visited.containsKey(this)) {
+			Boolean stale = visited.get(this);
+			if (stale != null)
+				return stale;
 
-		if (visited.contains(this)) {
-			msgs.CircularDependencyContext_Message_(this.getName(), visited.toString());
+			msgs.CircularDependencyContext_Message_(this.getName(), visited.keySet().toString());
 			return false;
 		}
 
-		visited.add(this);
+		visited.put(this, null);
+		boolean stale = isStale0(visited);
+		visited.put(this, stale);
+		return stale;
+	}
 
-		long buildTime = 0;
+	private boolean isStale0(Map<Project,Boolean> visited) throws Exception {
+		// When we do not generate anything ...
+		if (isNoBundles())
+			return false;
 
 		files = getBuildFiles(false);
 		if (files == null)
 			return true;
 
+		for (Project dependency : getDependson()) {
+			if (dependency == this)
+				continue;
+
+			if (dependency.isStale(visited))
+				return true;
+		}
+
+		File stateFile = new File(getTarget(), BUILDSTATE);
+		BuildState state = BuildState.read(stateFile);
+		if (state != null) {
+			if (!state.isUpToDate(getBuildInputs(), files))
+				return true;
+
+			if (state.touched)
+				state.write(stateFile);
+			return false;
+		}
+
+		long buildTime = 0;
 		for (File f : files) {
 			if (f.lastModified() < lastModified())
 				return true;
@@ -1327,13 +1490,7 @@ public class Project extends Processor {
 		}
 
 		for (Project dependency : getDependson()) {
-			if (dependency == this)
-				continue;
-
-			if (dependency.isStale())
-				return true;
-
-			if (dependency.isNoBundles())
+			if (dependency == this || dependency.isNoBundles())
 				continue;
 
 			File[] deps = dependency.getBuildFiles();
@@ -1346,6 +1503,69 @@ public class Project extends Processor {
 		return false;
 	}
 
+	/**
+	 * Answer the files that a build of this project depends on. These are the
+	 * bnd files of the project and the workspace including the files they
+	 * include, the files on the buildpath, the class output and the build
+	 * files of the projects this project depends on.
+	 */
+	public Set<File> getBuildInputs() throws Exception {
+		Set<File> inputs = new LinkedHashSet<File>();
+		for (Processor p = this; p != null; p = p.getParent()) {
+			File propertiesFile = p.getPropertiesFile();
+			if (propertiesFile != null && propertiesFile.isFile())
+				inputs.add(propertiesFile.getAbsoluteFile());
+
+			List<File> included = p.getIncluded();
+			if (included != null) {
+				for (File f : included)
+					if (f.isFile())
+						inputs.add(f.getAbsoluteFile());
+			}
+		}
+
+		// sub bundles are defined in other bnd files in the project
+		File[] bndFiles = getBase().listFiles();
+		if (bndFiles != null) {
+			for (File f : bndFiles)
+				if (f.isFile() && f.getName().endsWith(".bnd"))
+					inputs.add(f.getAbsoluteFile());
+		}
+
+		for (Container c : Container.flatten(getBuildpath()))
+			addBuildInputs(inputs, c.getFile());
+
+		addBuildInputs(inputs, getOutput());
+
+		for (Project dependency : getDependson()) {
+			if (dependency == this || dependency.isNoBundles())
+				continue;
+
+			File[] deps = dependency.getBuildFiles(false);
+			if (deps != null) {
+				for (File f : deps)
+					inputs.add(f.getAbsoluteFile());
+			}
+		}
+		return inputs;
+	}
+
+	private static void addBuildInputs(Set<File> inputs, File file) {
+		if (file == null)
+			return;
+
+		if (file.isFile())
+			inputs.add(file.getAbsoluteFile());
+		else {
+			File[] children = file.listFiles();
+			if (children != null) {
+				Arrays.sort(children);
+				for (File child : children)
+					addBuildInputs(inputs, child);
+			}
+		}
+	}
+
 	/**
 	 * This method must only be called when it is sure that the project has been
 	 * build before in the same session. It is a bit yucky, but ant creates
@@ -1408,6 +1628,9 @@ public class Project extends Processor {
 
 		File bfs = new File(getTarget(), BUILDFILES);
 		bfs.delete();
+		File stateFile = new File(getTarget(), BUILDSTATE);
+		BuildState previous = BuildState.read(stateFile);
+		stateFile.delete();
 
 		files = null;
 		ProjectBuilder builder = getBuilder(null);
@@ -1446,6 +1669,14 @@ public class Project extends Processor {
 					fw.close();
 				}
 				getWorkspace().changedFile(bfs);
+
+				try {
+					BuildState.create(getBuildInputs(), files, previous).write(stateFile);
+				}
+				catch (Exception e) {
+					// Without a state we fall back to the modification times
+					stateFile.delete();
+				}
 				return files;
 			}
 			return null;
@@ -1542,6 +1773,7 @@ public class Project extends Processor {
 		synchronized (versionMap) {
 			versionMap.clear();
 		}
+		workspace.versionCache.clearWorkspaceVersions();
 		boolean changed = false;
 		if (isCnf()) {
 			changed = workspace.refresh();
@@ -20,6 +20,8 @@ public class ProjectBuilder extends Builder {
 	private final DiffPluginImpl	differ	= new DiffPluginImpl();
 	Project							project;
 	boolean							initialized;
+	int								projectClasspathSize;
+	List<Jar>						sharedClasspath;
 
 	public ProjectBuilder(Project project) {
 		super(project);
@@ -56,20 +58,44 @@ public class ProjectBuilder extends Builder {
 	}
 
 	@Override
-	public void init() {
+	protected ClazzCache getClazzCache() {
+		return project.getWorkspace().getClazzCache(this);
+	}
+
+	/**
+	 * When the sub builders are built in parallel, a sub builder shares the
+	 * classpath jars of its parent instead of opening them again, the jars are
+	 * only read during a build. The shared jars remain owned by the parent
+	 * builder.
+	 */
+	@Override
+	public synchronized void init() {
 		try {
 			if (!initialized) {
 				initialized = true;
+				if (getParent() instanceof ProjectBuilder && isTrue(getParent().getProperty(PARALLELSUB))) {
+					sharedClasspath = ((ProjectBuilder) getParent()).getProjectClasspath();
+					for (Jar jar : sharedClasspath)
+						addClasspath(jar);
+
+					for (File file : project.getAllsourcepath())
+						addSourcepath(file);
+					return;
+				}
+
 				for (Container file : project.getClasspath()) {
 					addClasspath(file.getFile());
+					projectClasspathSize++;
 				}
 
 				for (Container file : project.getBuildpath()) {
 					addClasspath(file.getFile());
+					projectClasspathSize++;
 				}
 
 				for (Container file : project.getBootclasspath()) {
 					addClasspath(file.getFile());
+					projectClasspathSize++;
 				}
 
 				for (File file : project.getAllsourcepath()) {
@@ -83,12 +109,28 @@ public class ProjectBuilder extends Builder {
 		}
 	}
 
+	/**
+	 * Answer the jars opened for the paths of the project, these come before
+	 * the jars of the -classpath instruction.
+	 */
+	synchronized List<Jar> getProjectClasspath() {
+		List<Jar> classpath = getClasspath();
+		return new ArrayList<Jar>(classpath.subList(0, Math.min(projectClasspathSize, classpath.size())));
+	}
+
 	@Override
 	public List<Jar> getClasspath() {
 		init();
 		return super.getClasspath();
 	}
 
+	@Override
+	public void close() {
+		if (sharedClasspath != null)
+			super.getClasspath().removeAll(sharedClasspath);
+		super.close();
+	}
+
 	@Override
 	protected void changedFile(File f) {
 		project.getWorkspace().changedFile(f);
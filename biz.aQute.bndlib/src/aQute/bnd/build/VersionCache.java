@@ -0,0 +1,161 @@
+package aQute.bnd.build;
+
+import java.io.*;
+import java.util.*;
+
+import aQute.bnd.osgi.*;
+import aQute.bnd.service.*;
+import aQute.bnd.version.*;
+import aQute.lib.collections.*;
+
+/**
+ * Remembers the versions the repositories and the workspace have for a bsn so
+ * that the projects of a workspace do not ask every repository again for each
+ * clause of their paths.
+ * <p>
+ * The repository versions are kept per repository in the order of the
+ * repositories, a repository that cannot list its versions is recorded with a
+ * null set. The cache is registered as a {@link RepositoryListenerPlugin} and
+ * forgets a bsn when a bundle is added or removed, and forgets all repository
+ * versions when a repository is refreshed or when
+ * {@link Workspace#refreshRepositories()} is called. It is also cleared when the list of
+ * repositories changes. The workspace versions are forgotten when a project or
+ * the workspace is refreshed.
+ * <p>
+ * Since repositories like the Maven repositories do not tell when another
+ * process adds a bundle, the versions are only kept when the workspace sets
+ * {@link Constants#VERSIONCACHE}. Otherwise each lookup asks the repositories
+ * and the workspace again.
+ */
+class VersionCache implements RepositoryListenerPlugin {
+	final Workspace												workspace;
+	final Map<String,Map<RepositoryPlugin,SortedSet<Version>>>	repositoryVersions	= new HashMap<String,Map<RepositoryPlugin,SortedSet<Version>>>();
+	final Map<String,SortedSet<Version>>						workspaceVersions	= new HashMap<String,SortedSet<Version>>();
+	List<RepositoryPlugin>										repositories		= Collections.emptyList();
+	int															generation;
+
+	VersionCache(Workspace workspace) {
+		this.workspace = workspace;
+	}
+
+	/**
+	 * Answer the versions of the bsn in each of the given repositories, in
+	 * the order of the repositories. The value is null for a repository that
+	 * does not support listing its versions.
+	 */
+	Map<RepositoryPlugin,SortedSet<Version>> getRepositoryVersions(String bsn, List<RepositoryPlugin> plugins)
+			throws Exception {
+		if (!isEnabled())
+			return listVersions(bsn, plugins);
+
+		int start;
+		synchronized (this) {
+			if (!plugins.equals(repositories)) {
+				repositoryVersions.clear();
+				repositories = new ArrayList<RepositoryPlugin>(plugins);
+			}
+			Map<RepositoryPlugin,SortedSet<Version>> versions = repositoryVersions.get(bsn);
+			if (versions != null)
+				return versions;
+			start = generation;
+		}
+
+		Map<RepositoryPlugin,SortedSet<Version>> versions = listVersions(bsn, plugins);
+
+		synchronized (this) {
+			// Do not keep versions that were read before a change
+			if (start == generation && plugins.equals(repositories))
+				repositoryVersions.put(bsn, versions);
+		}
+		return versions;
+	}
+
+	private Map<RepositoryPlugin,SortedSet<Version>> listVersions(String bsn, List<RepositoryPlugin> plugins)
+			throws Exception {
+		Map<RepositoryPlugin,SortedSet<Version>> versions = new LinkedHashMap<RepositoryPlugin,SortedSet<Version>>();
+		for (RepositoryPlugin plugin : plugins) {
+			try {
+				SortedSet<Version> vs = plugin.versions(bsn);
+				versions.put(plugin, vs == null ? SortedList.<Version> empty() : vs);
+			}
+			catch (UnsupportedOperationException ose) {
+				versions.put(plugin, null);
+			}
+		}
+		return versions;
+	}
+
+	/**
+	 * Answer the versions of the bsn in the workspace projects.
+	 */
+	SortedSet<Version> getWorkspaceVersions(String bsn) throws Exception {
+		if (!isEnabled())
+			return workspace.getWorkspaceRepository().versions(bsn);
+
+		int start;
+		synchronized (this) {
+			SortedSet<Version> versions = workspaceVersions.get(bsn);
+			if (versions != null)
+				return versions;
+			start = generation;
+		}
+
+		SortedSet<Version> versions = workspace.getWorkspaceRepository().versions(bsn);
+
+		synchronized (this) {
+			if (start == generation)
+				workspaceVersions.put(bsn, versions);
+		}
+		return versions;
+	}
+
+	boolean isEnabled() {
+		return Processor.isTrue(workspace.getProperty(Constants.VERSIONCACHE));
+	}
+
+	synchronized void clearWorkspaceVersions() {
+		generation++;
+		workspaceVersions.clear();
+	}
+
+	synchronized void clear() {
+		generation++;
+		repositoryVersions.clear();
+		workspaceVersions.clear();
+	}
+
+	public void bundleAdded(RepositoryPlugin repository, Jar jar, File file) {
+		forget(jar);
+	}
+
+	public void bundleRemoved(RepositoryPlugin repository, Jar jar, File file) {
+		forget(jar);
+	}
+
+	public synchronized void repositoryRefreshed(RepositoryPlugin repository) {
+		generation++;
+		repositoryVersions.clear();
+	}
+
+	public synchronized void repositoriesRefreshed() {
+		generation++;
+		repositoryVersions.clear();
+	}
+
+	private void forget(Jar jar) {
+		String bsn = null;
+		try {
+			bsn = jar == null ? null : jar.getBsn();
+		}
+		catch (Exception e) {
+			// cannot tell which bsn, forget them all
+		}
+		synchronized (this) {
+			generation++;
+			if (bsn == null)
+				repositoryVersions.clear();
+			else
+				repositoryVersions.remove(bsn);
+		}
+	}
+}
@@ -50,6 +50,7 @@ public class Workspace extends Processor {
 	final Map<String,Action>					commands		= newMap();
 	final File									buildDir;
 	final Maven									maven			= new Maven(Processor.getExecutor());
+	final VersionCache							versionCache	= new VersionCache(this);
 	private boolean								offline			= true;
 	Settings									settings		= new Settings();
 	WorkspaceRepository							workspaceRepo	= new WorkspaceRepository(this);
@@ -65,6 +66,8 @@ public class Workspace extends Processor {
 
 	private String								driver;
 
+	private ClazzCache							clazzCache;
+
 	/**
 	 * This static method finds the workspace and creates a project (or returns
 	 * an existing project)
@@ -243,6 +246,7 @@ public class Workspace extends Processor {
 	@Override
 	public boolean refresh() {
 		if (super.refresh()) {
+			versionCache.clear();
 			for (Project project : getCurrentProjects()) {
 				project.propertiesChanged();
 			}
@@ -453,30 +457,56 @@ public class Workspace extends Processor {
 		return getPlugins(RepositoryPlugin.class);
 	}
 
+	/**
+	 * Refresh the repositories that can be refreshed and tell the repository
+	 * listeners that any repository may have changed. This makes the workspace
+	 * see bundles that were added to a repository by another process.
+	 */
+	public void refreshRepositories() {
+		for (RepositoryPlugin repo : getRepositories()) {
+			if (repo instanceof Refreshable) {
+				try {
+					((Refreshable) repo).refresh();
+				}
+				catch (Exception e) {
+					error("Refreshing repository %s failed: %s", repo, e);
+				}
+			}
+		}
+		for (RepositoryListenerPlugin listener : getPlugins(RepositoryListenerPlugin.class))
+			listener.repositoriesRefreshed();
+	}
+
 	public Collection<Project> getBuildOrder() throws Exception {
-		List<Project> result = new ArrayList<Project>();
+		Set<Project> result = new LinkedHashSet<Project>();
 		for (Project project : getAllProjects()) {
 			Collection<Project> dependsOn = project.getDependson();
 			getBuildOrder(dependsOn, result);
-			if (!result.contains(project)) {
-				result.add(project);
-			}
+			result.add(project);
 		}
-		return result;
+		return new ArrayList<Project>(result);
 	}
 
-	private void getBuildOrder(Collection<Project> dependsOn, List<Project> result) throws Exception {
+	private void getBuildOrder(Collection<Project> dependsOn, Set<Project> result) throws Exception {
 		for (Project project : dependsOn) {
 			Collection<Project> subProjects = project.getDependson();
-			for (Project subProject : subProjects) {
-				if (!result.contains(subProject)) {
-					result.add(subProject);
-				}
-			}
-			if (!result.contains(project)) {
+			result.addAll(subProjects);
+			result.add(project);
+		}
+	}
+
+	/**
+	 * Answer the projects that need to be built, in build order. Each project
+	 * is checked once, the answers for shared dependencies are reused.
+	 */
+	public Collection<Project> getStaleProjects() throws Exception {
+		Map<Project,Boolean> visited = new HashMap<Project,Boolean>();
+		List<Project> result = new ArrayList<Project>();
+		for (Project project : getBuildOrder()) {
+			if (isOffline() || project.isStale(visited))
 				result.add(project);
-			}
 		}
+		return result;
 	}
 
 	public static Workspace getWorkspace(String path) throws Exception {
@@ -495,6 +525,7 @@ public class Workspace extends Processor {
 			list.add(this);
 			list.add(maven);
 			list.add(settings);
+			list.add(versionCache);
 
 			if (!isTrue(getProperty(NOBUILDINCACHE))) {
 				list.add(new CachedFileRepo());
@@ -724,6 +755,32 @@ public class Workspace extends Processor {
 		return getFile(buildDir, CACHEDIR + "/" + name);
 	}
 
+	/**
+	 * Answer the cache of parsed classes that is shared by all projects in
+	 * this workspace. The cache is only used when {@link #CLASSCACHE} is set.
+	 * 
+	 * @return the cache or null when not enabled
+	 */
+	public ClazzCache getClazzCache() {
+		return getClazzCache(this);
+	}
+
+	/**
+	 * Answer the cache of parsed classes for a project or builder in this
+	 * workspace. The {@link #CLASSCACHE} instruction is read from the given
+	 * processor so it can also be set in a bnd.bnd file.
+	 * 
+	 * @return the cache or null when not enabled
+	 */
+	public synchronized ClazzCache getClazzCache(Processor domain) {
+		if (!isTrue(domain.getProperty(CLASSCACHE)))
+			return null;
+
+		if (clazzCache == null)
+			clazzCache = new ClazzCache(getCache("classes"));
+		return clazzCache;
+	}
+
 	/**
 	 * Return the workspace repo
 	 */
@@ -88,6 +88,9 @@ public class AnnotationReader extends ClassDataCollector {
 	}
 
 	public static ComponentDef getDefinition(Clazz c, Analyzer analyzer) throws Exception {
+		if (!c.mayHaveAnnotation(analyzer.getTypeRefFromFQN(Component.class.getName())))
+			return null;
+
 		boolean inherit = Processor.isTrue(analyzer.getProperty("-dsannotations-inherit"));
 		boolean felixExtensions = Processor.isTrue(analyzer.getProperty("-ds-felix-extensions"));
 		AnnotationReader r = new AnnotationReader(analyzer, c, inherit, felixExtensions);
@@ -357,6 +357,9 @@ public class Syntax implements Constants {
 			new Syntax(BUILDPATH,
 					"Provides the class path for building the jar. The entries are references to the repository.",
 					BUILDPATH + "=osgi;version=4.1", "${repo;bsns}", Verifier.SYMBOLICNAME, path_version),
+			new Syntax(BUILDTHREADS,
+					"The number of projects a workspace build builds concurrently. Defaults to the number of available processors.",
+					BUILDTHREADS + "=4", null, Verifier.NUMBERPATTERN),
 			new Syntax(BUMPPOLICY, "Sets the version bump policy. This is a parameter to the ${version} macro.",
 					BUMPPOLICY + "==+0", "==+,=+0,+00", Pattern.compile("[=+-0][=+-0][=+-0]")),
 
@@ -421,6 +424,27 @@ public class Syntax implements Constants {
 			new Syntax(NOEE,
 					"Do not calculate the osgi.ee name space Execution Environment from the class file version", NOEE
 							+ "=true", "true,false", Verifier.TRUEORFALSEPATTERN),
+			new Syntax(CLASSCACHE,
+					"Share parsed class files between builds in a workspace cache under cnf/cache/classes.",
+					CLASSCACHE + "=true", "true,false", Verifier.TRUEORFALSEPATTERN),
+
+			new Syntax(VERSIONCACHE,
+					"Share the versions the repositories have for a bsn between the projects of a workspace until the "
+							+ "repositories are refreshed. Bundles released by another process are not seen before a refresh.",
+					VERSIONCACHE + "=true", "true,false", Verifier.TRUEORFALSEPATTERN),
+
+			new Syntax(PARALLELANALYSIS, "Parse the class files of the bundle concurrently during analysis.",
+					PARALLELANALYSIS + "=true", "true,false", Verifier.TRUEORFALSEPATTERN),
+
+			new Syntax(PARALLELANALYSIS_THREADS,
+					"The number of threads used when " + PARALLELANALYSIS
+							+ " is set. Defaults to the number of available processors.", PARALLELANALYSIS_THREADS
+							+ "=4", null, Verifier.NUMBERPATTERN),
+
+			new Syntax(PARALLELPATHS,
+					"Look up the bundles of the build, test and run paths in the repositories concurrently.",
+					PARALLELPATHS + "=true", "true,false", Verifier.TRUEORFALSEPATTERN),
+
 			new Syntax(PEDANTIC, "Warn about things that are not really wrong but still not right.",
 					PEDANTIC + "=true", "true,false", Verifier.TRUEORFALSEPATTERN),
 
@@ -445,6 +469,10 @@ public class Syntax implements Constants {
 					RESOURCEONLY,
 					"Normally bnd warns when the JAR does not contain any classes, this option suppresses this warning.",
 					RESOURCEONLY + "=true", "true,false", Verifier.TRUEORFALSEPATTERN),
+			new Syntax(SHAREDDESCRIPTORS,
+					"Use the type and package references that are shared by all analyzers in the VM.",
+					SHAREDDESCRIPTORS + "=true", "true,false", Verifier.TRUEORFALSEPATTERN),
+
 			new Syntax(SOURCES, "Include sources in the jar.", SOURCES + "=true", "true,false",
 					Verifier.TRUEORFALSEPATTERN),
 			new Syntax(SOURCEPATH, "List of directory names that used to source sources for " + SOURCES + ".",
@@ -453,6 +481,8 @@ public class Syntax implements Constants {
 					SUB,
 					"Build a set of bnd files that use this bnd file as a basis. The list of bnd file can be specified with wildcards.",
 					SUB + "=com.acme.*.bnd", null, null),
+			new Syntax(PARALLELSUB, "Build the bundles of " + SUB + " concurrently.", PARALLELSUB + "=true",
+					"true,false", Verifier.TRUEORFALSEPATTERN),
 			new Syntax(RUNPROPERTIES, "Properties that are set as system properties before the framework is started.",
 					RUNPROPERTIES + "= foo=3, bar=4", null, null),
 			new Syntax(RUNSYSTEMPACKAGES, "Add additional system packages to a framework run.", RUNSYSTEMPACKAGES
@@ -26,6 +26,9 @@ public class DesignateReader extends ClassDataCollector {
 	}
 
 	static DesignateDef getDesignate(Clazz c, Analyzer analyzer, Map<String, OCDDef> classToOCDMap) throws Exception {
+		if (!c.mayHaveAnnotation(analyzer.getTypeRefFromFQN(Designate.class.getName())))
+			return null;
+
 	 		DesignateReader r = new DesignateReader(analyzer, c, classToOCDMap);
 	 		return r.getDef();
 	}
@@ -30,6 +30,9 @@ public class OCDReader extends ClassDataCollector {
 
 
      static OCDDef getOCDDef(Clazz c, Analyzer analyzer) throws Exception {
+		if (!c.mayHaveAnnotation(analyzer.getTypeRefFromFQN(ObjectClassDefinition.class.getName())))
+			return null;
+
  		boolean inherit = Processor.isTrue(analyzer.getProperty("-metatypeannotations-inherit"));
  		OCDReader r = new OCDReader(analyzer, c, inherit);
  		return r.getDef();
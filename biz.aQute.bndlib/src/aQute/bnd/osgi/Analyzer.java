@@ -26,6 +26,8 @@ import java.net.*;
 import java.text.*;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import java.util.jar.*;
 import java.util.jar.Attributes.Name;
 import java.util.regex.*;
@@ -73,7 +75,7 @@ public class Analyzer extends Processor {
 																					true);
 	private final Contracts							contracts				= new Contracts(this);
 	private final Packages							classpathExports		= new Packages();
-	private final Descriptors						descriptors				= new Descriptors();
+	private final AtomicReference<Descriptors>		descriptors				= new AtomicReference<Descriptors>();
 	private final List<Jar>							classpath				= list();
 	private final Map<TypeRef,Clazz>				classspace				= map();
 	private final Map<TypeRef,Clazz>				importedClassesCache	= map();
@@ -84,6 +86,7 @@ public class Analyzer extends Processor {
 																					AnalyzerMessages.class);
 	private AnnotationHeaders						annotationHeaders;
 	private Set<PackageRef>							packagesVisited			= new HashSet<PackageRef>();
+	private Map<Clazz,ClassDataRecording>			classData;
 
 	public Analyzer(Processor parent) {
 		super(parent);
@@ -125,6 +128,20 @@ public class Analyzer extends Processor {
 	 * @throws IOException
 	 */
 	public void analyze() throws Exception {
+		if (analyzed)
+			return;
+
+		// The recorded class parse events only live during the analysis
+		classData = new IdentityHashMap<Clazz,ClassDataRecording>();
+		try {
+			doAnalyze();
+		}
+		finally {
+			classData = null;
+		}
+	}
+
+	private void doAnalyze() throws Exception {
 		if (!analyzed) {
 			analyzed = true;
 			uses.clear();
@@ -184,6 +201,12 @@ public class Analyzer extends Processor {
 				cds.add(annotationHeaders = new AnnotationHeaders(this));
 
 				for (Clazz c : classspace.values()) {
+					//
+					// Without class parsers only the header annotations
+					// need the parse
+					//
+					if (parsers.isEmpty() && !annotationHeaders.needsParse(c))
+						continue;
 					cds.parse(c);
 				}
 				cds.close();
@@ -317,8 +340,26 @@ public class Analyzer extends Processor {
 						+ "The following package(s) import from the default package "
 						+ uses.transpose().get(Descriptors.DEFAULT_PACKAGE));
 			}
+		}
+	}
+
+	/**
+	 * Answer the recorded parse events of a class while the jar is analyzed,
+	 * the class file is decoded when the class is first asked for. This way
+	 * the annotation processors, class parser plugins and annotation headers
+	 * share a single decode of each class. Outside the analysis there is no
+	 * recording and a collector parses the class file itself.
+	 */
+	ClassDataRecording getClassDataRecording(Clazz clazz) throws Exception {
+		if (classData == null)
+			return null;
 
+		ClassDataRecording recording = classData.get(clazz);
+		if (recording == null) {
+			recording = clazz.record();
+			classData.put(clazz, recording);
 		}
+		return recording;
 	}
 
 	/*
@@ -2167,6 +2208,7 @@ public class Analyzer extends Processor {
 	 */
 	private boolean analyzeJar(Jar jar, String prefix, boolean okToIncludeDirs) throws Exception {
 		Map<String,Clazz> mismatched = new HashMap<String,Clazz>();
+		Map<String,Future<Clazz>> parsed = parseClassesInParallel(jar, prefix);
 
 		next: for (String path : jar.getResources().keySet()) {
 			if (path.startsWith(prefix)) {
@@ -2189,14 +2231,10 @@ public class Analyzer extends Processor {
 					Clazz clazz;
 
 					try {
-						InputStream in = resource.openInputStream();
-						clazz = new Clazz(this, path, resource);
-						try {
-							clazz.parseClassFile();
-						}
-						finally {
-							in.close();
-						}
+						if (parsed != null)
+							clazz = getParsedClass(parsed.get(path));
+						else
+							clazz = parseClass(path, resource);
 					}
 					catch (Throwable e) {
 						error("Invalid class file %s (%s)", e, relativePath, e);
@@ -2239,6 +2277,90 @@ public class Analyzer extends Processor {
 		return true;
 	}
 
+	private Clazz parseClass(String path, Resource resource) throws Exception {
+		return parseClass(path, resource, getClazzCache());
+	}
+
+	private Clazz parseClass(String path, Resource resource, ClazzCache cache) throws Exception {
+		if (cache != null)
+			return cache.parse(this, path, resource);
+
+		InputStream in = resource.openInputStream();
+		Clazz clazz = new Clazz(this, path, resource);
+		try {
+			clazz.parseClassFile();
+		}
+		finally {
+			in.close();
+		}
+		return clazz;
+	}
+
+	private Clazz getParsedClass(Future<Clazz> future) throws Throwable {
+		try {
+			return future.get();
+		}
+		catch (ExecutionException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * If {@link Constants#PARALLELANALYSIS} is set, parse all the class files
+	 * in the jar under the given prefix concurrently. The result is a map from
+	 * path to a pending Clazz. The caller must still merge the classes in the
+	 * order of the jar's resources so that the outcome is identical to the
+	 * serial analysis. Returns null when the analysis should be serial.
+	 * <p>
+	 * The parsers only share the descriptor tables, which are concurrent, and
+	 * the class cache, which is looked up here. They do not report, a parse
+	 * error is kept in its future and reported by the caller when it merges
+	 * the class, so the messages are in the order of the serial analysis.
+	 */
+	private Map<String,Future<Clazz>> parseClassesInParallel(Jar jar, String prefix) throws Exception {
+		if (!isTrue(getProperty(PARALLELANALYSIS)))
+			return null;
+
+		int threads = getParallelAnalysisThreads();
+		if (threads < 2)
+			return null;
+
+		final ClazzCache cache = getClazzCache();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			Map<String,Future<Clazz>> parsed = new HashMap<String,Future<Clazz>>();
+			for (Map.Entry<String,Resource> entry : jar.getResources().entrySet()) {
+				final String path = entry.getKey();
+				final Resource resource = entry.getValue();
+				if (path.startsWith(prefix) && path.endsWith(".class")) {
+					parsed.put(path, executor.submit(new Callable<Clazz>() {
+						public Clazz call() throws Exception {
+							return parseClass(path, resource, cache);
+						}
+					}));
+				}
+			}
+			return parsed;
+		}
+		finally {
+			// Already submitted tasks still run to completion
+			executor.shutdown();
+		}
+	}
+
+	private int getParallelAnalysisThreads() {
+		String threads = getProperty(PARALLELANALYSIS_THREADS);
+		if (threads != null) {
+			try {
+				return Integer.parseInt(threads.trim());
+			}
+			catch (NumberFormatException e) {
+				error("%s must be a number, is %s", PARALLELANALYSIS_THREADS, threads);
+			}
+		}
+		return Runtime.getRuntime().availableProcessors();
+	}
+
 	/**
 	 * Clean up version parameters. Other builders use more fuzzy definitions of
 	 * the version syntax. This method cleans up such a version to match an OSGi
@@ -2492,13 +2614,28 @@ public class Analyzer extends Processor {
 				r = new URLResource(url);
 		}
 		if (r != null) {
-			c = new Clazz(this, typeRef.getPath(), r);
-			c.parseClassFile();
+			ClazzCache cache = getClazzCache();
+			if (cache != null)
+				c = cache.parse(this, typeRef.getPath(), r);
+			else {
+				c = new Clazz(this, typeRef.getPath(), r);
+				c.parseClassFile();
+			}
 			importedClassesCache.put(typeRef, c);
 		}
 		return c;
 	}
 
+	/**
+	 * Answer the cache for parsed classes, if any. Subclasses that run in a
+	 * workspace can override this to share the parsed classes between builds.
+	 * 
+	 * @return the cache or null if classes must always be parsed
+	 */
+	protected ClazzCache getClazzCache() {
+		return null;
+	}
+
 	/**
 	 * Answer the bundle version.
 	 * 
@@ -2522,7 +2659,7 @@ public class Analyzer extends Processor {
 	}
 
 	public void referToByBinaryName(String binaryClassName) {
-		TypeRef ref = descriptors.getTypeRef(binaryClassName);
+		TypeRef ref = getDescriptors().getTypeRef(binaryClassName);
 		referTo(ref);
 	}
 
@@ -2593,24 +2730,44 @@ public class Analyzer extends Processor {
 		return Base64.encodeBase64(digester.digest().digest());
 	}
 
+	/**
+	 * Answer the table of type and package references. With
+	 * {@link Constants#SHAREDDESCRIPTORS} the references are shared by all
+	 * analyzers in the VM. A sub analyzer, like the builder of a sub bundle,
+	 * always has its own references since the project collects the packages
+	 * of its sub bundles by reference.
+	 */
+	Descriptors getDescriptors() {
+		Descriptors d = descriptors.get();
+		if (d == null) {
+			if (!(getParent() instanceof Analyzer) && isTrue(getProperty(SHAREDDESCRIPTORS)))
+				d = Descriptors.getShared();
+			else
+				d = new Descriptors();
+			if (!descriptors.compareAndSet(null, d))
+				d = descriptors.get();
+		}
+		return d;
+	}
+
 	public Descriptor getDescriptor(String descriptor) {
-		return descriptors.getDescriptor(descriptor);
+		return getDescriptors().getDescriptor(descriptor);
 	}
 
 	public TypeRef getTypeRef(String binaryClassName) {
-		return descriptors.getTypeRef(binaryClassName);
+		return getDescriptors().getTypeRef(binaryClassName);
 	}
 
 	public PackageRef getPackageRef(String binaryName) {
-		return descriptors.getPackageRef(binaryName);
+		return getDescriptors().getPackageRef(binaryName);
 	}
 
 	public TypeRef getTypeRefFromFQN(String fqn) {
-		return descriptors.getTypeRefFromFQN(fqn);
+		return getDescriptors().getTypeRefFromFQN(fqn);
 	}
 
 	public TypeRef getTypeRefFromPath(String path) {
-		return descriptors.getTypeRefFromPath(path);
+		return getDescriptors().getTypeRefFromPath(path);
 	}
 
 	public boolean isImported(PackageRef packageRef) {
@@ -125,6 +125,16 @@ class AnnotationHeaders extends ClassDataCollector implements Closeable {
 		return false;
 	}
 
+	/*
+	 * Answer if the class has any of our annotations and must be parsed. This
+	 * uses the annotations recorded when the class was first parsed, the
+	 * classes that do not need to be parsed are still remembered for the
+	 * annotations they use.
+	 */
+	boolean needsParse(Clazz c) {
+		return classStart(c);
+	}
+
 	/*
 	 * Called when an annotation is found. Dispatch on the known types.
 	 */
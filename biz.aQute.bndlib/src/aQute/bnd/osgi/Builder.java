@@ -3,6 +3,7 @@ package aQute.bnd.osgi;
 import java.io.*;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.*;
 import java.util.jar.*;
 import java.util.regex.*;
 import java.util.zip.*;
@@ -533,12 +534,48 @@ public class Builder extends Analyzer {
 	private Set<Instruction> doExpand(Jar jar, MultiMap<String,Jar> index, Instructions filter) {
 		Set<Instruction> unused = Create.set();
 
-		for (Entry<Instruction,Attrs> e : filter.entrySet()) {
-			Instruction instruction = e.getKey();
-			if (instruction.isDuplicate())
-				continue;
+		List<Instruction> instructions = new ArrayList<Instruction>();
+		for (Instruction instruction : filter.keySet()) {
+			if (!instruction.isDuplicate())
+				instructions.add(instruction);
+		}
+		CompiledInstructions compiled = new CompiledInstructions(instructions);
+
+		//
+		// A package is taken by the first instruction that matches it. We
+		// match each package once and then handle the packages per
+		// instruction, in the order of the instructions.
+		//
 
-			Attrs directives = e.getValue();
+		List<List<Entry<String,List<Jar>>>> matched = new ArrayList<List<Entry<String,List<Jar>>>>();
+		for (int i = 0; i < instructions.size(); i++)
+			matched.add(new ArrayList<Entry<String,List<Jar>>>());
+
+		for (Entry<String,List<Jar>> p : index.entrySet()) {
+			PackageRef packageRef = getPackageRef(p.getKey());
+			String fqn = packageRef.getFQN();
+
+			int n = compiled.index(fqn);
+
+			// Skip * and meta data, we're talking packages!
+			if (n != CompiledInstructions.NONE && packageRef.isMetaData() && instructions.get(n).isAny()) {
+				n = CompiledInstructions.NONE;
+				for (int i = 0; i < instructions.size(); i++) {
+					Instruction instruction = instructions.get(i);
+					if (!instruction.isAny() && instruction.matches(fqn)) {
+						n = i;
+						break;
+					}
+				}
+			}
+
+			if (n != CompiledInstructions.NONE)
+				matched.get(n).add(p);
+		}
+
+		for (int i = 0; i < instructions.size(); i++) {
+			Instruction instruction = instructions.get(i);
+			Attrs directives = filter.get(instruction);
 
 			// We can optionally filter on the
 			// source of the package. We assume
@@ -548,21 +585,11 @@ public class Builder extends Analyzer {
 
 			boolean used = false;
 
-			for (Iterator<Entry<String,List<Jar>>> entry = index.entrySet().iterator(); entry.hasNext();) {
-				Entry<String,List<Jar>> p = entry.next();
-
+			for (Entry<String,List<Jar>> p : matched.get(i)) {
 				String directory = p.getKey();
-				PackageRef packageRef = getPackageRef(directory);
-
-				// Skip * and meta data, we're talking packages!
-				if (packageRef.isMetaData() && instruction.isAny())
-					continue;
-
-				if (!instruction.matches(packageRef.getFQN()))
-					continue;
 
 				// Ensure it is never matched again
-				entry.remove();
+				index.remove(directory);
 
 				// ! effectively removes it from consideration by others (this
 				// includes exports)
@@ -1237,6 +1264,9 @@ public class Builder extends Analyzer {
 
 		builders = getSubBuilders();
 
+		if (builders.size() > 1 && isTrue(getProperty(PARALLELSUB)))
+			return buildsInParallel(builders);
+
 		for (Builder builder : builders) {
 			try {
 				startBuild(builder);
@@ -1257,6 +1287,54 @@ public class Builder extends Analyzer {
 	}
 
 
+	/**
+	 * Build the sub builders concurrently. The sub builders share the
+	 * classpath jars of this builder, these are only read. The builders are
+	 * finished, and their messages collected, in the order of the sub
+	 * builders so the result is the same as a sequential build.
+	 */
+	private Jar[] buildsInParallel(List<Builder> builders) throws Exception {
+		// Initialize the shared state before the builders use it
+		getClasspath();
+		getPlugins();
+
+		List<Jar> result = new ArrayList<Jar>();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(builders.size(), Runtime.getRuntime()
+				.availableProcessors()));
+		try {
+			List<Future<Jar>> futures = new ArrayList<Future<Jar>>();
+			for (final Builder builder : builders) {
+				futures.add(executor.submit(new Callable<Jar>() {
+					public Jar call() throws Exception {
+						startBuild(builder);
+						Jar jar = builder.build();
+						jar.setName(builder.getBsn());
+						return jar;
+					}
+				}));
+			}
+
+			for (int i = 0; i < builders.size(); i++) {
+				Builder builder = builders.get(i);
+				try {
+					result.add(futures.get(i).get());
+					doneBuild(builder);
+				}
+				catch (ExecutionException e) {
+					Throwable t = e.getCause();
+					t.printStackTrace();
+					error("Sub Building " + builder.getBsn(), t);
+				}
+				if (builder != this)
+					getInfo(builder, builder.getBsn() + ": ");
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		return result.toArray(new Jar[result.size()]);
+	}
+
 	/**
 	 * Called when we start to build a builder
 	 */
@@ -269,6 +269,17 @@ class ClassDataCollectors extends ClassDataCollector implements Closeable {
 			}
 	}
 
+	@Override
+	public void annotationDefault(MethodDef last) {
+		for (ClassDataCollector cd : shortlist)
+			try {
+				cd.annotationDefault(last);
+			}
+			catch (Exception e) {
+				reporter.error("Fail to call annotationDefault on %s", cd);
+			}
+	}
+
 	public void close() {
 		for (ClassDataCollector cd : delegates)
 			try {
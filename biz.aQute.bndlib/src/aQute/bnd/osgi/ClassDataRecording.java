@@ -0,0 +1,240 @@
+package aQute.bnd.osgi;
+
+import java.util.*;
+
+import aQute.bnd.osgi.Clazz.FieldDef;
+import aQute.bnd.osgi.Clazz.MethodDef;
+import aQute.bnd.osgi.Descriptors.TypeRef;
+
+/**
+ * Records the events of parsing a class file with a collector so they can be
+ * replayed to other collectors without decoding the class file again. During
+ * the analysis the annotation processors, the class parser plugins and the
+ * annotation headers each visit the same classes, with a recording a class
+ * is decoded once and the others receive the replayed events.
+ * <p>
+ * The replay follows the parser: the field and method definitions are
+ * created anew for each collector and a collector that does not want to see
+ * the class in {@link ClassDataCollector#classStart(Clazz)} gets no events
+ * but the class end.
+ */
+class ClassDataRecording extends ClassDataCollector {
+	final static byte		VERSION					= 0;
+	final static byte		CLASS_START				= 1;
+	final static byte		EXTENDS_CLASS			= 2;
+	final static byte		IMPLEMENTS_INTERFACES	= 3;
+	final static byte		ADD_REFERENCE			= 4;
+	final static byte		ANNOTATION				= 5;
+	final static byte		PARAMETER				= 6;
+	final static byte		METHOD					= 7;
+	final static byte		FIELD					= 8;
+	final static byte		DEPRECATED				= 9;
+	final static byte		ENCLOSING_METHOD		= 10;
+	final static byte		INNER_CLASS				= 11;
+	final static byte		SIGNATURE				= 12;
+	final static byte		CONSTANT				= 13;
+	final static byte		MEMBER_END				= 14;
+	final static byte		REFERENCE_METHOD		= 15;
+	final static byte		REFER_TO				= 16;
+	final static byte		ANNOTATION_DEFAULT		= 17;
+
+	/*
+	 * Each event is its code followed by its arguments
+	 */
+	private final List<Object>	events					= new ArrayList<Object>();
+	private boolean				started;
+	Set<TypeRef>				xref;
+
+	private void record(byte event, Object... args) {
+		events.add(event);
+		for (Object arg : args)
+			events.add(arg);
+	}
+
+	/**
+	 * Replay the events to the collector in the order they were recorded.
+	 *
+	 * @return the types referred to by the class, like the parser, or null if
+	 *         the collector did not want to see the class
+	 */
+	Set<TypeRef> replay(Clazz clazz, ClassDataCollector cd) throws Exception {
+		FieldDef last = null;
+		try {
+			for (int i = 0; i < events.size();) {
+				byte event = (Byte) events.get(i++);
+				switch (event) {
+					case VERSION :
+						cd.version((Integer) events.get(i++), (Integer) events.get(i++));
+						break;
+					case CLASS_START :
+						if (!cd.classStart(clazz))
+							return null;
+						break;
+					case EXTENDS_CLASS :
+						cd.extendsClass((TypeRef) events.get(i++));
+						break;
+					case IMPLEMENTS_INTERFACES :
+						cd.implementsInterfaces((TypeRef[]) events.get(i++));
+						break;
+					case ADD_REFERENCE :
+						cd.addReference((TypeRef) events.get(i++));
+						break;
+					case ANNOTATION :
+						cd.annotation((Annotation) events.get(i++));
+						break;
+					case PARAMETER :
+						cd.parameter((Integer) events.get(i++));
+						break;
+					case METHOD : {
+						FieldDef def = (FieldDef) events.get(i++);
+						cd.method((MethodDef) (last = clazz.new MethodDef(def.access, def.name, def.descriptor.toString())));
+						break;
+					}
+					case FIELD : {
+						FieldDef def = (FieldDef) events.get(i++);
+						cd.field(last = clazz.new FieldDef(def.access, def.name, def.descriptor.toString()));
+						break;
+					}
+					case DEPRECATED :
+						cd.deprecated();
+						break;
+					case ENCLOSING_METHOD :
+						cd.enclosingMethod((TypeRef) events.get(i++), (String) events.get(i++), (String) events.get(i++));
+						break;
+					case INNER_CLASS :
+						cd.innerClass((TypeRef) events.get(i++), (TypeRef) events.get(i++), (String) events.get(i++),
+								(Integer) events.get(i++));
+						break;
+					case SIGNATURE : {
+						String signature = (String) events.get(i++);
+						if (last != null)
+							last.signature = signature;
+						cd.signature(signature);
+						break;
+					}
+					case CONSTANT : {
+						Object constant = events.get(i++);
+						if (last != null)
+							last.constant = constant;
+						cd.constant(constant);
+						break;
+					}
+					case MEMBER_END :
+						cd.memberEnd();
+						last = null;
+						break;
+					case REFERENCE_METHOD :
+						cd.referenceMethod((Integer) events.get(i++), (TypeRef) events.get(i++), (String) events.get(i++),
+								(String) events.get(i++));
+						break;
+					case REFER_TO :
+						cd.referTo((TypeRef) events.get(i++), (Integer) events.get(i++));
+						break;
+					case ANNOTATION_DEFAULT : {
+						Object value = events.get(i++);
+						last.constant = value;
+						cd.annotationDefault((MethodDef) last);
+						break;
+					}
+				}
+			}
+			return xref;
+		}
+		finally {
+			if (started)
+				cd.classEnd();
+		}
+	}
+
+	@Override
+	public boolean classStart(Clazz c) {
+		started = true;
+		record(CLASS_START);
+		return true;
+	}
+
+	@Override
+	public void extendsClass(TypeRef zuper) {
+		record(EXTENDS_CLASS, zuper);
+	}
+
+	@Override
+	public void implementsInterfaces(TypeRef[] interfaces) {
+		record(IMPLEMENTS_INTERFACES, (Object) interfaces);
+	}
+
+	@Override
+	public void addReference(TypeRef ref) {
+		record(ADD_REFERENCE, ref);
+	}
+
+	@Override
+	public void annotation(Annotation annotation) {
+		record(ANNOTATION, annotation);
+	}
+
+	@Override
+	public void parameter(int p) {
+		record(PARAMETER, p);
+	}
+
+	@Override
+	public void method(MethodDef defined) {
+		record(METHOD, defined);
+	}
+
+	@Override
+	public void field(FieldDef defined) {
+		record(FIELD, defined);
+	}
+
+	@Override
+	public void deprecated() {
+		record(DEPRECATED);
+	}
+
+	@Override
+	public void enclosingMethod(TypeRef cName, String mName, String mDescriptor) {
+		record(ENCLOSING_METHOD, cName, mName, mDescriptor);
+	}
+
+	@Override
+	public void innerClass(TypeRef innerClass, TypeRef outerClass, String innerName, int innerClassAccessFlags) {
+		record(INNER_CLASS, innerClass, outerClass, innerName, innerClassAccessFlags);
+	}
+
+	@Override
+	public void signature(String signature) {
+		record(SIGNATURE, signature);
+	}
+
+	@Override
+	public void constant(Object object) {
+		record(CONSTANT, object);
+	}
+
+	@Override
+	public void memberEnd() {
+		record(MEMBER_END);
+	}
+
+	@Override
+	public void version(int minor, int major) {
+		record(VERSION, minor, major);
+	}
+
+	@Override
+	public void referenceMethod(int access, TypeRef className, String method, String descriptor) {
+		record(REFERENCE_METHOD, access, className, method, descriptor);
+	}
+
+	@Override
+	public void referTo(TypeRef typeRef, int modifiers) {
+		record(REFER_TO, typeRef, modifiers);
+	}
+
+	@Override
+	public void annotationDefault(MethodDef last) {
+		record(ANNOTATION_DEFAULT, last.getConstant());
+	}
+}
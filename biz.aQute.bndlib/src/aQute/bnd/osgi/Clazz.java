@@ -4,12 +4,14 @@ import java.io.*;
 import java.lang.annotation.*;
 import java.lang.reflect.*;
 import java.nio.*;
+import java.nio.channels.*;
 import java.util.*;
 import java.util.regex.*;
 
 import aQute.bnd.osgi.Descriptors.Descriptor;
 import aQute.bnd.osgi.Descriptors.PackageRef;
 import aQute.bnd.osgi.Descriptors.TypeRef;
+import aQute.lib.io.*;
 import aQute.lib.utf8properties.*;
 import aQute.libg.generics.*;
 
@@ -429,6 +431,28 @@ public class Clazz {
 			4, // 18 CONSTANT_InvokeDynamic
 															};
 
+	/**
+	 * The information the analysis needs from a class file. This is a DTO so
+	 * it can be persisted, see {@link ClazzCache}.
+	 */
+	public static class Summary {
+		public int			major;
+		public int			minor;
+		public int			access;
+		public String		className;
+		public String		superName;
+		public List<String>	interfaces;
+		public List<String>	referred;
+		public List<String>	api;
+		public List<String>	annotations;
+		public boolean		hasRuntimeAnnotations;
+		public boolean		hasClassAnnotations;
+		public boolean		hasDefaultConstructor;
+		public String		sourceFile;
+		public int			innerAccess	= -1;
+		public boolean		deprecated;
+	}
+
 	public static final Comparator<Clazz>	NAME_COMPARATOR	= new Comparator<Clazz>() {
 
 																public int compare(Clazz a, Clazz b) {
@@ -480,10 +504,77 @@ public class Clazz {
 		return parseClassFile(in, null);
 	}
 
+	/**
+	 * Parse the class file with a collector. While the analyzer analyzes its
+	 * jar, the events of the first parse of a class are recorded and later
+	 * collectors receive the recorded events instead of decoding the class
+	 * file again.
+	 */
 	public Set<TypeRef> parseClassFileWithCollector(ClassDataCollector cd) throws Exception {
+		if (cd != null && analyzer != null) {
+			ClassDataRecording recording = analyzer.getClassDataRecording(this);
+			if (recording != null)
+				return recording.replay(this, cd);
+		}
+		return parseClassFile(getBuffer(resource), cd);
+	}
+
+	/**
+	 * Decode the class file once and record the events
+	 */
+	ClassDataRecording record() throws Exception {
+		ClassDataRecording recording = new ClassDataRecording();
+		recording.xref = parseClassFile(getBuffer(resource), recording);
+		return recording;
+	}
+
+	/**
+	 * Parse the class file from a buffer. The buffer is read directly, the
+	 * method bodies are not copied.
+	 */
+	public Set<TypeRef> parseClassFile(ByteBuffer bb, ClassDataCollector cd) throws Exception {
+		try {
+			this.cd = cd;
+			return parseClassFile(new ByteBufferDataInput(bb));
+		}
+		finally {
+			this.cd = null;
+		}
+	}
+
+	/**
+	 * Read the content of a resource in a buffer with a single copy when the
+	 * size is known up front. Only files and zip entries know their size, other
+	 * resources, like a {@link URLResource}, may have to read their content to
+	 * calculate it.
+	 */
+	static ByteBuffer getBuffer(Resource resource) throws Exception {
+		if (resource instanceof FileResource) {
+			FileInputStream in = new FileInputStream(((FileResource) resource).getFile());
+			try {
+				FileChannel channel = in.getChannel();
+				long size = channel.size();
+				if (size <= Integer.MAX_VALUE) {
+					ByteBuffer bb = ByteBuffer.allocate((int) size);
+					while (bb.hasRemaining() && channel.read(bb) >= 0) {}
+					bb.flip();
+					return bb;
+				}
+			}
+			finally {
+				in.close();
+			}
+		}
+
+		long size = resource instanceof ZipResource ? resource.size() : -1;
 		InputStream in = resource.openInputStream();
 		try {
-			return parseClassFile(in, cd);
+			if (size < 0 || size > Integer.MAX_VALUE)
+				return ByteBuffer.wrap(IO.read(in));
+
+			byte[] data = new byte[(int) size];
+			new DataInputStream(in).readFully(data);
+			return ByteBuffer.wrap(data);
 		}
 		finally {
 			in.close();
@@ -494,7 +585,7 @@ public class Clazz {
 		DataInputStream din = new DataInputStream(in);
 		try {
 			this.cd = cd;
-			return parseClassFile(din);
+			return parseClassFile((DataInput) din);
 		}
 		finally {
 			cd = null;
@@ -502,7 +593,7 @@ public class Clazz {
 		}
 	}
 
-	Set<TypeRef> parseClassFile(DataInputStream in) throws Exception {
+	Set<TypeRef> parseClassFile(DataInput in) throws Exception {
 		xref = new HashSet<TypeRef>();
 
 		boolean crawl = cd != null; // Crawl the byte code if we have a
@@ -768,14 +859,14 @@ public class Clazz {
 		}
 	}
 
-	private void constantFloat(DataInputStream in, int poolIndex) throws IOException {
+	private void constantFloat(DataInput in, int poolIndex) throws IOException {
 		if (cd != null)
 			pool[poolIndex] = in.readFloat(); // ALU
 		else
 			in.skipBytes(4);
 	}
 
-	private void constantInteger(DataInputStream in, int poolIndex) throws IOException {
+	private void constantInteger(DataInput in, int poolIndex) throws IOException {
 		intPool[poolIndex] = in.readInt();
 		if (cd != null)
 			pool[poolIndex] = intPool[poolIndex];
@@ -790,6 +881,10 @@ public class Clazz {
 	 * @throws IOException
 	 */
 	protected void nameAndType(DataInputStream in, int poolIndex, byte tag) throws IOException {
+		nameAndType((DataInput) in, poolIndex, tag);
+	}
+
+	private void nameAndType(DataInput in, int poolIndex, byte tag) throws IOException {
 		int name_index = in.readUnsignedShort();
 		int descriptor_index = in.readUnsignedShort();
 		pool[poolIndex] = new Assoc(tag, name_index, descriptor_index);
@@ -801,7 +896,7 @@ public class Clazz {
 	 * @param tag
 	 * @throws IOException
 	 */
-	private void ref(DataInputStream in, int poolIndex) throws IOException {
+	private void ref(DataInput in, int poolIndex) throws IOException {
 		int class_index = in.readUnsignedShort();
 		int name_and_type_index = in.readUnsignedShort();
 		pool[poolIndex] = new Assoc((byte) 10, class_index, name_and_type_index);
@@ -812,7 +907,7 @@ public class Clazz {
 	 * @param poolIndex
 	 * @throws IOException
 	 */
-	private void constantString(DataInputStream in, int poolIndex) throws IOException {
+	private void constantString(DataInput in, int poolIndex) throws IOException {
 		int string_index = in.readUnsignedShort();
 		intPool[poolIndex] = string_index;
 	}
@@ -823,6 +918,10 @@ public class Clazz {
 	 * @throws IOException
 	 */
 	protected void constantClass(DataInputStream in, int poolIndex) throws IOException {
+		constantClass((DataInput) in, poolIndex);
+	}
+
+	private void constantClass(DataInput in, int poolIndex) throws IOException {
 		int class_index = in.readUnsignedShort();
 		intPool[poolIndex] = class_index;
 		ClassConstant c = new ClassConstant(class_index);
@@ -834,6 +933,10 @@ public class Clazz {
 	 * @throws IOException
 	 */
 	protected void constantDouble(DataInputStream in, int poolIndex) throws IOException {
+		constantDouble((DataInput) in, poolIndex);
+	}
+
+	private void constantDouble(DataInput in, int poolIndex) throws IOException {
 		if (cd != null)
 			pool[poolIndex] = in.readDouble();
 		else
@@ -845,6 +948,10 @@ public class Clazz {
 	 * @throws IOException
 	 */
 	protected void constantLong(DataInputStream in, int poolIndex) throws IOException {
+		constantLong((DataInput) in, poolIndex);
+	}
+
+	private void constantLong(DataInput in, int poolIndex) throws IOException {
 		if (cd != null) {
 			pool[poolIndex] = in.readLong();
 		} else
@@ -857,6 +964,10 @@ public class Clazz {
 	 * @throws IOException
 	 */
 	protected void constantUtf8(DataInputStream in, int poolIndex) throws IOException {
+		constantUtf8((DataInput) in, poolIndex);
+	}
+
+	private void constantUtf8(DataInput in, int poolIndex) throws IOException {
 		// CONSTANT_Utf8
 
 		String name = in.readUTF();
@@ -908,7 +1019,7 @@ public class Clazz {
 	 * @param access_flags
 	 * @throws Exception
 	 */
-	private void doAttributes(DataInputStream in, ElementType member, boolean crawl, int access_flags) throws Exception {
+	private void doAttributes(DataInput in, ElementType member, boolean crawl, int access_flags) throws Exception {
 		int attributesCount = in.readUnsignedShort();
 		for (int j = 0; j < attributesCount; j++) {
 			// skip name CONSTANT_Utf8 pointer
@@ -924,7 +1035,7 @@ public class Clazz {
 	 * @param access_flags
 	 * @throws Exception
 	 */
-	private void doAttribute(DataInputStream in, ElementType member, boolean crawl, int access_flags) throws Exception {
+	private void doAttribute(DataInput in, ElementType member, boolean crawl, int access_flags) throws Exception {
 		int attribute_name_index = in.readUnsignedShort();
 		String attributeName = (String) pool[attribute_name_index];
 		long attribute_length = in.readInt();
@@ -985,7 +1096,7 @@ public class Clazz {
 	 * @param in
 	 * @throws IOException
 	 */
-	private void doEnclosingMethod(DataInputStream in) throws IOException {
+	private void doEnclosingMethod(DataInput in) throws IOException {
 		int cIndex = in.readShort();
 		int mIndex = in.readShort();
 		classConstRef(cIndex);
@@ -1023,7 +1134,7 @@ public class Clazz {
 	 * @param in
 	 * @throws Exception
 	 */
-	private void doInnerClasses(DataInputStream in) throws Exception {
+	private void doInnerClasses(DataInput in) throws Exception {
 		int number_of_classes = in.readShort();
 		for (int i = 0; i < number_of_classes; i++) {
 			int inner_class_info_index = in.readShort();
@@ -1069,7 +1180,7 @@ public class Clazz {
 	 * @param access_flags
 	 */
 
-	void doSignature(DataInputStream in, ElementType member, int access_flags) throws IOException {
+	void doSignature(DataInput in, ElementType member, int access_flags) throws IOException {
 		int signature_index = in.readUnsignedShort();
 		String signature = (String) pool[signature_index];
 		try {
@@ -1089,7 +1200,7 @@ public class Clazz {
 	/**
 	 * Handle a constant value call the data collector with it
 	 */
-	void doConstantValue(DataInputStream in) throws IOException {
+	void doConstantValue(DataInput in) throws IOException {
 		int constantValue_index = in.readUnsignedShort();
 		if (cd == null)
 			return;
@@ -1102,7 +1213,7 @@ public class Clazz {
 		cd.constant(object);
 	}
 
-	void doExceptions(DataInputStream in, int access_flags) throws IOException {
+	void doExceptions(DataInput in, int access_flags) throws IOException {
 		int exception_count = in.readUnsignedShort();
 		for (int i = 0; i < exception_count; i++) {
 			int index = in.readUnsignedShort();
@@ -1136,13 +1247,17 @@ public class Clazz {
 	 * @param pool
 	 * @throws Exception
 	 */
-	private void doCode(DataInputStream in) throws Exception {
+	private void doCode(DataInput in) throws Exception {
 		/* int max_stack = */in.readUnsignedShort();
 		/* int max_locals = */in.readUnsignedShort();
 		int code_length = in.readInt();
-		byte code[] = new byte[code_length];
-		in.readFully(code);
-		crawl(code);
+		if (in instanceof ByteBufferDataInput) {
+			crawl(((ByteBufferDataInput) in).slice(code_length));
+		} else {
+			byte code[] = new byte[code_length];
+			in.readFully(code);
+			crawl(code);
+		}
 		int exception_table_length = in.readUnsignedShort();
 		for (int i = 0; i < exception_table_length; i++) {
 			int start_pc = in.readUnsignedShort();
@@ -1160,7 +1275,10 @@ public class Clazz {
 	 * @param code
 	 */
 	protected void crawl(byte[] code) {
-		ByteBuffer bb = ByteBuffer.wrap(code);
+		crawl(ByteBuffer.wrap(code));
+	}
+
+	protected void crawl(ByteBuffer bb) {
 		bb.order(ByteOrder.BIG_ENDIAN);
 		int lastReference = -1;
 
@@ -1284,12 +1402,12 @@ public class Clazz {
 		}
 	}
 
-	private void doSourceFile(DataInputStream in) throws IOException {
+	private void doSourceFile(DataInput in) throws IOException {
 		int sourcefile_index = in.readUnsignedShort();
 		this.sourceFile = pool[sourcefile_index].toString();
 	}
 
-	private void doParameterAnnotations(DataInputStream in, ElementType member, RetentionPolicy policy, int access_flags)
+	private void doParameterAnnotations(DataInput in, ElementType member, RetentionPolicy policy, int access_flags)
 			throws Exception {
 		int num_parameters = in.readUnsignedByte();
 		for (int p = 0; p < num_parameters; p++) {
@@ -1299,7 +1417,7 @@ public class Clazz {
 		}
 	}
 
-	private void doTypeAnnotations(DataInputStream in, ElementType member, RetentionPolicy policy, int access_flags)
+	private void doTypeAnnotations(DataInput in, ElementType member, RetentionPolicy policy, int access_flags)
 			throws Exception {
 		int num_annotations = in.readUnsignedShort();
 		for (int p = 0; p < num_annotations; p++) {
@@ -1455,7 +1573,7 @@ public class Clazz {
 		}
 	}
 
-	private void doAnnotations(DataInputStream in, ElementType member, RetentionPolicy policy, int access_flags)
+	private void doAnnotations(DataInput in, ElementType member, RetentionPolicy policy, int access_flags)
 			throws Exception {
 		int num_annotations = in.readUnsignedShort(); // # of annotations
 		for (int a = 0; a < num_annotations; a++) {
@@ -1477,7 +1595,7 @@ public class Clazz {
 	// element_value_pairs[num_element_value_pairs];
 	// }
 
-	private Annotation doAnnotation(DataInputStream in, ElementType member, RetentionPolicy policy, boolean collect,
+	private Annotation doAnnotation(DataInput in, ElementType member, RetentionPolicy policy, boolean collect,
 			int access_flags) throws IOException {
 		int type_index = in.readUnsignedShort();
 		if (annotations == null)
@@ -1512,7 +1630,7 @@ public class Clazz {
 		return null;
 	}
 
-	private Object doElementValue(DataInputStream in, ElementType member, RetentionPolicy policy, boolean collect,
+	private Object doElementValue(DataInput in, ElementType member, RetentionPolicy policy, boolean collect,
 			int access_flags) throws IOException {
 		char tag = (char) in.readUnsignedByte();
 		switch (tag) {
@@ -2040,6 +2158,27 @@ public class Clazz {
 		return (accessx & ACC_ANNOTATION) != 0;
 	}
 
+	/**
+	 * Answer if the class may have one of the given annotations, on the class
+	 * itself or on any of its members. The annotation types are recorded when
+	 * the class is parsed so this does not parse the class again, annotation
+	 * processors use it to skip the classes they have nothing to do with. A
+	 * class that has not been parsed yet may have any annotation.
+	 */
+	public boolean mayHaveAnnotation(TypeRef... types) {
+		if (className == null)
+			return true;
+
+		if (annotations == null)
+			return false;
+
+		for (TypeRef type : types) {
+			if (annotations.contains(type))
+				return true;
+		}
+		return false;
+	}
+
 	public Set<PackageRef> getAPIUses() {
 		if (api == null)
 			return Collections.emptySet();
@@ -2054,6 +2193,87 @@ public class Clazz {
 		return new TypeDef(type, true);
 	}
 
+	/**
+	 * Answer the summary of this class. The class must have been parsed.
+	 */
+	public Summary getSummary() {
+		Summary summary = new Summary();
+		summary.major = major;
+		summary.minor = minor;
+		summary.access = accessx;
+		summary.className = className.getBinary();
+		if (zuper != null)
+			summary.superName = zuper.getBinary();
+		if (interfaces != null) {
+			summary.interfaces = new ArrayList<String>();
+			for (TypeRef i : interfaces)
+				summary.interfaces.add(i.getBinary());
+		}
+		summary.referred = new ArrayList<String>();
+		for (PackageRef p : imports)
+			summary.referred.add(p.getBinary());
+		if (api != null) {
+			summary.api = new ArrayList<String>();
+			for (PackageRef p : api)
+				summary.api.add(p.getBinary());
+		}
+		if (annotations != null) {
+			summary.annotations = new ArrayList<String>();
+			for (TypeRef a : annotations)
+				summary.annotations.add(a.getBinary());
+		}
+		summary.hasRuntimeAnnotations = hasRuntimeAnnotations;
+		summary.hasClassAnnotations = hasClassAnnotations;
+		summary.hasDefaultConstructor = hasDefaultConstructor;
+		summary.sourceFile = sourceFile;
+		summary.innerAccess = innerAccess;
+		summary.deprecated = deprecated;
+		return summary;
+	}
+
+	/**
+	 * Initialize this class from a summary instead of parsing the class file.
+	 * The result is the same state as after {@link #parseClassFile()}, the
+	 * constant pool and the cross references are not kept after a parse
+	 * either.
+	 */
+	public void setSummary(Summary summary) {
+		major = summary.major;
+		minor = summary.minor;
+		accessx = summary.access;
+		className = analyzer.getTypeRef(summary.className);
+		zuper = summary.superName == null ? null : analyzer.getTypeRef(summary.superName);
+		if (summary.interfaces != null) {
+			interfaces = new TypeRef[summary.interfaces.size()];
+			for (int i = 0; i < interfaces.length; i++)
+				interfaces[i] = analyzer.getTypeRef(summary.interfaces.get(i));
+		} else
+			interfaces = null;
+		imports = Create.set();
+		if (summary.referred != null)
+			for (String p : summary.referred)
+				imports.add(analyzer.getPackageRef(p));
+		if (summary.api != null) {
+			api = new HashSet<PackageRef>();
+			for (String p : summary.api)
+				api.add(analyzer.getPackageRef(p));
+		} else
+			api = null;
+		if (summary.annotations != null) {
+			annotations = new HashSet<TypeRef>();
+			for (String a : summary.annotations)
+				annotations.add(analyzer.getTypeRef(a));
+		} else
+			annotations = null;
+		hasRuntimeAnnotations = summary.hasRuntimeAnnotations;
+		hasClassAnnotations = summary.hasClassAnnotations;
+		hasDefaultConstructor = summary.hasDefaultConstructor;
+		sourceFile = summary.sourceFile;
+		innerAccess = summary.innerAccess;
+		deprecated = summary.deprecated;
+		reset();
+	}
+
 	private void classConstRef(int lastReference) {
 		Object o = pool[lastReference];
 		if (o == null)
@@ -0,0 +1,89 @@
+package aQute.bnd.osgi;
+
+import java.io.*;
+import java.nio.*;
+
+import aQute.lib.io.*;
+import aQute.lib.json.*;
+import aQute.libg.cryptography.*;
+
+/**
+ * A persistent cache of parsed class files. Each class file is identified by
+ * the SHA-1 of its bytes and the cache stores the {@link Clazz.Summary} of the
+ * class as a JSON file under that digest. Since a summary only depends on the
+ * bytes of the class file, entries never become stale and the cache can be
+ * shared between all the analyzers in a workspace, also across builds and
+ * processes. Entries are written to a temporary file and then renamed so
+ * concurrent writers cannot corrupt an entry.
+ */
+public class ClazzCache {
+	/**
+	 * Increase when the parsing or the summary changes so old entries are no
+	 * longer used
+	 */
+	final static int		VERSION	= 2;
+	final static JSONCodec	codec	= new JSONCodec();
+	final File				dir;
+
+	public ClazzCache(File dir) {
+		this.dir = new File(dir, "v" + VERSION);
+	}
+
+	/**
+	 * Answer a Clazz for the given resource. If the cache has a summary for the
+	 * content of the resource then this is used, otherwise the class file is
+	 * parsed and its summary is stored in the cache.
+	 */
+	public Clazz parse(Analyzer analyzer, String path, Resource resource) throws Exception {
+		byte[] data = IO.read(resource.openInputStream());
+		String sha = SHA1.digest(data).asHex();
+		File file = getFile(sha);
+
+		Clazz clazz = new Clazz(analyzer, path, resource);
+		if (file.isFile()) {
+			try {
+				Clazz.Summary summary = codec.dec().from(file).get(Clazz.Summary.class);
+				clazz.setSummary(summary);
+				return clazz;
+			}
+			catch (Exception e) {
+				// Damaged entry, parse again and overwrite it
+			}
+		}
+
+		clazz.parseClassFile(ByteBuffer.wrap(data), null);
+		store(file, clazz.getSummary());
+		return clazz;
+	}
+
+	public File getRoot() {
+		return dir;
+	}
+
+	public void clear() {
+		IO.delete(dir);
+	}
+
+	File getFile(String sha) {
+		return new File(new File(dir, sha.substring(0, 2)), sha.substring(2));
+	}
+
+	private void store(File file, Clazz.Summary summary) {
+		try {
+			File parent = file.getParentFile();
+			parent.mkdirs();
+			File tmp = File.createTempFile(file.getName(), ".tmp", parent);
+			try {
+				codec.enc().to(tmp).put(summary);
+				// If this fails another writer already stored the same entry
+				tmp.renameTo(file);
+			}
+			finally {
+				tmp.delete();
+			}
+		}
+		catch (Exception e) {
+			// The cache is only an optimization, we can ignore failures
+		}
+	}
+}
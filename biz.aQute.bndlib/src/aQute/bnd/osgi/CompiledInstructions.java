@@ -0,0 +1,223 @@
+package aQute.bnd.osgi;
+
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * A set of instructions compiled for matching. Matching a value gives the
+ * same instruction as trying the instructions in order, but does not run a
+ * regular expression per instruction:
+ * <ul>
+ * <li>literal instructions are looked up in a hash map,</li>
+ * <li>the common wildcard forms {@code com.foo.*} and {@code com.foo*} are
+ * looked up in a prefix trie,</li>
+ * <li>the remaining instructions are combined in one regular expression with
+ * a group per instruction, in instruction order, so the first alternative
+ * that matches is the first of these instructions that matches.</li>
+ * </ul>
+ * The instruction with the lowest index of these candidates is the match.
+ */
+class CompiledInstructions {
+	final static int			NONE			= Integer.MAX_VALUE;
+	final static Pattern		BACKREFERENCE	= Pattern.compile("\\\\\\d");
+
+	final Instruction[]			instructions;
+	final Map<String,Integer>	literals		= new HashMap<String,Integer>();
+	final Node					trie			= new Node();
+	int							any				= NONE;
+
+	// Instructions that need a regular expression
+	final List<Integer>			others			= new ArrayList<Integer>();
+	Pattern						combined;
+	int[]						groups;
+
+	/**
+	 * A node in the prefix trie. The node for {@code com.foo} holds the
+	 * index of a {@code com.foo*} instruction, which matches any value that
+	 * starts with the prefix, and of a {@code com.foo.*} instruction, which
+	 * matches the prefix itself and any value that continues with a dot.
+	 */
+	static class Node {
+		Map<Character,Node>	children;
+		int					prefix			= NONE;
+		int					packagePrefix	= NONE;
+
+		Node add(char c) {
+			if (children == null)
+				children = new HashMap<Character,Node>();
+			Node node = children.get(c);
+			if (node == null) {
+				node = new Node();
+				children.put(c, node);
+			}
+			return node;
+		}
+	}
+
+	CompiledInstructions(Collection<Instruction> instructions) {
+		this.instructions = instructions.toArray(new Instruction[instructions.size()]);
+
+		for (int i = 0; i < this.instructions.length; i++) {
+			Instruction instruction = this.instructions[i];
+			if (instruction.isAny()) {
+				any = Math.min(any, i);
+			} else if (instruction.isLiteral()) {
+				if (!literals.containsKey(instruction.getLiteral()))
+					literals.put(instruction.getLiteral(), i);
+			} else if (!instruction.caseInsensitive && addPrefix(instruction.getPattern(), i)) {
+				// in the trie
+			} else
+				others.add(i);
+		}
+
+		if (others.size() > 1)
+			combine();
+	}
+
+	/**
+	 * Answer the first instruction that matches the value
+	 *
+	 * @return the instruction or null if none matches
+	 */
+	Instruction matcher(String value) {
+		int index = index(value);
+		return index == NONE ? null : instructions[index];
+	}
+
+	/**
+	 * Answer the index of the first instruction that matches the value.
+	 *
+	 * @return the index or {@link #NONE}
+	 */
+	int index(String value) {
+		// A regex wildcard does not match line terminators, the trie would
+		if (value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0)
+			return sequential(value);
+
+		int best = any;
+
+		Integer literal = literals.get(value);
+		if (literal != null && literal < best)
+			best = literal;
+
+		Node node = trie;
+		for (int i = 0;; i++) {
+			if (node.prefix < best)
+				best = node.prefix;
+			if (node.packagePrefix < best && (i == value.length() || value.charAt(i) == '.'))
+				best = node.packagePrefix;
+			if (i == value.length() || node.children == null)
+				break;
+			node = node.children.get(value.charAt(i));
+			if (node == null)
+				break;
+		}
+
+		if (others.isEmpty() || others.get(0) > best)
+			return best;
+
+		if (combined != null) {
+			Matcher m = combined.matcher(value);
+			if (m.matches()) {
+				for (int g = 0; g < groups.length; g++) {
+					if (m.start(groups[g]) >= 0)
+						return Math.min(best, others.get(g));
+				}
+			}
+			return best;
+		}
+
+		for (int index : others) {
+			if (index > best)
+				break;
+			if (instructions[index].matches(value))
+				return index;
+		}
+		return best;
+	}
+
+	private int sequential(String value) {
+		for (int i = 0; i < instructions.length; i++)
+			if (instructions[i].matches(value))
+				return i;
+		return NONE;
+	}
+
+	/**
+	 * Add the instruction to the trie if its pattern is a plain prefix
+	 * followed by {@code (\..*)?} or {@code .*}.
+	 */
+	private boolean addPrefix(String pattern, int index) {
+		boolean packagePrefix;
+		String rest;
+		if (pattern.endsWith("(\\..*)?")) {
+			packagePrefix = true;
+			rest = pattern.substring(0, pattern.length() - 7);
+		} else if (pattern.endsWith(".*")) {
+			packagePrefix = false;
+			rest = pattern.substring(0, pattern.length() - 2);
+		} else
+			return false;
+
+		StringBuilder prefix = new StringBuilder();
+		for (int i = 0; i < rest.length(); i++) {
+			char c = rest.charAt(i);
+			if (c == '\\') {
+				if (i + 1 < rest.length() && (rest.charAt(i + 1) == '.' || rest.charAt(i + 1) == '$')) {
+					prefix.append(rest.charAt(++i));
+					continue;
+				}
+				return false;
+			}
+			if ("[](){}.*+?^$|".indexOf(c) >= 0)
+				return false;
+			prefix.append(c);
+		}
+
+		Node node = trie;
+		for (int i = 0; i < prefix.length(); i++)
+			node = node.add(prefix.charAt(i));
+
+		if (packagePrefix)
+			node.packagePrefix = Math.min(node.packagePrefix, index);
+		else
+			node.prefix = Math.min(node.prefix, index);
+		return true;
+	}
+
+	/**
+	 * Combine the remaining instructions in one pattern. Patterns with back
+	 * references cannot be combined since the group numbers change, they are
+	 * then matched one by one.
+	 */
+	private void combine() {
+		StringBuilder sb = new StringBuilder();
+		int[] groups = new int[others.size()];
+		int group = 1;
+		try {
+			for (int g = 0; g < others.size(); g++) {
+				Instruction instruction = instructions[others.get(g)];
+				String pattern = instruction.getPattern();
+				if (BACKREFERENCE.matcher(pattern).find())
+					return;
+
+				if (g > 0)
+					sb.append('|');
+				sb.append('(');
+				if (instruction.caseInsensitive)
+					sb.append("(?i:").append(pattern).append(')');
+				else
+					sb.append(pattern);
+				sb.append(')');
+
+				groups[g] = group;
+				group += 1 + instruction.getMatcher("").groupCount();
+			}
+			combined = Pattern.compile(sb.toString());
+			this.groups = groups;
+		}
+		catch (PatternSyntaxException e) {
+			// matched one by one, which reports the syntax error
+		}
+	}
+}
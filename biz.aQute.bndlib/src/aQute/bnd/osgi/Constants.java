@@ -82,9 +82,11 @@ public interface Constants {
 	String							BNDDRIVER_OSMORC							= "osmorc";
 
 	String							BUILDPATH									= "-buildpath";
+	String							BUILDTHREADS								= "-buildthreads";
 	@Deprecated
 	String							BUILDPACKAGES								= "-buildpackages";
 	String							BUMPPOLICY									= "-bumppolicy";
+	String							CLASSCACHE									= "-classcache";
 	String							CONDUIT										= "-conduit";
 	String							CONTRACT									= "-contract";
 	@Deprecated
@@ -141,6 +143,11 @@ public interface Constants {
 	String							OUTPUTMASK									= "-outputmask";																																					// default
 																																																													// ${@bsn}.jar
 	String							PACKAGE										= "-package";
+	String							PARALLELANALYSIS							= "-parallelanalysis";
+	String							PARALLELANALYSIS_THREADS					= "-parallelanalysisthreads";
+	String							PARALLELSUB									= "-parallelsub";
+	String							PARALLELPATHS								= "-parallelpaths";
+	String							SHAREDDESCRIPTORS							= "-shareddescriptors";
 	String							PACKAGE_JPM									= "jpm";
 	String							PEDANTIC									= "-pedantic";
 	String							PLUGIN										= "-plugin";
@@ -199,6 +206,7 @@ public interface Constants {
 	String							TESTUNRESOLVED								= "-testunresolved";
 	String							UNDERTEST									= "-undertest";
 	String							UPTO										= "-upto";
+	String							VERSIONCACHE								= "-versioncache";
 	String							PROVIDER_POLICY								= "-provider-policy";
 	String							CONSUMER_POLICY								= "-consumer-policy";
 	String							WAB											= "-wab";
@@ -219,7 +227,9 @@ public interface Constants {
 			NAMESECTION, DIGESTS, DSANNOTATIONS, BASELINE, BASELINEREPO, PROFILE, PACKAGE, RUNNOREFERENCES, JAVAAGENT,
 			STRICT, DIFFIGNORE, CONTRACT, NOBUILDINCACHE, EXTENSION, NOJUNIT, NOJUNITOSGI, PREPROCESSMATCHERS, UPTO,
 			INVALIDFILENAMES, FIXUPMESSAGES, PRIVATEPACKAGE, CONDITIONALPACKAGE, NOEE, OUTPUTMASK, TESTUNRESOLVED,
-			RUNJDB, RUNENV, RUNEE, EEPROFILE, RUNREQUIRES, EXPORT, GESTALT, BNDDRIVER
+			RUNJDB, RUNENV, RUNEE, EEPROFILE, RUNREQUIRES, EXPORT, GESTALT, BNDDRIVER, PARALLELANALYSIS,
+			PARALLELANALYSIS_THREADS, CLASSCACHE, BUILDTHREADS, PARALLELSUB,
+			PARALLELPATHS, SHAREDDESCRIPTORS, VERSIONCACHE
 																				};
 
 	// Ignore bundle specific headers. These bundles do not make
@@ -320,6 +330,7 @@ public interface Constants {
 	String							CURRENT_PACKAGE								= "@package";
 
 	String							BUILDFILES									= "buildfiles";
+	String							BUILDSTATE									= "buildstate";
 
 	String							EMPTY_HEADER								= "<<EMPTY>>";
 
@@ -1,13 +1,26 @@
 package aQute.bnd.osgi;
 
+import java.lang.ref.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import aQute.libg.generics.*;
 
+/**
+ * Interns the type references, package references and descriptors of an
+ * analyzer. References are compared by identity so all the users of a
+ * Descriptors must get the same instance for the same name. The tables are
+ * concurrent so a Descriptors can be used by several threads, for example by
+ * parallel analysis.
+ * <p>
+ * The {@link #getShared() shared} Descriptors is used by all analyzers in the
+ * VM that set {@link Constants#SHAREDDESCRIPTORS}. It only holds its entries
+ * weakly, an entry is dropped when no analyzer uses it anymore.
+ */
 public class Descriptors {
-	Map<String,TypeRef>		typeRefCache		= Create.map();
-	Map<String,Descriptor>	descriptorCache		= Create.map();
-	Map<String,PackageRef>	packageCache		= Create.map();
+	final Table<TypeRef>		typeRefCache;
+	final Table<Descriptor>		descriptorCache;
+	final Table<PackageRef>		packageCache;
 
 	// MUST BE BEFORE PRIMITIVES, THEY USE THE DEFAULT PACKAGE!!
 	final static PackageRef	DEFAULT_PACKAGE		= new PackageRef();
@@ -23,6 +36,8 @@ public class Descriptors {
 	final static TypeRef	DOUBLE				= new ConcreteRef("D", "double", PRIMITIVE_PACKAGE);
 	final static TypeRef	FLOAT				= new ConcreteRef("F", "float", PRIMITIVE_PACKAGE);
 
+	final static Descriptors	shared			= new Descriptors(true);
+
 	public enum SignatureType {
 		TYPEVAR, METHOD, FIELD;
 	}
@@ -33,8 +48,91 @@ public class Descriptors {
 
 	}
 
-	{
-		packageCache.put("", DEFAULT_PACKAGE);
+	public Descriptors() {
+		this(false);
+	}
+
+	Descriptors(boolean weak) {
+		typeRefCache = new Table<TypeRef>(weak);
+		descriptorCache = new Table<Descriptor>(weak);
+		packageCache = new Table<PackageRef>(weak);
+		packageCache.intern("", DEFAULT_PACKAGE);
+	}
+
+	/**
+	 * Answer the Descriptors that is shared in this VM
+	 */
+	public static Descriptors getShared() {
+		return shared;
+	}
+
+	/**
+	 * An intern table. Lookups do not lock, when two threads create an entry
+	 * for the same key the first one wins and is returned to both. A weak
+	 * table keeps its entries through weak references that are removed when
+	 * the entry is collected.
+	 */
+	static class Table<T> {
+		final ConcurrentMap<String,Object>	map	= new ConcurrentHashMap<String,Object>();
+		final ReferenceQueue<T>				queue;
+
+		Table(boolean weak) {
+			queue = weak ? new ReferenceQueue<T>() : null;
+		}
+
+		@SuppressWarnings("unchecked")
+		T get(String key) {
+			Object o = map.get(key);
+			if (o instanceof Ref)
+				return ((Ref<T>) o).get();
+			return (T) o;
+		}
+
+		/**
+		 * Add the value unless there is already a value for the key
+		 *
+		 * @return the value in the table
+		 */
+		@SuppressWarnings("unchecked")
+		T intern(String key, T value) {
+			if (queue == null) {
+				Object previous = map.putIfAbsent(key, value);
+				return previous == null ? value : (T) previous;
+			}
+
+			purge();
+			Ref<T> ref = new Ref<T>(key, value, queue);
+			while (true) {
+				Object previous = map.putIfAbsent(key, ref);
+				if (previous == null)
+					return value;
+
+				T t = ((Ref<T>) previous).get();
+				if (t != null)
+					return t;
+
+				if (map.replace(key, previous, ref))
+					return value;
+			}
+		}
+
+		private void purge() {
+			if (queue == null)
+				return;
+
+			Reference< ? extends T> ref;
+			while ((ref = queue.poll()) != null)
+				map.remove(((Ref< ? >) ref).key, ref);
+		}
+	}
+
+	static class Ref<T> extends WeakReference<T> {
+		final String	key;
+
+		Ref(String key, T value, ReferenceQueue<T> queue) {
+			super(value, queue);
+			this.key = key;
+		}
 	}
 
 	public interface TypeRef extends Comparable<TypeRef> {
@@ -379,8 +477,7 @@ public class Descriptors {
 			ref = new ConcreteRef(pref, binaryClassName);
 		}
 
-		typeRefCache.put(binaryClassName, ref);
-		return ref;
+		return typeRefCache.intern(binaryClassName, ref);
 	}
 
 	public PackageRef getPackageRef(String binaryPackName) {
@@ -398,8 +495,7 @@ public class Descriptors {
 		//
 
 		ref = new PackageRef(binaryPackName);
-		packageCache.put(binaryPackName, ref);
-		return ref;
+		return packageCache.intern(binaryPackName, ref);
 	}
 
 	public Descriptor getDescriptor(String descriptor) {
@@ -407,8 +503,7 @@ public class Descriptors {
 		if (d != null)
 			return d;
 		d = new Descriptor(descriptor);
-		descriptorCache.put(descriptor, d);
-		return d;
+		return descriptorCache.intern(descriptor, d);
 	}
 
 	public class Descriptor {
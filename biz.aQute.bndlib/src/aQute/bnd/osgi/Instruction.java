@@ -140,6 +140,59 @@ public class Instruction {
 		return getMatcher(value).matches();
 	}
 
+	/**
+	 * Answer the text that all values matching this instruction start with.
+	 * This can be used to find the candidates in a sorted set, the prefix is
+	 * empty when the instruction can match values that start with anything.
+	 */
+	public String getPrefix() {
+		if (literal)
+			return match;
+
+		if (any || caseInsensitive)
+			return "";
+
+		String s = Processor.removeDuplicateMarker(input);
+		if (negated)
+			s = s.substring(1);
+
+		//
+		// With alternatives the prefix is what they have in common
+		//
+		String prefix = null;
+		for (String alternative : s.split("\\|", -1)) {
+			int n = 0;
+			loop: while (n < alternative.length()) {
+				switch (alternative.charAt(n)) {
+					case '*' :
+					case '?' :
+						break loop;
+					case '.' :
+						if (n + 1 < alternative.length() && alternative.charAt(n + 1) == '*')
+							break loop;
+						break;
+					case '$' :
+						break;
+					default :
+						// Other characters are passed to the regular expression
+						if ("\\^[](){}+".indexOf(alternative.charAt(n)) >= 0)
+							return "";
+						break;
+				}
+				n++;
+			}
+			if (prefix == null)
+				prefix = alternative.substring(0, n);
+			else {
+				int common = 0;
+				while (common < n && common < prefix.length() && prefix.charAt(common) == alternative.charAt(common))
+					common++;
+				prefix = prefix.substring(0, common);
+			}
+		}
+		return prefix;
+	}
+
 	public boolean isNegated() {
 		return negated;
 	}
@@ -8,6 +8,7 @@ import aQute.lib.io.*;
 
 public class Instructions implements Map<Instruction,Attrs> {
 	private LinkedHashMap<Instruction,Attrs>	map;
+	private volatile CompiledInstructions		compiled;
 	public static Instructions					ALWAYS	= new Instructions();
 	static Map<Instruction,Attrs>				EMPTY	= Collections.emptyMap();
 
@@ -35,6 +36,7 @@ public class Instructions implements Map<Instruction,Attrs> {
 	}
 
 	public void clear() {
+		compiled = null;
 		map.clear();
 	}
 
@@ -108,6 +110,7 @@ public class Instructions implements Map<Instruction,Attrs> {
 		if (map == null)
 			map = new LinkedHashMap<Instruction,Attrs>();
 
+		compiled = null;
 		return map.put(key, value);
 	}
 
@@ -117,6 +120,7 @@ public class Instructions implements Map<Instruction,Attrs> {
 				return;
 			this.map = new LinkedHashMap<Instruction,Attrs>();
 		}
+		compiled = null;
 		this.map.putAll(map);
 	}
 
@@ -126,12 +130,14 @@ public class Instructions implements Map<Instruction,Attrs> {
 		if (map == null)
 			return null;
 
+		compiled = null;
 		return map.remove(var0);
 	}
 
 	public Attrs remove(Instruction var0) {
 		if (map == null)
 			return null;
+		compiled = null;
 		return map.remove(var0);
 	}
 
@@ -168,22 +174,41 @@ public class Instructions implements Map<Instruction,Attrs> {
 		if (emptyIsAll && isEmpty())
 			return input;
 
-		List<T> result = new ArrayList<T>();
+		//
+		// Each object is selected by the first instruction that matches it.
+		// The result has the objects of the first instruction first, then
+		// those of the second, etc.
+		//
 
-		for (Instruction instruction : keySet()) {
-			boolean used = false;
-			for (Iterator<T> o = input.iterator(); o.hasNext();) {
-				T oo = o.next();
-				String s = oo.toString();
-				if (instruction.matches(s)) {
-					if (!instruction.isNegated())
-						result.add(oo);
-					o.remove();
-					used = true;
+		CompiledInstructions compiled = getCompiled();
+		Instruction[] instructions = compiled.instructions;
+		List<List<T>> selected = new ArrayList<List<T>>(instructions.length);
+		for (int i = 0; i < instructions.length; i++)
+			selected.add(null);
+		boolean[] used = new boolean[instructions.length];
+
+		for (T oo : input) {
+			int index = compiled.index(oo.toString());
+			if (index == CompiledInstructions.NONE)
+				continue;
+
+			used[index] = true;
+			if (!instructions[index].isNegated()) {
+				List<T> list = selected.get(index);
+				if (list == null) {
+					list = new ArrayList<T>();
+					selected.set(index, list);
 				}
+				list.add(oo);
 			}
-			if (!used && unused != null)
-				unused.add(instruction);
+		}
+
+		List<T> result = new ArrayList<T>();
+		for (int i = 0; i < instructions.length; i++) {
+			if (selected.get(i) != null)
+				result.addAll(selected.get(i));
+			if (!used[i] && unused != null)
+				unused.add(instructions[i]);
 		}
 		return result;
 	}
@@ -209,12 +234,20 @@ public class Instructions implements Map<Instruction,Attrs> {
 	}
 
 	public Instruction matcher(String value) {
-		for (Instruction i : keySet()) {
-			if (i.matches(value)) {
-				return i;
-			}
+		return getCompiled().matcher(value);
+	}
+
+	/**
+	 * Answer the instructions compiled for matching. They are compiled again
+	 * after this map is changed.
+	 */
+	CompiledInstructions getCompiled() {
+		CompiledInstructions c = compiled;
+		if (c == null || c.instructions.length != size()) {
+			c = new CompiledInstructions(keySet());
+			compiled = c;
 		}
-		return null;
+		return c;
 	}
 
 	public Instruction finder(String value) {
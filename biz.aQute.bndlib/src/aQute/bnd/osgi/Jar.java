@@ -188,7 +188,7 @@ public class Jar implements Closeable {
 		return duplicates;
 	}
 
-	public Manifest getManifest() throws Exception {
+	public synchronized Manifest getManifest() throws Exception {
 		check();
 		if (manifest == null) {
 			Resource manifestResource = getResource(manifestName);
@@ -259,39 +259,32 @@ public class Jar implements Closeable {
 	public void write(OutputStream out) throws Exception {
 		check();
 
+		Manifest manifest = getManifest();
+		Map<String,Resource> resources = getResources();
+
 		if (!doNotTouchManifest && !nomanifest && algorithms != null) {
 
 			// ok, we have a request to create digests
 			// of the resources. Since we have to output
-			// the manifest first, we have a slight problem.
-			// We can also not make multiple passes over the resource
-			// because some resources are not idempotent and/or can
-			// take significant time. So we just copy the jar
-			// to a temporary file, read it in again, calculate
-			// the checksums and save.
-
-			String[] algs = algorithms;
-			algorithms = null;
-			try {
-				File f = File.createTempFile(getName(), ".jar");
-				write(f);
-				Jar tmp = new Jar(f);
-				try {
-					tmp.calcChecksums(algorithms);
-					tmp.write(out);
-				}
-				finally {
-					f.delete();
-					tmp.close();
-				}
-			}
-			finally {
-				algorithms = algs;
-			}
-			return;
+			// the manifest first, we calculate the digests
+			// in a pass over the resources before anything
+			// is written. Resources that are not idempotent
+			// and/or can take significant time are read only
+			// once, their content is kept for the write.
+			// The digests are the default digests of
+			// calcChecksums, SHA and MD5.
+
+			manifest = manifest == null ? new Manifest() : new Manifest(manifest);
+			resources = calcChecksums(manifest, resources, new String[] {
+					"SHA", "MD5"
+			});
 		}
 
-		ZipOutputStream jout = nomanifest || doNotTouchManifest ? new ZipOutputStream(out) : new JarOutputStream(out);
+		ZipOutputStream jout;
+		if (isRawCopy(resources))
+			jout = new RawZipOutputStream(out, !(nomanifest || doNotTouchManifest));
+		else
+			jout = nomanifest || doNotTouchManifest ? new ZipOutputStream(out) : new JarOutputStream(out);
 
 		switch (compression) {
 			case STORE :
@@ -312,9 +305,9 @@ public class Jar implements Closeable {
 				done.add(manifestName);
 			}
 		} else
-			doManifest(done, jout);
+			doManifest(done, jout, manifest);
 
-		for (Map.Entry<String,Resource> entry : getResources().entrySet()) {
+		for (Map.Entry<String,Resource> entry : resources.entrySet()) {
 			// Skip metainf contents
 			if (!done.contains(entry.getKey()))
 				writeResource(jout, directories, entry.getKey(), entry.getValue());
@@ -322,7 +315,18 @@ public class Jar implements Closeable {
 		jout.finish();
 	}
 
-	private void doManifest(Set<String> done, ZipOutputStream jout) throws Exception {
+	/**
+	 * Resources from other zip files can be copied without decompressing
+	 * them, this needs our own zip output.
+	 */
+	private boolean isRawCopy(Map<String,Resource> resources) {
+		for (Resource r : resources.values())
+			if (r instanceof ZipResource)
+				return true;
+		return false;
+	}
+
+	private void doManifest(Set<String> done, ZipOutputStream jout, Manifest manifest) throws Exception {
 		check();
 		if (nomanifest)
 			return;
@@ -330,7 +334,7 @@ public class Jar implements Closeable {
 		JarEntry ze = new JarEntry(manifestName);
 		ZipUtil.setModifiedTime(ze,lastModified);
 		jout.putNextEntry(ze);
-		writeManifest(jout);
+		writeManifest(manifest, jout);
 		jout.closeEntry();
 		done.add(ze.getName());
 	}
@@ -556,6 +560,9 @@ public class Jar implements Closeable {
 			ZipUtil.setModifiedTime(ze,lastModified);
 			if (resource.getExtra() != null)
 				ze.setExtra(resource.getExtra().getBytes("UTF-8"));
+			if (jout instanceof RawZipOutputStream && resource instanceof ZipResource
+					&& ((ZipResource) resource).writeRaw((RawZipOutputStream) jout, ze))
+				return;
 			jout.putNextEntry(ze);
 			resource.write(jout);
 			jout.closeEntry();
@@ -758,6 +765,70 @@ public class Jar implements Closeable {
 		}
 	}
 
+	/**
+	 * Calculate the checksums of the resources that will be written in the
+	 * given manifest, without touching the manifest of this jar. The content
+	 * of a resource is read once. Resources that can be read again cheaply
+	 * are returned as is, the content of other resources is kept in memory
+	 * and returned as an embedded resource.
+	 *
+	 * @return the resources to write, in the same order
+	 */
+	private Map<String,Resource> calcChecksums(Manifest manifest, Map<String,Resource> resources, String algorithms[])
+			throws Exception {
+		MessageDigest digests[] = new MessageDigest[algorithms.length];
+		int n = 0;
+		for (String algorithm : algorithms)
+			digests[n++] = MessageDigest.getInstance(algorithm);
+
+		byte buffer[] = new byte[BUFFER_SIZE];
+		Map<String,Resource> result = new LinkedHashMap<String,Resource>();
+
+		for (Map.Entry<String,Resource> entry : resources.entrySet()) {
+			String path = entry.getKey();
+			Resource r = entry.getValue();
+			result.put(path, r);
+
+			// Skip the manifest and the entries that are not written
+			if (path.equals(manifestName) || r == null || path.endsWith(Constants.EMPTY_HEADER))
+				continue;
+
+			boolean repeatable = r instanceof FileResource || r instanceof ZipResource
+					|| r instanceof EmbeddedResource || r instanceof AbstractResource;
+			ByteArrayOutputStream content = repeatable ? null : new ByteArrayOutputStream();
+
+			for (MessageDigest d : digests)
+				d.reset();
+			InputStream in = r.openInputStream();
+			try {
+				int size = in.read(buffer);
+				while (size > 0) {
+					for (MessageDigest d : digests)
+						d.update(buffer, 0, size);
+					if (content != null)
+						content.write(buffer, 0, size);
+					size = in.read(buffer);
+				}
+			}
+			finally {
+				in.close();
+			}
+
+			if (content != null) {
+				EmbeddedResource copy = new EmbeddedResource(content.toByteArray(), r.lastModified());
+				copy.setExtra(r.getExtra());
+				result.put(path, copy);
+			}
+
+			Attributes attributes = manifest.getAttributes(path);
+			attributes = attributes == null ? new Attributes() : (Attributes) attributes.clone();
+			manifest.getEntries().put(path, attributes);
+			for (MessageDigest d : digests)
+				attributes.putValue(d.getAlgorithm() + "-Digest", Base64.encodeBase64(d.digest()));
+		}
+		return result;
+	}
+
 	static Pattern	BSN	= Pattern.compile("\\s*([-\\w\\d\\._]+)\\s*;?.*");
 
 	/**
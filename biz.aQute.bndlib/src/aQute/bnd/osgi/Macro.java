@@ -40,6 +40,13 @@ public class Macro {
 	StringWriter			stdout		= new StringWriter();
 	StringWriter			stderr		= new StringWriter();
 
+	/*
+	 * The command names of the classes of the targets, resolved once per class
+	 * and shared by all macro processors. The classes are weak keys and only
+	 * the names are kept, a Method would keep its class and loader alive.
+	 */
+	private final static Map<Class< ? >,Set<String>>	commandTable	= new WeakHashMap<Class< ? >,Set<String>>();
+
 	public Macro(Processor domain, Object... targets) {
 		this.domain = domain;
 		this.targets = targets;
@@ -55,13 +62,15 @@ public class Macro {
 	}
 
 	String process(String line, Link link) {
+		if (isLiteral(line))
+			return line;
+
 		StringBuilder sb = new StringBuilder();
 		process(line, 0, '\u0000', '\u0000', sb, link);
 		return sb.toString();
 	}
 
-	int process(CharSequence org, int index, char begin, char end, StringBuilder result, Link link) {
-		StringBuilder line = new StringBuilder(org);
+	int process(CharSequence line, int index, char begin, char end, StringBuilder result, Link link) {
 		int nesting = 1;
 
 		StringBuilder variable = new StringBuilder();
@@ -105,6 +114,25 @@ public class Macro {
 		return index;
 	}
 
+	/*
+	 * Answer if the line is returned as is by the processing, it has no macros,
+	 * no escapes and no ./ paths
+	 */
+	private static boolean isLiteral(String line) {
+		for (int i = 0; i < line.length(); i++) {
+			switch (line.charAt(i)) {
+				case '$' :
+				case '\u0000' :
+					return false;
+				case '.' :
+					if (i + 1 < line.length() && line.charAt(i + 1) == '/')
+						return false;
+					break;
+			}
+		}
+		return true;
+	}
+
 	public static char getTerminator(char c) {
 		switch (c) {
 			case '(' :
@@ -136,17 +164,14 @@ public class Macro {
 				if (key.indexOf(';') < 0) {
 					Instruction ins = new Instruction(key);
 					if (!ins.isLiteral()) {
-						SortedList<String> sortedList = SortedList.fromIterator(domain.iterator());
 						StringBuilder sb = new StringBuilder();
 						String del = "";
-						for (String k : sortedList) {
-							if (ins.matches(k)) {
-								String v = replace(k, new Link(source, link, key));
-								if (v != null) {
-									sb.append(del);
-									del = ",";
-									sb.append(v);
-								}
+						for (String k : domain.getKeys(ins)) {
+							String v = replace(k, new Link(source, link, key));
+							if (v != null) {
+								sb.append(del);
+								del = ",";
+								sb.append(v);
 							}
 						}
 						return sb.toString();
@@ -236,17 +261,11 @@ public class Macro {
 	 * @param key
 	 * @return
 	 */
-	static Pattern	commands	= Pattern.compile("(?<!\\\\);");
-
 	private String doCommands(String key, Link source) {
-		String[] args = commands.split(key);
-		if (args == null || args.length == 0)
+		String[] args = splitCommand(key);
+		if (args.length == 0)
 			return null;
 
-		for (int i = 0; i < args.length; i++)
-			if (args[i].indexOf('\\') >= 0)
-				args[i] = args[i].replaceAll("\\\\;", ";");
-
 		if (args[0].startsWith("^")) {
 			String varname = args[0].substring(1).trim();
 
@@ -274,24 +293,65 @@ public class Macro {
 		return doCommand(this, args[0], args);
 	}
 
+	/*
+	 * Split the key on the semicolons that are not escaped with a backslash and
+	 * unescape the others. Like String.split, trailing empty arguments are
+	 * removed. This is done for every command so it does not use a regular
+	 * expression.
+	 */
+	static String[] splitCommand(String key) {
+		List<String> args = new ArrayList<String>();
+		boolean escaped = false;
+		int start = 0;
+		for (int i = 0; i < key.length(); i++) {
+			char c = key.charAt(i);
+			if (c == ';') {
+				if (i > 0 && key.charAt(i - 1) == '\\')
+					escaped = true;
+				else {
+					args.add(unescape(key.substring(start, i), escaped));
+					start = i + 1;
+					escaped = false;
+				}
+			}
+		}
+		if (args.isEmpty())
+			return new String[] {
+				unescape(key, escaped)
+			};
+
+		args.add(unescape(key.substring(start), escaped));
+
+		// Trailing empty arguments are removed
+		int n = args.size();
+		while (n > 0 && args.get(n - 1).length() == 0)
+			n--;
+		return args.subList(0, n).toArray(new String[n]);
+	}
+
+	private static String unescape(String arg, boolean escaped) {
+		return escaped ? arg.replace("\\;", ";") : arg;
+	}
+
 	private String doCommand(Object target, String method, String[] args) {
 		if (target == null)
 			; // System.err.println("Huh? Target should never be null " +
 		// domain);
 		else {
-			String cname = "_" + method.replaceAll("-", "_");
+			String cname = "_" + method.replace('-', '_');
 			try {
+				if (!getCommands(target.getClass()).contains(cname))
+					return null;
+
 				Method m = target.getClass().getMethod(cname, new Class[] {
 					String[].class
 				});
+
 				Object result = m.invoke(target, new Object[] {
 					args
 				});
 				return result == null ? NULLVALUE : result.toString();
 			}
-			catch (NoSuchMethodException e) {
-				return null;
-			}
 			catch (InvocationTargetException e) {
 				if (e.getCause() instanceof IllegalArgumentException) {
 					domain.error("%s, for cmd: %s, arguments; %s", e.getCause().getMessage(), method,
@@ -311,6 +371,30 @@ public class Macro {
 		return null;
 	}
 
+	/*
+	 * Answer the command names of a class, these are the public methods that
+	 * start with an underscore and take the arguments. Looking up a command
+	 * with reflection for each expansion is expensive for the missing ones,
+	 * they throw an exception and the lookup walks the parents and the
+	 * targets.
+	 */
+	private static Set<String> getCommands(Class< ? > c) {
+		synchronized (commandTable) {
+			Set<String> commands = commandTable.get(c);
+			if (commands == null) {
+				commands = new HashSet<String>();
+				for (Method m : c.getMethods()) {
+					if (m.getName().startsWith("_") && Arrays.equals(m.getParameterTypes(), new Class< ? >[] {
+						String[].class
+					}))
+						commands.add(m.getName());
+				}
+				commandTable.put(c, commands);
+			}
+			return commands;
+		}
+	}
+
 	/**
 	 * Return a unique list where the duplicates are removed.
 	 * 
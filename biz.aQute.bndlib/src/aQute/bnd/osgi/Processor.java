@@ -61,6 +61,7 @@ public class Processor extends Domain implements Reporter, Registry, Constants,
 	HashSet<String>					missingCommand;
 	Boolean							strict;
 	boolean							fixupMessages;
+	private KeyIndex				keyIndex;
 
 	public static class FileLine {
 		public static final FileLine	DUMMY	= new FileLine(null, 0, 0);
@@ -83,11 +84,11 @@ public class Processor extends Domain implements Reporter, Registry, Constants,
 	}
 
 	public Processor() {
-		properties = new UTF8Properties();
+		properties = new TrackedProperties(null);
 	}
 
 	public Processor(Properties parent) {
-		properties = new UTF8Properties(parent);
+		properties = new TrackedProperties(parent);
 	}
 
 	public Processor(Processor child) {
@@ -97,7 +98,7 @@ public class Processor extends Domain implements Reporter, Registry, Constants,
 
 	public void setParent(Processor processor) {
 		this.parent = processor;
-		Properties ext = new UTF8Properties(processor.properties);
+		Properties ext = new TrackedProperties(processor.properties);
 		ext.putAll(this.properties);
 		this.properties = ext;
 	}
@@ -113,6 +114,18 @@ public class Processor extends Domain implements Reporter, Registry, Constants,
 	}
 
 	public void getInfo(Reporter processor, String prefix) {
+		copyInfo(processor, prefix);
+
+		processor.getErrors().clear();
+		processor.getWarnings().clear();
+
+	}
+
+	/**
+	 * Add the errors and warnings of the given reporter, with their locations,
+	 * without removing them from that reporter.
+	 */
+	public void copyInfo(Reporter processor, String prefix) {
 		if (prefix == null)
 			prefix = getBase() + " :";
 		if (isFailOk())
@@ -120,10 +133,6 @@ public class Processor extends Domain implements Reporter, Registry, Constants,
 		else
 			addAll(errors, processor.getErrors(), prefix, processor);
 		addAll(warnings, processor.getWarnings(), prefix, processor);
-
-		processor.getErrors().clear();
-		processor.getWarnings().clear();
-
 	}
 
 	public void getInfo(Reporter processor) {
@@ -1143,17 +1152,14 @@ public class Processor extends Domain implements Reporter, Registry, Constants,
 		if (!ins.isLiteral()) {
 			// Handle a wildcard key, make sure they're sorted
 			// for consistency
-			SortedList<String> sortedList = SortedList.fromIterator(iterator());
 			StringBuilder sb = new StringBuilder();
 			String del = "";
-			for (String k : sortedList) {
-				if (ins.matches(k)) {
-					String v = getProperty(k, null);
-					if (v != null) {
-						sb.append(del);
-						del = separator;
-						sb.append(v);
-					}
+			for (String k : getKeys(ins)) {
+				String v = getProperty(k, null);
+				if (v != null) {
+					sb.append(del);
+					del = separator;
+					sb.append(v);
 				}
 			}
 			if (sb.length() == 0)
@@ -2224,6 +2230,96 @@ public class Processor extends Domain implements Reporter, Registry, Constants,
 		return set;
 	}
 
+	/**
+	 * Answer the keys of this processor and its parents that match the
+	 * instruction, sorted. The sorted keys are kept until the properties in
+	 * the chain change, the keys that can match are found with a range scan
+	 * on the prefix of the instruction.
+	 */
+	List<String> getKeys(Instruction ins) {
+		KeyIndex index = keyIndex;
+		if (index == null || !index.isValid(this))
+			keyIndex = index = new KeyIndex(this);
+
+		String prefix = ins.getPrefix();
+		List<String> keys = new ArrayList<String>();
+		for (String k : index.keys.tailSet(prefix)) {
+			if (!k.startsWith(prefix))
+				break;
+			if (ins.matches(k))
+				keys.add(k);
+		}
+		return keys;
+	}
+
+	/*
+	 * The sorted keys of a processor and its parents, valid as long as the
+	 * processors in the chain have the same properties with the same number of
+	 * modifications
+	 */
+	private static class KeyIndex {
+		final List<TrackedProperties>	sources			= new ArrayList<TrackedProperties>();
+		final List<Integer>				modifications	= new ArrayList<Integer>();
+		final SortedSet<String>			keys;
+
+		KeyIndex(Processor processor) {
+			for (Processor p = processor; p != null; p = p.parent) {
+				TrackedProperties properties = (TrackedProperties) p.properties;
+				sources.add(properties);
+				modifications.add(properties.modifications);
+			}
+			keys = new TreeSet<String>(processor.keySet());
+		}
+
+		boolean isValid(Processor processor) {
+			int n = 0;
+			for (Processor p = processor; p != null; p = p.parent, n++) {
+				if (n == sources.size() || sources.get(n) != p.properties
+						|| modifications.get(n) != ((TrackedProperties) p.properties).modifications)
+					return false;
+			}
+			return n == sources.size();
+		}
+	}
+
+	/*
+	 * The properties of a processor, they count their modifications so the
+	 * sorted keys can be kept while they do not change. The count is changed
+	 * before the properties so a change is never missed.
+	 */
+	private static class TrackedProperties extends UTF8Properties {
+		private static final long	serialVersionUID	= 1L;
+		volatile int				modifications;
+
+		TrackedProperties(Properties defaults) {
+			super(defaults);
+		}
+
+		@Override
+		public Object put(Object key, Object value) {
+			modifications++;
+			return super.put(key, value);
+		}
+
+		@Override
+		public void putAll(Map< ? , ? > t) {
+			modifications++;
+			super.putAll(t);
+		}
+
+		@Override
+		public Object remove(Object key) {
+			modifications++;
+			return super.remove(key);
+		}
+
+		@Override
+		public void clear() {
+			modifications++;
+			super.clear();
+		}
+	}
+
 	/**
 	 * Printout of the status of this processor for toString()
 	 */
@@ -2316,7 +2412,9 @@ public class Processor extends Domain implements Reporter, Registry, Constants,
 
 	private SetLocation location(String s) {
 		SetLocationImpl loc = new SetLocationImpl(s);
-		locations.add(loc);
+		synchronized (locations) {
+			locations.add(loc);
+		}
 		return loc;
 	}
 
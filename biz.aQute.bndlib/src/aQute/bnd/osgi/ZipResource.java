@@ -10,12 +10,14 @@ import aQute.lib.zip.*;
 public class ZipResource implements Resource {
 	ZipFile		zip;
 	ZipEntry	entry;
+	RawZipFile	raw;
 	long		lastModified;
 	String		extra;
 
-	ZipResource(ZipFile zip, ZipEntry entry) throws UnsupportedEncodingException {
+	ZipResource(ZipFile zip, ZipEntry entry, RawZipFile raw) throws UnsupportedEncodingException {
 		this.zip = zip;
 		this.entry = entry;
+		this.raw = raw;
 		this.lastModified = -11L;
 		byte[] data = entry.getExtra();
 		if (data != null)
@@ -39,6 +41,7 @@ public class ZipResource implements Resource {
 
 		try {
 			ZipFile zip = new ZipFile(file);
+			RawZipFile raw = new RawZipFile(file);
 			nextEntry: for (Enumeration< ? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
 				ZipEntry entry = e.nextElement();
 				if (pattern != null) {
@@ -48,7 +51,7 @@ public class ZipResource implements Resource {
 				}
 				if (!entry.isDirectory()) {
 
-					jar.putResource(entry.getName(), new ZipResource(zip, entry), true);
+					jar.putResource(entry.getName(), new ZipResource(zip, entry, raw), true);
 				}
 			}
 			return zip;
@@ -66,6 +69,36 @@ public class ZipResource implements Resource {
 		FileResource.copy(this, out);
 	}
 
+	/**
+	 * Copy the compressed data of the zip entry to the output, skipping the
+	 * inflate and deflate of a normal write. This is only done when the entry
+	 * in the file still matches the entry we read.
+	 *
+	 * @return false if the resource must be written normally
+	 */
+	boolean writeRaw(RawZipOutputStream out, ZipEntry ze) throws IOException {
+		RawZipFile.Entry e = raw == null ? null : raw.getEntry(entry.getName());
+		if (e == null || e.crc != entry.getCrc() || e.size != entry.getSize()
+				|| e.compressedSize != entry.getCompressedSize())
+			return false;
+
+		InputStream in;
+		try {
+			in = raw.openRaw(e);
+		}
+		catch (IOException ioe) {
+			// Nothing is written yet, the entry is copied normally
+			return false;
+		}
+		try {
+			out.putRawEntry(ze, e.method, e.crc, e.compressedSize, e.size, in);
+		}
+		finally {
+			in.close();
+		}
+		return true;
+	}
+
 	public long lastModified() {
 		try {
 			if (lastModified == -11L) {
@@ -16,10 +16,10 @@ class CapReq  {
 
 	CapReq(MODE mode, String namespace, Resource resource, Map<String, String> directives, Map<String, Object> attributes) {
 		this.mode = mode;
-		this.namespace = namespace;
+		this.namespace = CompactMap.intern(namespace);
 		this.resource = resource;
-		this.directives = new HashMap<String,String>(directives);
-		this.attributes = new HashMap<String,Object>(attributes);
+		this.directives = CompactMap.share(directives);
+		this.attributes = CompactMap.copyOf(attributes);
 	}
 
 	public String getNamespace() {
@@ -27,11 +27,11 @@ class CapReq  {
 	}
 
 	public Map<String,String> getDirectives() {
-		return Collections.unmodifiableMap(directives);
+		return directives;
 	}
 
 	public Map<String,Object> getAttributes() {
-		return Collections.unmodifiableMap(attributes);
+		return attributes;
 	}
 
 	public Resource getResource() {
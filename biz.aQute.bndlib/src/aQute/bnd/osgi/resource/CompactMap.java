@@ -0,0 +1,165 @@
+package aQute.bnd.osgi.resource;
+
+import java.lang.ref.*;
+import java.util.*;
+
+/**
+ * An immutable map with string keys that stores its entries in two arrays,
+ * sorted on the key. Repository indexes have many capabilities and
+ * requirements with a few attributes and directives each, a hash map per
+ * capability costs several times the memory of the entries.
+ * <p>
+ * The keys and the common values, strings and versions, are interned so
+ * capabilities share them, strings with {@link String#intern()}. Equal
+ * directive maps are shared as a whole with {@link #share(Map)}, most
+ * requirements have one of a small set of directive maps.
+ */
+final class CompactMap<V> extends AbstractMap<String,V> {
+	private final static Map<Object,WeakReference<Object>>	interned	= new WeakHashMap<Object,WeakReference<Object>>();
+
+	private final String[]									keys;
+	private final Object[]									values;
+	private int												hash;
+
+	private CompactMap(String[] keys, Object[] values) {
+		this.keys = keys;
+		this.values = values;
+	}
+
+	/**
+	 * Answer an immutable copy of the map
+	 */
+	static <V> Map<String,V> copyOf(Map<String, ? extends V> map) {
+		int size = map.size();
+		if (size == 0)
+			return Collections.emptyMap();
+
+		String[] keys = new String[size];
+		int n = 0;
+		for (String key : map.keySet())
+			keys[n++] = intern(key);
+		Arrays.sort(keys);
+
+		Object[] values = new Object[size];
+		for (int i = 0; i < size; i++)
+			values[i] = intern(map.get(keys[i]));
+
+		return new CompactMap<V>(keys, values);
+	}
+
+	/**
+	 * Answer an immutable copy of the map that is shared with all other equal
+	 * maps that were shared.
+	 */
+	static <V> Map<String,V> share(Map<String, ? extends V> map) {
+		Map<String,V> copy = copyOf(map);
+		if (copy.isEmpty())
+			return copy;
+		return intern(copy);
+	}
+
+	/**
+	 * Answer an instance that is equal to the given value, strings and
+	 * versions are shared, other values are returned as is.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> T intern(T value) {
+		if (value instanceof String)
+			return (T) ((String) value).intern();
+
+		if (!(value instanceof org.osgi.framework.Version || value instanceof aQute.bnd.version.Version
+				|| value instanceof CompactMap))
+			return value;
+
+		synchronized (interned) {
+			WeakReference<Object> ref = interned.get(value);
+			if (ref != null) {
+				Object shared = ref.get();
+				if (shared != null)
+					return (T) shared;
+			}
+			interned.put(value, new WeakReference<Object>(value));
+			return value;
+		}
+	}
+
+	private int indexOf(Object key) {
+		if (!(key instanceof String))
+			return -1;
+		return Arrays.binarySearch(keys, key);
+	}
+
+	@Override
+	public int size() {
+		return keys.length;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public V get(Object key) {
+		int index = indexOf(key);
+		return index < 0 ? null : (V) values[index];
+	}
+
+	@Override
+	public Set<Entry<String,V>> entrySet() {
+		return new AbstractSet<Entry<String,V>>() {
+			@Override
+			public Iterator<Entry<String,V>> iterator() {
+				return new Iterator<Entry<String,V>>() {
+					int	n	= 0;
+
+					public boolean hasNext() {
+						return n < keys.length;
+					}
+
+					@SuppressWarnings("unchecked")
+					public Entry<String,V> next() {
+						if (n >= keys.length)
+							throw new NoSuchElementException();
+						Entry<String,V> entry = new SimpleImmutableEntry<String,V>(keys[n], (V) values[n]);
+						n++;
+						return entry;
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return keys.length;
+			}
+		};
+	}
+
+	@Override
+	public int hashCode() {
+		int h = hash;
+		if (h == 0) {
+			for (int i = 0; i < keys.length; i++)
+				h += keys[i].hashCode() ^ (values[i] == null ? 0 : values[i].hashCode());
+			hash = h;
+		}
+		return h;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if (o instanceof CompactMap) {
+			CompactMap< ? > other = (CompactMap< ? >) o;
+			return hashCode() == other.hashCode() && Arrays.equals(keys, other.keys)
+					&& Arrays.equals(values, other.values);
+		}
+		return super.equals(o);
+	}
+}
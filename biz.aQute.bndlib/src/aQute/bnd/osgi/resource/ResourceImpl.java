@@ -13,52 +13,70 @@ class ResourceImpl implements Resource {
 	private List<Requirement>				allRequirements;
 	private Map<String,List<Requirement>>	requirementMap;
 
+	/*
+	 * The lists are unmodifiable copies of the exact size and the maps per
+	 * namespace are compact maps, an index holds many resources.
+	 */
 	void setCapabilities(List<Capability> capabilities) {
-		allCapabilities = capabilities;
+		allCapabilities = copyOf(capabilities);
 
-		capabilityMap = new HashMap<String,List<Capability>>();
+		Map<String,List<Capability>> map = new LinkedHashMap<String,List<Capability>>();
 		for (Capability capability : capabilities) {
-			List<Capability> list = capabilityMap.get(capability.getNamespace());
+			List<Capability> list = map.get(capability.getNamespace());
 			if (list == null) {
-				list = new LinkedList<Capability>();
-				capabilityMap.put(capability.getNamespace(), list);
+				list = new ArrayList<Capability>();
+				map.put(capability.getNamespace(), list);
 			}
 			list.add(capability);
 		}
+		for (Map.Entry<String,List<Capability>> entry : map.entrySet())
+			entry.setValue(copyOf(entry.getValue()));
+		capabilityMap = CompactMap.copyOf(map);
 	}
 
 	public List<Capability> getCapabilities(String namespace) {
 		List<Capability> caps = allCapabilities;
 		if ( namespace != null)
 			caps = capabilityMap.get(namespace);
-		if ( caps == null || caps.isEmpty())
+		if ( caps == null)
 			return Collections.emptyList();
 		
-		return Collections.unmodifiableList(caps);
+		return caps;
 	}
 
 	void setRequirements(List<Requirement> requirements) {
-		allRequirements = requirements;
+		allRequirements = copyOf(requirements);
 
-		requirementMap = new HashMap<String,List<Requirement>>();
+		Map<String,List<Requirement>> map = new LinkedHashMap<String,List<Requirement>>();
 		for (Requirement requirement : requirements) {
-			List<Requirement> list = requirementMap.get(requirement.getNamespace());
+			List<Requirement> list = map.get(requirement.getNamespace());
 			if (list == null) {
-				list = new LinkedList<Requirement>();
-				requirementMap.put(requirement.getNamespace(), list);
+				list = new ArrayList<Requirement>();
+				map.put(requirement.getNamespace(), list);
 			}
 			list.add(requirement);
 		}
+		for (Map.Entry<String,List<Requirement>> entry : map.entrySet())
+			entry.setValue(copyOf(entry.getValue()));
+		requirementMap = CompactMap.copyOf(map);
 	}
 
 	public List<Requirement> getRequirements(String namespace) {
 		List<Requirement> reqs = allRequirements;
 		if ( namespace != null)
 			reqs = requirementMap.get(namespace);
-		if ( reqs == null || reqs.isEmpty())
+		if ( reqs == null)
 			return Collections.emptyList();
 		
-		return Collections.unmodifiableList(reqs);
+		return reqs;
+	}
+
+	private static <T> List<T> copyOf(List<T> list) {
+		if (list.isEmpty())
+			return Collections.emptyList();
+		if (list.size() == 1)
+			return Collections.singletonList(list.get(0));
+		return Collections.unmodifiableList(new ArrayList<T>(list));
 	}
 
 	@Override
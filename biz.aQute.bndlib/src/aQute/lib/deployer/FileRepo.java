@@ -561,6 +561,7 @@ public class FileRepo implements Plugin, RepositoryPlugin, Refreshable, Registry
 		init();
 		exec(refresh, root);
 		rebuildIndex();
+		fireRepositoryRefreshed();
 		return true;
 	}
 
@@ -802,6 +803,20 @@ public class FileRepo implements Plugin, RepositoryPlugin, Refreshable, Registry
 		exec(beforeGet, root.getAbsolutePath(), bsn, version);
 	}
 
+	protected void fireRepositoryRefreshed() {
+		if (registry == null)
+			return;
+		for (RepositoryListenerPlugin listener : registry.getPlugins(RepositoryListenerPlugin.class)) {
+			try {
+				listener.repositoryRefreshed(this);
+			}
+			catch (Exception e) {
+				if (reporter != null)
+					reporter.warning("Repository listener threw an unexpected exception: %s", e);
+			}
+		}
+	}
+
 	protected void fireBundleAdded(File file) {
 		if (registry == null)
 			return;
@@ -47,8 +47,10 @@ public abstract class AbstractIndexedRepo implements RegistryPlugin, Plugin, Rem
 	public static final String									REPO_TYPE_R5					= R5RepoContentProvider.NAME;
 	public static final String									REPO_TYPE_OBR					= ObrContentProvider.NAME;
 	public static final String									REPO_INDEX_SHA_EXTENSION		= ".sha";
+	public static final String									REPO_INDEX_SNAPSHOT_EXTENSION	= ".snapshot";
 	public static final String									PROP_CACHE_TIMEOUT				= "timeout";
 	public static final String									PROP_ONLINE						= "online";
+	public static final String									PROP_LAZY						= "lazy";
 	
 	private final static int DEFAULT_CACHE_TIMEOUT = 5;
 
@@ -78,6 +80,7 @@ public abstract class AbstractIndexedRepo implements RegistryPlugin, Plugin, Rem
 	private final VersionedResourceIndex					identityMap						= new VersionedResourceIndex();
 	private int cacheTimeoutSeconds = DEFAULT_CACHE_TIMEOUT;
 	private boolean online = true;
+	private boolean lazy = false;
 
 	protected AbstractIndexedRepo() {
 		allContentProviders.put(REPO_TYPE_R5, new R5RepoContentProvider());
@@ -165,7 +168,7 @@ public abstract class AbstractIndexedRepo implements RegistryPlugin, Plugin, Rem
 						try {
 							CachingUriResourceHandle indexHandle = new CachingUriResourceHandle(indexLocation, getCacheDirectory(), connector, (String) null);
 							indexHandle.setReporter(reporter);
-							readIndex(indexLocation.getPath(), indexLocation, new FileInputStream(indexHandle.request()), allContentProviders.values(), this, logService);
+							readIndex(indexHandle, indexLocation.getPath(), indexLocation, false, this);
 						}
 						catch (Exception e) {
 							warning("Unable to read referral index at URL '%s' from parent index '%s': %s", indexLocation, parentUri, e);
@@ -195,9 +198,7 @@ public abstract class AbstractIndexedRepo implements RegistryPlugin, Plugin, Rem
 						}
 					}
 					indexHandle.setReporter(reporter);
-					File indexFile = indexHandle.request();
-					InputStream indexStream = GZipUtils.detectCompression(new FileInputStream(indexFile));
-					readIndex(indexFile.getName(), indexLocation, indexStream, allContentProviders.values(), processor, logService);
+					readIndex(indexHandle, null, indexLocation, true, processor);
 				}
 				catch (Exception e) {
 					error("Unable to read index at URL '%s': %s", indexLocation, e);
@@ -208,6 +209,46 @@ public abstract class AbstractIndexedRepo implements RegistryPlugin, Plugin, Rem
 		}
 	}
 
+	/**
+	 * Read an index through its handle. When the index is cached locally then
+	 * the parsed index is also stored in a binary snapshot next to the cached
+	 * file. The next time the cached index has the same SHA the snapshot is
+	 * replayed instead of parsing the index again. A lazily parsed index is
+	 * not stored in a snapshot since that requires all its resources to be
+	 * built.
+	 * 
+	 * @param name
+	 *            the name used to select the content provider or null for the
+	 *            name of the index file
+	 */
+	private void readIndex(CachingUriResourceHandle indexHandle, String name, URI indexLocation, boolean detectCompression, IRepositoryIndexProcessor processor) throws Exception {
+		File indexFile = indexHandle.request();
+		if (name == null)
+			name = indexFile.getName();
+
+		String sha = null;
+		File snapshotFile = null;
+		if (indexHandle.cachedFile != null) {
+			sha = indexHandle.getCachedSHA();
+			snapshotFile = new File(indexHandle.cachedFile.getPath() + REPO_INDEX_SNAPSHOT_EXTENSION);
+			if (IndexSnapshot.read(snapshotFile, sha, indexLocation, processor))
+				return;
+		}
+
+		InputStream indexStream = new FileInputStream(indexFile);
+		if (detectCompression)
+			indexStream = GZipUtils.detectCompression(indexStream);
+
+		if (snapshotFile == null || sha == null || lazy) {
+			RepoResourceUtils.readIndex(name, indexLocation, indexStream, allContentProviders.values(), processor, logService);
+			return;
+		}
+
+		IndexSnapshot.Recorder recorder = new IndexSnapshot.Recorder(processor);
+		RepoResourceUtils.readIndex(name, indexLocation, indexStream, allContentProviders.values(), recorder, logService);
+		recorder.write(snapshotFile, sha, indexLocation);
+	}
+
 	public final List<URI> getIndexLocations() throws Exception {
 		init();
 		return Collections.unmodifiableList(indexLocations);
@@ -269,6 +310,12 @@ public abstract class AbstractIndexedRepo implements RegistryPlugin, Plugin, Rem
 		if (map.containsKey(PROP_ONLINE)) {
 			this.online = Boolean.parseBoolean(map.get(PROP_ONLINE));
 		}
+
+		if (map.containsKey(PROP_LAZY)) {
+			this.lazy = Boolean.parseBoolean(map.get(PROP_LAZY));
+			((R5RepoContentProvider) allContentProviders.get(REPO_TYPE_R5)).setLazy(lazy);
+			((ObrContentProvider) allContentProviders.get(REPO_TYPE_OBR)).setLazy(lazy);
+		}
 		
 		requestedContentProviderList = map.get(PROP_REPO_TYPE);
 	}
@@ -549,6 +596,8 @@ public abstract class AbstractIndexedRepo implements RegistryPlugin, Plugin, Rem
 					if (f != null && f.exists() && !f.delete()) {
 						error("Unable to delete cached repository index file %s", f.getAbsolutePath());
 					}
+					if (f != null)
+						new File(f.getPath() + REPO_INDEX_SNAPSHOT_EXTENSION).delete();
 				}
 				catch (IOException e) {
 					error("Exception during refresh of %s", indexLocation, e);
@@ -558,6 +607,21 @@ public abstract class AbstractIndexedRepo implements RegistryPlugin, Plugin, Rem
 		}
 		initialised = false;
 		init();
+		fireRepositoryRefreshed();
 		return ret;
 	}
+
+	protected void fireRepositoryRefreshed() {
+		if (registry == null)
+			return;
+		for (RepositoryListenerPlugin listener : registry.getPlugins(RepositoryListenerPlugin.class)) {
+			try {
+				listener.repositoryRefreshed(this);
+			}
+			catch (Exception e) {
+				if (reporter != null)
+					reporter.warning("Repository listener threw an unexpected exception: %s", e);
+			}
+		}
+	}
 }
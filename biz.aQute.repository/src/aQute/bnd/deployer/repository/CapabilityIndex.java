@@ -5,17 +5,114 @@ import java.util.*;
 import org.osgi.framework.*;
 import org.osgi.resource.*;
 
-
+/**
+ * Indexes capabilities by namespace. Within a namespace the capabilities are
+ * also indexed on the value of the attribute that has the name of the
+ * namespace (osgi.wiring.package, osgi.identity, osgi.wiring.bundle, ...).
+ * When a requirement filter requires an exact value for that attribute, only
+ * the capabilities with that value are evaluated against the filter.
+ * <p>
+ * The capabilities of the added resources are only indexed when a namespace
+ * is first looked up, and then only for that namespace. Resources that build
+ * their capabilities on demand are therefore not asked for the capabilities
+ * of namespaces that are never required.
+ */
 public class CapabilityIndex {
 
-	private final Map<String,List<Capability>>	capabilityMap	= new HashMap<String,List<Capability>>();
+	private final Map<String,NamespaceIndex>	capabilityMap	= new HashMap<String,NamespaceIndex>();
+	private final List<Resource>				resources		= new ArrayList<Resource>();
+	private final Set<String>					loaded			= new HashSet<String>();
+
+	/**
+	 * The capabilities of one namespace
+	 */
+	static class NamespaceIndex {
+		final String						name;
+		final List<Capability>				all			= new ArrayList<Capability>();
+		final Map<String,List<Capability>>	byValue		= new HashMap<String,List<Capability>>();
+		final List<Capability>				unindexed	= new ArrayList<Capability>();
+
+		NamespaceIndex(String name) {
+			this.name = name;
+		}
+
+		void add(Capability cap) {
+			all.add(cap);
+
+			Object value = getPrimaryAttribute(cap.getAttributes(), name);
+			if (value == null)
+				return; // can never match a filter on the primary attribute
+
+			if (value instanceof String) {
+				index((String) value, cap);
+			} else if (value instanceof Collection< ? >) {
+				Set<String> seen = new HashSet<String>();
+				for (Object member : (Collection< ? >) value) {
+					if (!(member instanceof String)) {
+						unindexed.add(cap);
+						return;
+					}
+					if (seen.add((String) member))
+						index((String) member, cap);
+				}
+			} else
+				unindexed.add(cap);
+		}
+
+		private void index(String value, Capability cap) {
+			List<Capability> list = byValue.get(value);
+			if (list == null) {
+				list = new ArrayList<Capability>(1);
+				byValue.put(value, list);
+			}
+			list.add(cap);
+		}
+
+		/**
+		 * Answer the capabilities that can match a filter that requires the
+		 * given value for the primary attribute, in the order they were added.
+		 */
+		Collection<Capability> getCandidates(String value) {
+			List<Capability> indexed = byValue.get(value);
+			if (unindexed.isEmpty())
+				return indexed == null ? Collections.<Capability> emptyList() : indexed;
+
+			Set<Capability> candidates = Collections.newSetFromMap(new IdentityHashMap<Capability,Boolean>());
+			if (indexed != null)
+				candidates.addAll(indexed);
+			candidates.addAll(unindexed);
+
+			List<Capability> result = new ArrayList<Capability>(candidates.size());
+			for (Capability cap : all)
+				if (candidates.contains(cap))
+					result.add(cap);
+			return result;
+		}
+	}
 
-	public void clear() {
+	public synchronized void clear() {
 		capabilityMap.clear();
+		resources.clear();
+		loaded.clear();
+	}
+
+	public synchronized void addResource(Resource resource) {
+		resources.add(resource);
+		for (String namespace : loaded)
+			addCapabilities(resource, namespace);
 	}
 
-	public void addResource(Resource resource) {
-		List<Capability> capabilities = resource.getCapabilities(null);
+	public synchronized void addCapability(Capability cap) {
+		NamespaceIndex namespace = capabilityMap.get(cap.getNamespace());
+		if (namespace == null) {
+			namespace = new NamespaceIndex(cap.getNamespace());
+			capabilityMap.put(cap.getNamespace(), namespace);
+		}
+		namespace.add(cap);
+	}
+
+	private void addCapabilities(Resource resource, String namespace) {
+		List<Capability> capabilities = resource.getCapabilities(namespace);
 		if (capabilities == null)
 			return;
 
@@ -23,25 +120,35 @@ public class CapabilityIndex {
 			addCapability(cap);
 		}
 	}
-	
-	public void addCapability(Capability cap) {
-		List<Capability> list = capabilityMap.get(cap.getNamespace());
-		if (list == null) {
-			list = new LinkedList<Capability>();
-			capabilityMap.put(cap.getNamespace(), list);
+
+	/**
+	 * Answer the index of the namespace after indexing the capabilities of
+	 * the resources in that namespace if this was not done before.
+	 */
+	private synchronized NamespaceIndex getNamespace(String namespace) {
+		if (loaded.add(namespace)) {
+			for (Resource resource : resources)
+				addCapabilities(resource, namespace);
 		}
-		list.add(cap);
+		return capabilityMap.get(namespace);
 	}
 
 	public void appendMatchingCapabilities(Requirement requirement, Collection< ? super Capability> capabilities) {
-		List<Capability> caps = capabilityMap.get(requirement.getNamespace());
-		if (caps == null || caps.isEmpty())
+		NamespaceIndex namespace = getNamespace(requirement.getNamespace());
+		if (namespace == null || namespace.all.isEmpty())
 			return;
 
 		try {
 			String filterStr = requirement.getDirectives().get(Namespace.REQUIREMENT_FILTER_DIRECTIVE);
 			Filter filter = filterStr != null ? FrameworkUtil.createFilter(filterStr) : null;
 
+			Collection<Capability> caps = namespace.all;
+			if (filterStr != null) {
+				String value = getRequiredValue(filterStr, namespace.name);
+				if (value != null)
+					caps = namespace.getCandidates(value);
+			}
+
 			for (Capability cap : caps) {
 				boolean match;
 				if (filter == null)
@@ -58,4 +165,87 @@ public class CapabilityIndex {
 		}
 	}
 
+	/**
+	 * Find the value of the attribute with the given name. Dictionary filter
+	 * matching ignores the case of the keys so we must do the same.
+	 */
+	static Object getPrimaryAttribute(Map<String,Object> attributes, String name) {
+		Object value = attributes.get(name);
+		if (value != null)
+			return value;
+
+		for (Map.Entry<String,Object> entry : attributes.entrySet()) {
+			if (entry.getKey().equalsIgnoreCase(name))
+				return entry.getValue();
+		}
+		return null;
+	}
+
+	/**
+	 * If the filter can only match when the given attribute has one specific
+	 * value then return this value. This is the case for a filter that is
+	 * {@code (name=value)} or an and that contains such a clause as one of its
+	 * direct operands, and the value has no wildcards.
+	 *
+	 * @return the required value or null if the filter does not require one
+	 */
+	static String getRequiredValue(String filter, String name) {
+		filter = filter.trim();
+		if (filter.startsWith("(&")) {
+			int depth = 0;
+			int start = -1;
+			for (int i = 2; i < filter.length() - 1; i++) {
+				char c = filter.charAt(i);
+				if (c == '\\') {
+					i++;
+				} else if (c == '(') {
+					if (depth++ == 0)
+						start = i;
+				} else if (c == ')') {
+					if (--depth == 0) {
+						String value = getEqualityValue(filter.substring(start, i + 1), name);
+						if (value != null)
+							return value;
+					}
+				}
+			}
+			return null;
+		}
+		return getEqualityValue(filter, name);
+	}
+
+	/**
+	 * Parse a simple {@code (name=value)} filter and answer the unescaped
+	 * value, or null if this is not an equality on name without wildcards.
+	 */
+	private static String getEqualityValue(String filter, String name) {
+		int length = name.length();
+		if (filter.length() < length + 3 || filter.charAt(0) != '(' || filter.charAt(filter.length() - 1) != ')')
+			return null;
+
+		if (!filter.regionMatches(true, 1, name, 0, length) || filter.charAt(length + 1) != '=')
+			return null;
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = length + 2; i < filter.length() - 1; i++) {
+			char c = filter.charAt(i);
+			switch (c) {
+				case '*' :
+				case '(' :
+				case ')' :
+					return null;
+
+				case '\\' :
+					if (++i >= filter.length() - 1)
+						return null;
+					sb.append(filter.charAt(i));
+					break;
+
+				default :
+					sb.append(c);
+					break;
+			}
+		}
+		return sb.toString();
+	}
 }
@@ -0,0 +1,356 @@
+package aQute.bnd.deployer.repository;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.util.*;
+import java.util.Map.Entry;
+
+import org.osgi.resource.*;
+
+import aQute.bnd.deployer.repository.api.*;
+import aQute.bnd.osgi.resource.*;
+import aQute.lib.io.*;
+
+/**
+ * A binary snapshot of a parsed repository index. The snapshot records the
+ * resources and referrals that a content provider reported for an index, in
+ * the order they were reported, so they can be replayed to an
+ * {@link IRepositoryIndexProcessor} without parsing the XML again.
+ * <p>
+ * A snapshot is only valid for the index with the SHA and base URI stored in
+ * its header. Strings are stored once in a string table so namespaces,
+ * attribute names and common values are also shared in memory after reading.
+ * The snapshot is read into memory and decoded completely before any event is
+ * replayed, a damaged snapshot is therefore reported as absent and never
+ * results in a partially processed index.
+ */
+class IndexSnapshot {
+	final static int	MAGIC			= 0x424E4458;	// BNDX
+	final static int	VERSION			= 1;
+
+	final static byte	EVENT_RESOURCE	= 1;
+	final static byte	EVENT_REFERRAL	= 2;
+
+	final static byte	TYPE_STRING		= 1;
+	final static byte	TYPE_LONG		= 2;
+	final static byte	TYPE_DOUBLE		= 3;
+	final static byte	TYPE_VERSION	= 4;
+	final static byte	TYPE_URI		= 5;
+	final static byte	TYPE_LIST		= 6;
+
+	/**
+	 * An index processor that records the events it receives before passing
+	 * them on to its delegate.
+	 */
+	static class Recorder implements IRepositoryIndexProcessor {
+		final IRepositoryIndexProcessor	delegate;
+		final List<Object>				events	= new ArrayList<Object>();
+
+		Recorder(IRepositoryIndexProcessor delegate) {
+			this.delegate = delegate;
+		}
+
+		public void processResource(Resource resource) {
+			events.add(resource);
+			delegate.processResource(resource);
+		}
+
+		public void processReferral(URI parentUri, Referral referral, int maxDepth, int currentDepth) {
+			events.add(new ReferralEvent(parentUri, referral, maxDepth, currentDepth));
+			delegate.processReferral(parentUri, referral, maxDepth, currentDepth);
+		}
+
+		/**
+		 * Store the recorded events in the given file. The snapshot is written
+		 * to a temporary file first and then renamed. Any failure, for example
+		 * an attribute of a type the snapshot cannot represent, is ignored
+		 * since the snapshot is only an optimization.
+		 *
+		 * @return true if the snapshot was written
+		 */
+		boolean write(File file, String sha, URI baseUri) {
+			try {
+				SnapshotWriter writer = new SnapshotWriter();
+				for (Object event : events) {
+					if (event instanceof Resource)
+						writer.writeResource((Resource) event);
+					else
+						writer.writeReferral((ReferralEvent) event);
+				}
+
+				File parent = file.getAbsoluteFile().getParentFile();
+				File tmp = File.createTempFile(file.getName(), ".tmp", parent);
+				try {
+					DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+					try {
+						out.writeInt(MAGIC);
+						out.writeInt(VERSION);
+						out.writeUTF(sha);
+						out.writeUTF(baseUri.toString());
+						writer.writeTo(out);
+					}
+					finally {
+						out.close();
+					}
+					file.delete();
+					return tmp.renameTo(file);
+				}
+				finally {
+					tmp.delete();
+				}
+			}
+			catch (Exception e) {
+				file.delete();
+				return false;
+			}
+		}
+	}
+
+	static class ReferralEvent {
+		final URI		parentUri;
+		final Referral	referral;
+		final int		maxDepth;
+		final int		currentDepth;
+
+		ReferralEvent(URI parentUri, Referral referral, int maxDepth, int currentDepth) {
+			this.parentUri = parentUri;
+			this.referral = referral;
+			this.maxDepth = maxDepth;
+			this.currentDepth = currentDepth;
+		}
+	}
+
+	/**
+	 * Replay the snapshot in the given file to the processor if the snapshot
+	 * is for an index with the given SHA and base URI.
+	 *
+	 * @return true if the snapshot was valid and replayed, false if the index
+	 *         must be parsed
+	 */
+	static boolean read(File file, String sha, URI baseUri, IRepositoryIndexProcessor processor) {
+		if (sha == null || !file.isFile())
+			return false;
+
+		List<Object> events;
+		try {
+			// Read into the heap, a mapped file stays locked on some platforms
+			// until the mapping is garbage collected
+			events = new SnapshotReader(new ByteBufferDataInput(IO.read(file))).read(sha, baseUri);
+		}
+		catch (Exception e) {
+			// Damaged or incompatible, parse the index again
+			return false;
+		}
+
+		if (events == null)
+			return false;
+
+		for (Object event : events) {
+			if (event instanceof Resource)
+				processor.processResource((Resource) event);
+			else {
+				ReferralEvent r = (ReferralEvent) event;
+				processor.processReferral(r.parentUri, r.referral, r.maxDepth, r.currentDepth);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Encodes the events in a body while collecting the string table that
+	 * precedes the body in the file.
+	 */
+	static class SnapshotWriter {
+		final Map<String,Integer>		strings	= new LinkedHashMap<String,Integer>();
+		final ByteArrayOutputStream		bout	= new ByteArrayOutputStream();
+		final DataOutputStream			body	= new DataOutputStream(bout);
+
+		void writeResource(Resource resource) throws IOException {
+			body.writeByte(EVENT_RESOURCE);
+			List<Capability> capabilities = resource.getCapabilities(null);
+			body.writeInt(capabilities.size());
+			for (Capability capability : capabilities)
+				writeCapReq(capability.getNamespace(), capability.getAttributes(), capability.getDirectives());
+
+			List<Requirement> requirements = resource.getRequirements(null);
+			body.writeInt(requirements.size());
+			for (Requirement requirement : requirements)
+				writeCapReq(requirement.getNamespace(), requirement.getAttributes(), requirement.getDirectives());
+		}
+
+		void writeReferral(ReferralEvent event) throws IOException {
+			body.writeByte(EVENT_REFERRAL);
+			writeString(event.parentUri.toString());
+			writeString(event.referral.getUrl());
+			body.writeInt(event.referral.getDepth());
+			body.writeInt(event.maxDepth);
+			body.writeInt(event.currentDepth);
+		}
+
+		private void writeCapReq(String namespace, Map<String,Object> attributes, Map<String,String> directives)
+				throws IOException {
+			writeString(namespace);
+			body.writeInt(attributes.size());
+			for (Entry<String,Object> entry : attributes.entrySet()) {
+				writeString(entry.getKey());
+				writeValue(entry.getValue());
+			}
+			body.writeInt(directives.size());
+			for (Entry<String,String> entry : directives.entrySet()) {
+				writeString(entry.getKey());
+				writeString(entry.getValue());
+			}
+		}
+
+		private void writeValue(Object value) throws IOException {
+			if (value instanceof String) {
+				body.writeByte(TYPE_STRING);
+				writeString((String) value);
+			} else if (value instanceof Long) {
+				body.writeByte(TYPE_LONG);
+				body.writeLong((Long) value);
+			} else if (value instanceof Double) {
+				body.writeByte(TYPE_DOUBLE);
+				body.writeDouble((Double) value);
+			} else if (value instanceof org.osgi.framework.Version) {
+				body.writeByte(TYPE_VERSION);
+				writeString(value.toString());
+			} else if (value instanceof URI) {
+				body.writeByte(TYPE_URI);
+				writeString(value.toString());
+			} else if (value instanceof List< ? >) {
+				List< ? > list = (List< ? >) value;
+				body.writeByte(TYPE_LIST);
+				body.writeInt(list.size());
+				for (Object member : list) {
+					if (member instanceof List< ? >)
+						throw new IllegalArgumentException("Nested lists cannot be stored in an index snapshot");
+					writeValue(member);
+				}
+			} else
+				throw new IllegalArgumentException("Cannot store attribute type in an index snapshot: "
+						+ (value == null ? null : value.getClass()));
+		}
+
+		private void writeString(String s) throws IOException {
+			Integer index = strings.get(s);
+			if (index == null) {
+				index = strings.size();
+				strings.put(s, index);
+			}
+			body.writeInt(index);
+		}
+
+		void writeTo(DataOutputStream out) throws IOException {
+			body.flush();
+			out.writeInt(strings.size());
+			for (String s : strings.keySet())
+				out.writeUTF(s);
+			out.writeInt(bout.size());
+			bout.writeTo(out);
+		}
+	}
+
+	static class SnapshotReader {
+		final ByteBufferDataInput	in;
+		String[]					strings;
+
+		SnapshotReader(ByteBufferDataInput in) {
+			this.in = in;
+		}
+
+		/**
+		 * @return the events or null if the snapshot is not for the given
+		 *         index
+		 */
+		List<Object> read(String sha, URI baseUri) throws Exception {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				return null;
+			if (!sha.equalsIgnoreCase(in.readUTF()) || !baseUri.toString().equals(in.readUTF()))
+				return null;
+
+			strings = new String[in.readInt()];
+			for (int i = 0; i < strings.length; i++)
+				strings[i] = in.readUTF();
+
+			ByteBuffer body = in.slice(in.readInt());
+			ByteBufferDataInput bin = new ByteBufferDataInput(body);
+
+			List<Object> events = new ArrayList<Object>();
+			while (bin.position() < body.limit()) {
+				byte event = bin.readByte();
+				switch (event) {
+					case EVENT_RESOURCE :
+						events.add(readResource(bin));
+						break;
+
+					case EVENT_REFERRAL :
+						URI parentUri = new URI(readString(bin));
+						Referral referral = new Referral(readString(bin), bin.readInt());
+						events.add(new ReferralEvent(parentUri, referral, bin.readInt(), bin.readInt()));
+						break;
+
+					default :
+						throw new IOException("Invalid event in index snapshot: " + event);
+				}
+			}
+			return events;
+		}
+
+		private Resource readResource(ByteBufferDataInput bin) throws Exception {
+			ResourceBuilder rb = new ResourceBuilder();
+			int capabilities = bin.readInt();
+			for (int i = 0; i < capabilities; i++)
+				rb.addCapability(readCapReq(bin));
+
+			int requirements = bin.readInt();
+			for (int i = 0; i < requirements; i++)
+				rb.addRequirement(readCapReq(bin));
+			return rb.build();
+		}
+
+		private CapReqBuilder readCapReq(ByteBufferDataInput bin) throws Exception {
+			CapReqBuilder builder = new CapReqBuilder(readString(bin));
+			int attributes = bin.readInt();
+			for (int i = 0; i < attributes; i++) {
+				String name = readString(bin);
+				builder.addAttribute(name, readValue(bin));
+			}
+			int directives = bin.readInt();
+			for (int i = 0; i < directives; i++) {
+				String name = readString(bin);
+				builder.addDirective(name, readString(bin));
+			}
+			return builder;
+		}
+
+		private Object readValue(ByteBufferDataInput bin) throws Exception {
+			byte type = bin.readByte();
+			switch (type) {
+				case TYPE_STRING :
+					return readString(bin);
+				case TYPE_LONG :
+					return bin.readLong();
+				case TYPE_DOUBLE :
+					return bin.readDouble();
+				case TYPE_VERSION :
+					return org.osgi.framework.Version.parseVersion(readString(bin));
+				case TYPE_URI :
+					return new URI(readString(bin));
+				case TYPE_LIST :
+					int size = bin.readInt();
+					List<Object> list = new LinkedList<Object>();
+					for (int i = 0; i < size; i++)
+						list.add(readValue(bin));
+					return list;
+				default :
+					throw new IOException("Invalid attribute type in index snapshot: " + type);
+			}
+		}
+
+		private String readString(ByteBufferDataInput bin) throws IOException {
+			return strings[bin.readInt()];
+		}
+	}
+}
@@ -340,6 +340,7 @@ public class LocalIndexedRepo extends FixedIndexedRepo implements Refreshable, P
 	public boolean refresh() {
 		reset();
 		regenerateAllIndexes();
+		fireRepositoryRefreshed();
 		return true;
 	}
 
@@ -0,0 +1,141 @@
+package aQute.bnd.deployer.repository.providers;
+
+import java.util.*;
+
+import org.osgi.framework.namespace.*;
+import org.osgi.resource.*;
+
+import aQute.bnd.osgi.resource.*;
+
+/**
+ * A resource from an index whose capabilities and requirements are built when
+ * they are first asked for, per namespace. The identity capabilities are
+ * built right away since they are needed to list the bsns and versions of a
+ * repository, the other elements are kept as they were read from the index.
+ */
+class LazyResource implements Resource {
+
+	/**
+	 * A capability or requirement element as read from the index
+	 */
+	static abstract class Element {
+		final String	namespace;
+		final boolean	capability;
+
+		Element(String namespace, boolean capability) {
+			this.namespace = namespace;
+			this.capability = capability;
+		}
+
+		/**
+		 * Add the strings read from the index. The strings are interned, an
+		 * index repeats the same names and values many times.
+		 */
+		void add(List<String> list, String... values) {
+			for (String value : values)
+				list.add(value == null ? null : value.intern());
+		}
+
+		/**
+		 * Convert the element, this is where the attributes are parsed.
+		 */
+		abstract CapReqBuilder builder() throws Exception;
+	}
+
+	/*
+	 * Contain a Capability or Requirement once built, otherwise its Element
+	 */
+	private final List<Object>							capabilities	= new ArrayList<Object>();
+	private final List<Object>							requirements	= new ArrayList<Object>();
+
+	private final Map<String,List<Capability>>			capabilityMap	= new HashMap<String,List<Capability>>();
+	private final Map<String,List<Requirement>>			requirementMap	= new HashMap<String,List<Requirement>>();
+
+	void addCapability(CapReqBuilder builder) {
+		capabilities.add(builder.setResource(this).buildCapability());
+	}
+
+	void addRequirement(CapReqBuilder builder) {
+		requirements.add(builder.setResource(this).buildRequirement());
+	}
+
+	void add(Element element) throws Exception {
+		if (!element.capability)
+			requirements.add(element);
+		else if (IdentityNamespace.IDENTITY_NAMESPACE.equals(element.namespace))
+			addCapability(element.builder());
+		else
+			capabilities.add(element);
+	}
+
+	public synchronized List<Capability> getCapabilities(String namespace) {
+		List<Capability> list = capabilityMap.get(namespace);
+		if (list == null) {
+			list = select(capabilities, namespace, Capability.class);
+			capabilityMap.put(namespace, list);
+		}
+		return list;
+	}
+
+	public synchronized List<Requirement> getRequirements(String namespace) {
+		List<Requirement> list = requirementMap.get(namespace);
+		if (list == null) {
+			list = select(requirements, namespace, Requirement.class);
+			requirementMap.put(namespace, list);
+		}
+		return list;
+	}
+
+	/**
+	 * Answer the capabilities or requirements in the given namespace, or all
+	 * if the namespace is null, and replace the elements that are selected
+	 * with what they build.
+	 */
+	private <T> List<T> select(List<Object> members, String namespace, Class<T> type) {
+		List<T> result = new ArrayList<T>();
+		for (ListIterator<Object> i = members.listIterator(); i.hasNext();) {
+			Object member = i.next();
+			String ns;
+			if (member instanceof Element)
+				ns = ((Element) member).namespace;
+			else if (member instanceof Capability)
+				ns = ((Capability) member).getNamespace();
+			else
+				ns = ((Requirement) member).getNamespace();
+
+			if (namespace != null && !namespace.equals(ns))
+				continue;
+
+			if (member instanceof Element) {
+				member = build((Element) member);
+				i.set(member);
+			}
+			result.add(type.cast(member));
+		}
+		if (result.isEmpty())
+			return Collections.emptyList();
+		return Collections.unmodifiableList(result);
+	}
+
+	private Object build(Element element) {
+		try {
+			CapReqBuilder builder = element.builder().setResource(this);
+			return element.capability ? builder.buildCapability() : builder.buildRequirement();
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("Invalid " + element.namespace + " element in the index for " + this
+					+ ": " + e, e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		List<Capability> identities = getCapabilities(IdentityNamespace.IDENTITY_NAMESPACE);
+		if (identities.size() != 1)
+			return "LazyResource";
+
+		Map<String,Object> attributes = identities.get(0).getAttributes();
+		return attributes.get(IdentityNamespace.IDENTITY_NAMESPACE) + " version="
+				+ attributes.get(IdentityNamespace.CAPABILITY_VERSION_ATTRIBUTE);
+	}
+}
@@ -62,6 +62,45 @@ public class ObrContentProvider implements IRepositoryContentProvider {
 	private static final String TYPE_VERSION				= "version";
 
 	private BundleIndexer		indexer;
+	private boolean				lazy;
+
+	/**
+	 * A capability or require element, the properties are converted when the
+	 * builder is created.
+	 */
+	private static class Element extends LazyResource.Element {
+		final LogService	log;
+		final List<String>	properties	= new ArrayList<String>();
+		boolean				optional;
+		String				filter;
+
+		Element(String namespace, boolean capability, LogService log) {
+			super(namespace, capability);
+			this.log = log;
+		}
+
+		@Override
+		CapReqBuilder builder() throws Exception {
+			CapReqBuilder capReqBuilder = new CapReqBuilder(namespace);
+			if (!capability) {
+				if (optional)
+					capReqBuilder.addDirective(Namespace.REQUIREMENT_RESOLUTION_DIRECTIVE, Namespace.RESOLUTION_OPTIONAL);
+				capReqBuilder.addDirective(Namespace.REQUIREMENT_FILTER_DIRECTIVE, translateObrFilter(namespace, filter, log));
+			}
+			for (int i = 0; i < properties.size(); i += 3) {
+				String name = mapObrPropertyToR5(namespace, properties.get(i));
+				String typeStr = properties.get(i + 1);
+				String valueStr = properties.get(i + 2);
+				if (PROPERTY_USES.equals(name))
+					capReqBuilder.addDirective(PROPERTY_USES, valueStr);
+				else {
+					Object value = convertProperty(valueStr, typeStr);
+					capReqBuilder.addAttribute(name, value);
+				}
+			}
+			return capReqBuilder;
+		}
+	}
 
 	private static enum ParserState {
 		beforeRoot, inRoot, inResource, inCapability
@@ -75,6 +114,16 @@ public class ObrContentProvider implements IRepositoryContentProvider {
 		return NAME;
 	}
 
+	/**
+	 * Parse indexes lazily. The resources are reported while the index is
+	 * streamed with only their identity, content and host capabilities built,
+	 * the other capabilities and requirements are built when they are first
+	 * asked for.
+	 */
+	public void setLazy(boolean lazy) {
+		this.lazy = lazy;
+	}
+
 	public String getDefaultIndexName(boolean pretty) {
 		return INDEX_NAME;
 	}
@@ -89,7 +138,8 @@ public class ObrContentProvider implements IRepositoryContentProvider {
 		XMLStreamReader reader = inputFactory.createXMLStreamReader(source);
 		
 		ResourceBuilder resourceBuilder = null;
-		CapReqBuilder capReqBuilder = null;
+		LazyResource lazyResource = null;
+		Element element = null;
 
 		while (reader.hasNext()) {
 			int type = reader.next();
@@ -103,60 +153,59 @@ public class ObrContentProvider implements IRepositoryContentProvider {
 								parseInt(reader.getAttributeValue(null, ATTR_REFERRAL_DEPTH)));
 						listener.processReferral(baseUri, referral, referral.getDepth(), 1);
 					} else if (TAG_RESOURCE.equals(localName)) {
-						resourceBuilder = new ResourceBuilder();
-						
-						
 						String bsn = reader.getAttributeValue(null, ATTR_RESOURCE_SYMBOLIC_NAME);
 						String versionStr = reader.getAttributeValue(null, ATTR_RESOURCE_VERSION);
 						Version version = Version.parseVersion(versionStr);
 						String uri = reader.getAttributeValue(null, ATTR_RESOURCE_URI);
 						URI resolvedUri = resolveUri(uri, baseUri);
-						addBasicCapabilities(resourceBuilder, bsn, version, resolvedUri);
+						if (lazy) {
+							lazyResource = new LazyResource();
+							for (CapReqBuilder builder : getBasicCapabilities(bsn, version, resolvedUri))
+								lazyResource.addCapability(builder);
+						} else {
+							resourceBuilder = new ResourceBuilder();
+							for (CapReqBuilder builder : getBasicCapabilities(bsn, version, resolvedUri))
+								resourceBuilder.addCapability(builder);
+						}
 					} else if (TAG_CAPABILITY.equals(localName)) {
 						String obrName = reader.getAttributeValue(null, ATTR_NAME);
 						String namespace = mapObrNameToR5Namespace(obrName, false);
-						capReqBuilder = new CapReqBuilder(namespace);
+						element = new Element(namespace, true, log);
 					} else if (TAG_REQUIRE.equals(localName)) {
 						String obrName = reader.getAttributeValue(null, ATTR_NAME);
 						boolean extend = "true".equalsIgnoreCase(reader.getAttributeValue(null,  ATTR_EXTEND));
 						String namespace = mapObrNameToR5Namespace(obrName, extend);
-						boolean optional = "true".equalsIgnoreCase(reader.getAttributeValue(null, ATTR_OPTIONAL));
-						
-						capReqBuilder = new CapReqBuilder(namespace);
-						if (optional)
-							capReqBuilder.addDirective(Namespace.REQUIREMENT_RESOLUTION_DIRECTIVE, Namespace.RESOLUTION_OPTIONAL);
-						String filter = translateObrFilter(namespace, reader.getAttributeValue(null, ATTR_FILTER), log);
-						capReqBuilder.addDirective(Namespace.REQUIREMENT_FILTER_DIRECTIVE, filter);
+						element = new Element(namespace, false, log);
+						element.optional = "true".equalsIgnoreCase(reader.getAttributeValue(null, ATTR_OPTIONAL));
+						element.filter = reader.getAttributeValue(null, ATTR_FILTER);
 					} else if (TAG_PROPERTY.equals(localName)) {
 						String name = reader.getAttributeValue(null, ATTR_PROPERTY_NAME);
 						String typeStr = reader.getAttributeValue(null, ATTR_PROPERTY_TYPE);
 						String valueStr = reader.getAttributeValue(null, ATTR_PROPERTY_VALUE);
-						if (capReqBuilder != null) {
-							name = mapObrPropertyToR5(capReqBuilder.getNamespace(), name);
-							if (PROPERTY_USES.equals(name))
-								capReqBuilder.addDirective(PROPERTY_USES, valueStr);
-							else {
-								Object value = convertProperty(valueStr, typeStr);
-								capReqBuilder.addAttribute(name, value);
-							}
-						}
+						if (element != null)
+							element.add(element.properties, name, typeStr, valueStr);
 					}
 					break;
 				case END_ELEMENT:
 					localName = reader.getLocalName();
 					if (TAG_RESOURCE.equals(localName)) {
-						if (resourceBuilder != null) {
+						if (lazyResource != null) {
+							listener.processResource(lazyResource);
+							lazyResource = null;
+						} else if (resourceBuilder != null) {
 							Resource resource = resourceBuilder.build();
 							listener.processResource(resource);
 						}
-					} else if (TAG_CAPABILITY.equals(localName)) {
-						if (resourceBuilder != null && capReqBuilder != null)
-							resourceBuilder.addCapability(capReqBuilder);
-						capReqBuilder = null;
-					} else if (TAG_REQUIRE.equals(localName)) {
-						if (resourceBuilder != null && capReqBuilder != null)
-							resourceBuilder.addRequirement(capReqBuilder);
-						capReqBuilder = null;
+					} else if (TAG_CAPABILITY.equals(localName) || TAG_REQUIRE.equals(localName)) {
+						if (element != null) {
+							if (lazyResource != null)
+								lazyResource.add(element);
+							else if (resourceBuilder != null && element.capability)
+								resourceBuilder.addCapability(element.builder());
+							else if (resourceBuilder != null)
+								resourceBuilder.addRequirement(element.builder());
+						}
+						element = null;
 					}
 			}
 		}
@@ -237,7 +286,7 @@ public class ObrContentProvider implements IRepositoryContentProvider {
 		return resolved;
 	}
 
-	private static void addBasicCapabilities(ResourceBuilder builder, String bsn, Version version, URI resolvedUri) {
+	private static CapReqBuilder[] getBasicCapabilities(String bsn, Version version, URI resolvedUri) {
 		CapReqBuilder identity = new CapReqBuilder(IdentityNamespace.IDENTITY_NAMESPACE)
 			.addAttribute(IdentityNamespace.IDENTITY_NAMESPACE, bsn)
 			.addAttribute(IdentityNamespace.CAPABILITY_TYPE_ATTRIBUTE, IdentityNamespace.TYPE_BUNDLE)
@@ -251,9 +300,9 @@ public class ObrContentProvider implements IRepositoryContentProvider {
 			.addAttribute(HostNamespace.HOST_NAMESPACE, bsn)
 			.addAttribute(HostNamespace.CAPABILITY_BUNDLE_VERSION_ATTRIBUTE, version);
 		
-		builder.addCapability(identity)
-			.addCapability(content)
-			.addCapability(host);
+		return new CapReqBuilder[] {
+				identity, content, host
+		};
 	}
 	
 	private static int parseInt(String value) {
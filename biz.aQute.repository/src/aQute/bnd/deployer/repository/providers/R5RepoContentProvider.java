@@ -45,11 +45,58 @@ public class R5RepoContentProvider implements IRepositoryContentProvider {
 	private static final String	ATTR_NAME				= "name";
 	private static final String	ATTR_VALUE				= "value";
 	private static final String	ATTR_TYPE				= "type";
-	
+
+	private boolean				lazy;
+
+	/**
+	 * A capability or requirement element, the attributes are converted when
+	 * the builder is created.
+	 */
+	private static class Element extends LazyResource.Element {
+		final URI			baseUri;
+		final List<String>	attributes	= new ArrayList<String>();
+		final List<String>	directives	= new ArrayList<String>();
+
+		Element(String namespace, boolean capability, URI baseUri) {
+			super(namespace, capability);
+			this.baseUri = baseUri;
+		}
+
+		@Override
+		CapReqBuilder builder() throws Exception {
+			CapReqBuilder capReqBuilder = new CapReqBuilder(namespace);
+			for (int i = 0; i < attributes.size(); i += 3) {
+				String name = attributes.get(i);
+				String valueStr = attributes.get(i + 1);
+				String typeAttr = attributes.get(i + 2);
+				// If the attribute is 'url' on the osgi.content namespace then resolve it relative to the base URI.
+				if (ContentNamespace.CONTENT_NAMESPACE.equals(namespace) && ContentNamespace.CAPABILITY_URL_ATTRIBUTE.equals(name)) {
+					URI resolvedUri = resolveUri(valueStr, baseUri);
+					capReqBuilder.addAttribute(name, resolvedUri);
+				} else {
+					Object convertedAttr = convertAttribute(valueStr, typeAttr);
+					capReqBuilder.addAttribute(name, convertedAttr);
+				}
+			}
+			for (int i = 0; i < directives.size(); i += 2)
+				capReqBuilder.addDirective(directives.get(i), directives.get(i + 1));
+			return capReqBuilder;
+		}
+	}
+
 	public String getName() {
 		return NAME;
 	}
 
+	/**
+	 * Parse indexes lazily. The resources are reported while the index is
+	 * streamed with only their identity capabilities built, the other
+	 * capabilities and requirements are built when they are first asked for.
+	 */
+	public void setLazy(boolean lazy) {
+		this.lazy = lazy;
+	}
+
 	public String getDefaultIndexName(boolean pretty) {
 		return pretty ? INDEX_NAME_PRETTY : INDEX_NAME_COMPRESSED;
 	}
@@ -145,7 +192,8 @@ public class R5RepoContentProvider implements IRepositoryContentProvider {
 			reader = inputFactory.createXMLStreamReader(stream);
 
 			ResourceBuilder resourceBuilder = null;
-			CapReqBuilder capReqBuilder = null;
+			LazyResource lazyResource = null;
+			Element element = null;
 
 			while (reader.hasNext()) {
 				int type = reader.next();
@@ -160,43 +208,43 @@ public class R5RepoContentProvider implements IRepositoryContentProvider {
 							Referral referral = new Referral(url, parseInt(depth));
 							listener.processReferral(baseUri, referral, 0, 0);
 						} else if (TAG_RESOURCE.equals(localName)) {
-							resourceBuilder = new ResourceBuilder();
+							if (lazy)
+								lazyResource = new LazyResource();
+							else
+								resourceBuilder = new ResourceBuilder();
 						} else if (TAG_CAPABILITY.equals(localName) || TAG_REQUIREMENT.equals(localName)) {
 							String namespace = reader.getAttributeValue(null, ATTR_NAMESPACE);
-							capReqBuilder = new CapReqBuilder(namespace);
+							element = new Element(namespace, TAG_CAPABILITY.equals(localName), baseUri);
 						} else if (TAG_ATTRIBUTE.equals(localName)) {
 							String name = reader.getAttributeValue(null, ATTR_NAME);
 							String valueStr = reader.getAttributeValue(null, ATTR_VALUE);
 							String typeAttr = reader.getAttributeValue(null, ATTR_TYPE);
-							if (capReqBuilder != null) {
-								// If the attribute is 'url' on the osgi.content namespace then resolve it relative to the base URI.
-								if (ContentNamespace.CONTENT_NAMESPACE.equals(capReqBuilder.getNamespace()) && ContentNamespace.CAPABILITY_URL_ATTRIBUTE.equals(name)) {
-									URI resolvedUri = resolveUri(valueStr, baseUri);
-									capReqBuilder.addAttribute(name, resolvedUri);
-								} else {
-									Object convertedAttr = convertAttribute(valueStr, typeAttr);
-									capReqBuilder.addAttribute(name, convertedAttr);
-								}
-							}
+							if (element != null)
+								element.add(element.attributes, name, valueStr, typeAttr);
 						} else if (TAG_DIRECTIVE.equals(localName)) {
 							String name = reader.getAttributeValue(null, ATTR_NAME);
 							String valueStr = reader.getAttributeValue(null, ATTR_VALUE);
-							if (capReqBuilder != null)
-								capReqBuilder.addDirective(name, valueStr);
+							if (element != null)
+								element.add(element.directives, name, valueStr);
 						}
 						break;
 					case END_ELEMENT :
 						localName = reader.getLocalName();
-						if (TAG_CAPABILITY.equals(localName)) {
-							if (resourceBuilder != null && capReqBuilder != null)
-								resourceBuilder.addCapability(capReqBuilder);
-							capReqBuilder = null;
-						} else if (TAG_REQUIREMENT.equals(localName)) {
-							if (resourceBuilder != null && capReqBuilder != null)
-								resourceBuilder.addRequirement(capReqBuilder);
-							capReqBuilder = null;
+						if (TAG_CAPABILITY.equals(localName) || TAG_REQUIREMENT.equals(localName)) {
+							if (element != null) {
+								if (lazyResource != null)
+									lazyResource.add(element);
+								else if (resourceBuilder != null && element.capability)
+									resourceBuilder.addCapability(element.builder());
+								else if (resourceBuilder != null)
+									resourceBuilder.addRequirement(element.builder());
+							}
+							element = null;
 						} else if (TAG_RESOURCE.equals(localName)) {
-							if (resourceBuilder != null) {
+							if (lazyResource != null) {
+								listener.processResource(lazyResource);
+								lazyResource = null;
+							} else if (resourceBuilder != null) {
 								Resource resource = resourceBuilder.build();
 								listener.processResource(resource);
 								resourceBuilder = null;
@@ -605,6 +605,7 @@ public class Repository implements Plugin, RepositoryPlugin, Closeable, Refresha
 		cache.refresh();
 		notfound.clear();
 		notfoundref.clear();
+		fireRepositoryRefreshed();
 		return true;
 	}
 
@@ -1543,6 +1544,19 @@ public class Repository implements Plugin, RepositoryPlugin, Closeable, Refresha
 		return options.location();
 	}
 
+	protected void fireRepositoryRefreshed() {
+		if (registry == null)
+			return;
+		for (RepositoryListenerPlugin listener : registry.getPlugins(RepositoryListenerPlugin.class)) {
+			try {
+				listener.repositoryRefreshed(this);
+			}
+			catch (Exception e) {
+				reporter.error("Repository listener threw an unexpected exception: %s", e, e);
+			}
+		}
+	}
+
 	protected void fireBundleAdded(File file) throws IOException {
 		if (registry == null)
 			return;
@@ -0,0 +1,68 @@
+package aQute.bnd.deployer.repository;
+
+import java.util.*;
+
+import junit.framework.*;
+
+import org.osgi.framework.*;
+import org.osgi.resource.*;
+
+import aQute.bnd.osgi.resource.*;
+
+public class CapabilityIndexTest extends TestCase {
+
+	public static void testRequiredValue() {
+		assertEquals("org.example",
+				CapabilityIndex.getRequiredValue("(osgi.wiring.package=org.example)", "osgi.wiring.package"));
+		assertEquals("org.example", CapabilityIndex.getRequiredValue(
+				"(&(osgi.wiring.package=org.example)(version>=1.0.0)(!(version>=2.0.0)))", "osgi.wiring.package"));
+		assertEquals("a(b)", CapabilityIndex.getRequiredValue("(&(version>=1)(OSGi.Identity=a\\(b\\)))", "osgi.identity"));
+
+		assertNull(CapabilityIndex.getRequiredValue("(osgi.wiring.package=org.*)", "osgi.wiring.package"));
+		assertNull(CapabilityIndex.getRequiredValue("(osgi.wiring.package>=org)", "osgi.wiring.package"));
+		assertNull(CapabilityIndex.getRequiredValue("(|(osgi.wiring.package=a)(osgi.wiring.package=b))",
+				"osgi.wiring.package"));
+		assertNull(CapabilityIndex.getRequiredValue("(&(!(osgi.wiring.package=a))(version>=1))", "osgi.wiring.package"));
+		assertNull(CapabilityIndex.getRequiredValue("(osgi.wiring.packages=a)", "osgi.wiring.package"));
+	}
+
+	public static void testMatching() throws Exception {
+		CapabilityIndex index = new CapabilityIndex();
+		Resource r1 = resource("a", "1.0.0");
+		Resource r2 = resource("b", "1.0.0");
+		Resource r3 = resource("a", "2.0.0");
+		index.addResource(r1);
+		index.addResource(r2);
+		index.addResource(r3);
+
+		List<Capability> result = new ArrayList<Capability>();
+		index.appendMatchingCapabilities(requirement("(osgi.wiring.package=a)"), result);
+		assertEquals(2, result.size());
+		assertEquals(r1, result.get(0).getResource());
+		assertEquals(r3, result.get(1).getResource());
+
+		result.clear();
+		index.appendMatchingCapabilities(requirement("(&(osgi.wiring.package=a)(version>=2.0.0))"), result);
+		assertEquals(1, result.size());
+		assertEquals(r3, result.get(0).getResource());
+
+		result.clear();
+		index.appendMatchingCapabilities(requirement("(osgi.wiring.package=*)"), result);
+		assertEquals(3, result.size());
+
+		result.clear();
+		index.appendMatchingCapabilities(requirement("(osgi.wiring.package=c)"), result);
+		assertEquals(0, result.size());
+	}
+
+	private static Resource resource(String pkg, String version) throws Exception {
+		ResourceBuilder rb = new ResourceBuilder();
+		rb.addCapability(new CapReqBuilder("osgi.wiring.package").addAttribute("osgi.wiring.package", pkg)
+				.addAttribute("version", new Version(version)));
+		return rb.build();
+	}
+
+	private static Requirement requirement(String filter) {
+		return new CapReqBuilder("osgi.wiring.package").addDirective("filter", filter).buildSyntheticRequirement();
+	}
+}
@@ -86,4 +86,64 @@ public class FindProvidersTest extends TestCase {
 		}
 	}
 
+	public static void testLazy() throws Exception {
+		assertLazy("testdata/big_index.xml");
+		assertLazy("testdata/fullobr.xml");
+	}
+
+	private static void assertLazy(String index) throws Exception {
+		FixedIndexedRepo eager = new FixedIndexedRepo();
+		FixedIndexedRepo lazy = new FixedIndexedRepo();
+		Map<String,String> props = new HashMap<String,String>();
+		props.put("locations", IO.getFile(index).toURI().toString());
+		eager.setProperties(props);
+		props.put("lazy", "true");
+		lazy.setProperties(props);
+
+		assertEquals(eager.list(null), lazy.list(null));
+		for (String bsn : eager.list(null))
+			assertEquals(eager.versions(bsn).toString(), lazy.versions(bsn).toString());
+
+		Requirement req = CapReqBuilder.createPackageRequirement("aQute.bnd.annotation", "[1.43,2)")
+				.buildSyntheticRequirement();
+		assertEquals(toString(eager.findProviders(Collections.singleton(req)).get(req)),
+				toString(lazy.findProviders(Collections.singleton(req)).get(req)));
+
+		// All resources have the same capabilities and requirements
+		req = new CapReqBuilder("osgi.identity").buildSyntheticRequirement();
+		Collection<Capability> eagerIdentities = eager.findProviders(Collections.singleton(req)).get(req);
+		Collection<Capability> lazyIdentities = lazy.findProviders(Collections.singleton(req)).get(req);
+		assertFalse(lazyIdentities.isEmpty());
+		assertEquals(toString(eagerIdentities), toString(lazyIdentities));
+
+		Iterator<Capability> e = eagerIdentities.iterator();
+		for (Capability identity : lazyIdentities) {
+			Resource eagerResource = e.next().getResource();
+			Resource lazyResource = identity.getResource();
+			assertEquals(toString(eagerResource.getRequirements(null)), toString(lazyResource.getRequirements(null)));
+			assertEquals(toString(eagerResource.getCapabilities(null)), toString(lazyResource.getCapabilities(null)));
+			for (Capability cap : lazyResource.getCapabilities(null)) {
+				assertSame(lazyResource, cap.getResource());
+				assertTrue(lazyResource.getCapabilities(cap.getNamespace()).contains(cap));
+			}
+		}
+	}
+
+	private static List<String> toString(Collection< ? > capReqs) {
+		List<String> result = new ArrayList<String>();
+		for (Object capReq : capReqs) {
+			Map<String,Object> attributes;
+			Map<String,String> directives;
+			if (capReq instanceof Capability) {
+				attributes = ((Capability) capReq).getAttributes();
+				directives = ((Capability) capReq).getDirectives();
+			} else {
+				attributes = ((Requirement) capReq).getAttributes();
+				directives = ((Requirement) capReq).getDirectives();
+			}
+			result.add(new TreeMap<String,Object>(attributes) + " " + new TreeMap<String,String>(directives));
+		}
+		return result;
+	}
+
 }
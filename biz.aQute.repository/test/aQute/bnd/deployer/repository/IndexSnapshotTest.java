@@ -0,0 +1,101 @@
+package aQute.bnd.deployer.repository;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+import junit.framework.*;
+
+import org.osgi.resource.*;
+
+import aQute.bnd.deployer.repository.api.*;
+import aQute.bnd.deployer.repository.providers.*;
+import aQute.lib.io.*;
+
+public class IndexSnapshotTest extends TestCase {
+
+	static class Collector implements IRepositoryIndexProcessor {
+		final List<Resource>	resources	= new ArrayList<Resource>();
+		final List<Referral>	referrals	= new ArrayList<Referral>();
+
+		public void processResource(Resource resource) {
+			resources.add(resource);
+		}
+
+		public void processReferral(URI parentUri, Referral referral, int maxDepth, int currentDepth) {
+			referrals.add(referral);
+		}
+	}
+
+	File	tmp;
+
+	@Override
+	protected void setUp() throws Exception {
+		tmp = IO.getFile("generated/tmp/snapshot");
+		IO.delete(tmp);
+		tmp.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		IO.delete(tmp);
+	}
+
+	public void testRoundTrip() throws Exception {
+		URI baseUri = new File("testdata").getAbsoluteFile().toURI();
+		Collector parsed = new Collector();
+		IndexSnapshot.Recorder recorder = new IndexSnapshot.Recorder(parsed);
+		new R5RepoContentProvider().parseIndex(new FileInputStream("testdata/big_index.xml"), baseUri, recorder,
+				new NullLogService());
+		assertTrue(parsed.resources.size() > 0);
+
+		File snapshot = new File(tmp, "index.snapshot");
+		assertTrue(recorder.write(snapshot, "ABCD", baseUri));
+
+		Collector replayed = new Collector();
+		assertTrue(IndexSnapshot.read(snapshot, "abcd", baseUri, replayed));
+		assertEquals(parsed.resources.size(), replayed.resources.size());
+		for (int i = 0; i < parsed.resources.size(); i++) {
+			assertCapReqs(parsed.resources.get(i).getCapabilities(null), replayed.resources.get(i).getCapabilities(null));
+			assertCapReqs(parsed.resources.get(i).getRequirements(null), replayed.resources.get(i).getRequirements(null));
+		}
+		assertEquals(parsed.referrals, replayed.referrals);
+
+		// Another index or another location must not use the snapshot
+		assertFalse(IndexSnapshot.read(snapshot, "ABCE", baseUri, new Collector()));
+		assertFalse(IndexSnapshot.read(snapshot, "ABCD", new URI("http://example.com/"), new Collector()));
+	}
+
+	public void testDamaged() throws Exception {
+		URI baseUri = new File("testdata").getAbsoluteFile().toURI();
+		IndexSnapshot.Recorder recorder = new IndexSnapshot.Recorder(new Collector());
+		new R5RepoContentProvider().parseIndex(new FileInputStream("testdata/minir5.xml"), baseUri, recorder,
+				new NullLogService());
+		File snapshot = new File(tmp, "index.snapshot");
+		assertTrue(recorder.write(snapshot, "ABCD", baseUri));
+
+		byte[] data = IO.read(snapshot);
+		IO.copy(new ByteArrayInputStream(data, 0, data.length - 3), snapshot);
+
+		Collector replayed = new Collector();
+		assertFalse(IndexSnapshot.read(snapshot, "ABCD", baseUri, replayed));
+		assertTrue(replayed.resources.isEmpty());
+	}
+
+	private static void assertCapReqs(List< ? extends Object> expected, List< ? extends Object> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Object e = expected.get(i);
+			Object a = actual.get(i);
+			if (e instanceof Capability) {
+				assertEquals(((Capability) e).getNamespace(), ((Capability) a).getNamespace());
+				assertEquals(((Capability) e).getAttributes(), ((Capability) a).getAttributes());
+				assertEquals(((Capability) e).getDirectives(), ((Capability) a).getDirectives());
+			} else {
+				assertEquals(((Requirement) e).getNamespace(), ((Requirement) a).getNamespace());
+				assertEquals(((Requirement) e).getAttributes(), ((Requirement) a).getAttributes());
+				assertEquals(((Requirement) e).getDirectives(), ((Requirement) a).getDirectives());
+			}
+		}
+	}
+}
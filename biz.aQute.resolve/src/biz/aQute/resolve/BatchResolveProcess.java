@@ -0,0 +1,202 @@
+package biz.aQute.resolve;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.osgi.resource.*;
+import org.osgi.service.repository.*;
+import org.osgi.service.resolver.*;
+
+import aQute.bnd.build.model.*;
+import aQute.bnd.deployer.repository.*;
+import aQute.bnd.osgi.Processor;
+import aQute.bnd.service.*;
+
+/**
+ * Resolves a set of bndrun files concurrently. The bndrun files are resolved
+ * against the plugins of one registry, usually the workspace, so the
+ * repositories and their indexes are shared by the resolutions. The
+ * resolutions of one call to {@link #resolve(Collection)} also share a
+ * {@link ProviderLookupCache}, the next call starts with a new cache so it sees
+ * the changes in the repositories. Each resolution has its own resolver,
+ * resolver log, callbacks and reporter.
+ */
+public class BatchResolveProcess {
+	private final Registry	registry;
+	private final int		threads;
+	private int				logLevel	= ResolverLogger.DEFAULT_LEVEL;
+	private boolean			instrument;
+
+	/**
+	 * The outcome of the resolution of one bndrun file
+	 */
+	public static class Result {
+		final File					bndrun;
+		final Processor				reporter	= new Processor();
+		ResolverLogger				logger;
+		ResolverInstrumentation		instrumentation;
+		Map<Resource,List<Wire>>	required;
+		ResolutionException			resolutionException;
+		long						time;
+
+		Result(File bndrun) {
+			this.bndrun = bndrun;
+		}
+
+		public File getBndrun() {
+			return bndrun;
+		}
+
+		/**
+		 * The required resources and the wires to them, like
+		 * {@link ResolveProcess#resolveRequired}, or null when the resolve
+		 * failed.
+		 */
+		public Map<Resource,List<Wire>> getRequired() {
+			return required;
+		}
+
+		public ResolutionException getResolutionException() {
+			return resolutionException;
+		}
+
+		public boolean isOk() {
+			return required != null && reporter.isOk();
+		}
+
+		/**
+		 * The errors and warnings of this resolution
+		 */
+		public Processor getReporter() {
+			return reporter;
+		}
+
+		public String getLog() {
+			return logger == null ? "" : logger.getLog();
+		}
+
+		/**
+		 * The statistics of the provider lookups or null when the resolution
+		 * was not instrumented
+		 */
+		public ResolverInstrumentation getInstrumentation() {
+			return instrumentation;
+		}
+
+		/**
+		 * The time the resolution took in milliseconds
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		public String toString() {
+			return bndrun.getName();
+		}
+	}
+
+	/**
+	 * @param registry
+	 *            the registry with the repositories, shared by all resolutions
+	 * @param threads
+	 *            the number of bndrun files resolved at the same time
+	 */
+	public BatchResolveProcess(Registry registry, int threads) {
+		this.registry = registry;
+		this.threads = Math.max(1, threads);
+	}
+
+	public void setLogLevel(int logLevel) {
+		this.logLevel = logLevel;
+	}
+
+	/**
+	 * Record statistics of the provider lookups of each resolution
+	 */
+	public void setInstrument(boolean instrument) {
+		this.instrument = instrument;
+	}
+
+	/**
+	 * Resolve the bndrun files. The results are in the order of the files.
+	 */
+	public List<Result> resolve(Collection<File> bndruns) throws InterruptedException {
+		// Load the plugins once before they are shared
+		registry.getPlugins(Repository.class);
+		final ProviderLookupCache cache = new ProviderLookupCache();
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, bndruns.size())));
+		try {
+			List<Future<Result>> futures = new ArrayList<Future<Result>>();
+			for (final File bndrun : bndruns) {
+				futures.add(executor.submit(new Callable<Result>() {
+					public Result call() {
+						return resolve(bndrun, cache);
+					}
+				}));
+			}
+
+			List<Result> results = new ArrayList<Result>();
+			for (Future<Result> future : futures) {
+				try {
+					results.add(future.get());
+				}
+				catch (ExecutionException e) {
+					throw new RuntimeException(e.getCause());
+				}
+			}
+			return results;
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Resolve one bndrun file
+	 */
+	public Result resolve(File bndrun) {
+		return resolve(bndrun, null);
+	}
+
+	private Result resolve(File bndrun, ProviderLookupCache cache) {
+		Result result = new Result(bndrun);
+		long start = System.nanoTime();
+		try {
+			BndEditModel model = new BndEditModel();
+			model.loadFrom(bndrun);
+			model.setBndResource(bndrun);
+
+			result.logger = new ResolverLogger(logLevel);
+			ResolveProcess process = new ResolveProcess();
+			process.setProviderLookupCache(cache);
+			if (instrument) {
+				result.instrumentation = new ResolverInstrumentation();
+				process.setInstrumentation(result.instrumentation);
+			}
+			result.required = process.resolveRequired(model, registry, new BndResolver(result.logger),
+					getCallbacks(bndrun), new ReporterLogService(result.reporter));
+		}
+		catch (ResolutionException e) {
+			result.resolutionException = e;
+			result.reporter.error("Resolving %s failed: %s", bndrun, e.getMessage());
+		}
+		catch (Exception e) {
+			result.reporter.exception(e, "Resolving %s failed: %s", bndrun, e);
+		}
+		finally {
+			result.time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		}
+		return result;
+	}
+
+	/**
+	 * Answer the callbacks for the resolution of a bndrun file. Each
+	 * resolution calls this method, callbacks that keep state should not be
+	 * shared between resolutions.
+	 */
+	protected Collection<ResolutionCallback> getCallbacks(File bndrun) {
+		return Collections.emptyList();
+	}
+}
@@ -51,6 +51,8 @@ public class GenericResolveContext extends ResolveContext {
 
 	protected final List<Requirement>				failed						= new ArrayList<Requirement>();
 	protected final Map<CacheKey,List<Capability>>	providerCache				= new HashMap<CacheKey,List<Capability>>();
+	protected ProviderLookupCache					providerLookupCache;
+	protected ResolverInstrumentation				instrumentation;
 	protected final Set<Resource>					optionalRoots				= new HashSet<Resource>();
 	protected final ConcurrentMap<Resource,Integer>	resourcePriorities			= new ConcurrentHashMap<Resource,Integer>();
 
@@ -129,6 +131,8 @@ public class GenericResolveContext extends ResolveContext {
 		List<Capability> cached = providerCache.get(cacheKey);
 		if (cached != null) {
 			result = new ArrayList<Capability>(cached);
+			if (instrumentation != null)
+				instrumentation.lookup(requirement, true, result.size());
 		} else {
 			// First stage: framework and self-capabilities. This should never
 			// be reordered by preferences or resolver
@@ -173,7 +177,10 @@ public class GenericResolveContext extends ResolveContext {
 				ArrayList<Capability> repoCapabilities = new ArrayList<Capability>();
 				for (Repository repo : repositories) {
 					repoCapabilities.clear();
+					long start = instrumentation != null ? System.nanoTime() : 0;
 					Map<Requirement,Collection<Capability>> providers = findProviders(repo, requirement);
+					if (instrumentation != null)
+						instrumentation.repositoryQuery(requirement, System.nanoTime() - start);
 					Collection<Capability> capabilities = providers.get(requirement);
 					if (capabilities != null && !capabilities.isEmpty()) {
 						repoCapabilities.ensureCapacity(capabilities.size());
@@ -193,7 +200,10 @@ public class GenericResolveContext extends ResolveContext {
 				ArrayList<Capability> secondStageList = new ArrayList<Capability>(secondStageResult);
 
 				// Post-processing second stage results
+				long start = instrumentation != null ? System.nanoTime() : 0;
 				postProcessProviders(requirement, firstStageResult, secondStageList);
+				if (instrumentation != null)
+					instrumentation.postProcess(requirement, System.nanoTime() - start);
 
 				// Concatenate both stages, eliminating duplicates between the
 				// two
@@ -201,6 +211,8 @@ public class GenericResolveContext extends ResolveContext {
 				result = new ArrayList<Capability>(firstStageResult);
 			}
 			providerCache.put(cacheKey, result);
+			if (instrumentation != null)
+				instrumentation.lookup(requirement, false, result.size());
 		}
 
 		return result;
@@ -219,7 +231,11 @@ public class GenericResolveContext extends ResolveContext {
 	 *         that are skipped.
 	 */
 	protected Map<Requirement,Collection<Capability>> findProviders(Repository repo, Requirement requirement) {
-		Map<Requirement,Collection<Capability>> map = repo.findProviders(Collections.singleton(requirement));
+		Map<Requirement,Collection<Capability>> map;
+		if (providerLookupCache != null)
+			map = providerLookupCache.findProviders(repo, requirement);
+		else
+			map = repo.findProviders(Collections.singleton(requirement));
 		if (map.isEmpty())
 			return map;
 
@@ -312,6 +328,25 @@ public class GenericResolveContext extends ResolveContext {
 		return repositories;
 	}
 
+	/**
+	 * Use a cache for the lookups in the repositories that is shared with
+	 * other resolve contexts.
+	 */
+	public void setProviderLookupCache(ProviderLookupCache providerLookupCache) {
+		this.providerLookupCache = providerLookupCache;
+	}
+
+	/**
+	 * Record the provider lookups of this context in the instrumentation
+	 */
+	public void setInstrumentation(ResolverInstrumentation instrumentation) {
+		this.instrumentation = instrumentation;
+	}
+
+	public ResolverInstrumentation getInstrumentation() {
+		return instrumentation;
+	}
+
 	public List<Requirement> getFailed() {
 		return failed;
 	}
@@ -363,11 +398,11 @@ public class GenericResolveContext extends ResolveContext {
 		return IDENTITY_INITIAL_RESOURCE.equals(id.getAttributes().get(IdentityNamespace.IDENTITY_NAMESPACE));
 	}
 
-	private static CacheKey getCacheKey(Requirement requirement) {
+	static CacheKey getCacheKey(Requirement requirement) {
 		return new CacheKey(requirement.getNamespace(), requirement.getDirectives(), requirement.getAttributes());
 	}
 
-	private static class CacheKey {
+	static class CacheKey {
 		final String				namespace;
 		final Map<String,String>	directives;
 		final Map<String,Object>	attributes;
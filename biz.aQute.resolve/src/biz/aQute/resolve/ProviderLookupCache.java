@@ -0,0 +1,62 @@
+package biz.aQute.resolve;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.osgi.resource.*;
+import org.osgi.service.repository.*;
+
+/**
+ * Remembers the capabilities that repositories provide for a requirement so
+ * that resolving several bndrun files against the same repositories does not
+ * ask the repositories again for the same requirement. The lookups are kept
+ * per repository, a requirement is identified by its namespace, directives and
+ * attributes, not by its resource.
+ * <p>
+ * The cache does not notice changes in the repositories. It is meant to live
+ * as long as a batch of resolves, see {@link BatchResolveProcess}, a new batch
+ * uses a new cache.
+ */
+public class ProviderLookupCache {
+	final Map<Repository,ConcurrentMap<GenericResolveContext.CacheKey,List<Capability>>>	lookups	= new WeakHashMap<Repository,ConcurrentMap<GenericResolveContext.CacheKey,List<Capability>>>();
+
+	/**
+	 * Find the providers of a requirement in a repository. The result has the
+	 * same form as {@link Repository#findProviders(Collection)} and can be
+	 * modified by the caller.
+	 */
+	public Map<Requirement,Collection<Capability>> findProviders(Repository repository, Requirement requirement) {
+		ConcurrentMap<GenericResolveContext.CacheKey,List<Capability>> cache;
+		synchronized (this) {
+			cache = lookups.get(repository);
+			if (cache == null) {
+				cache = new ConcurrentHashMap<GenericResolveContext.CacheKey,List<Capability>>();
+				lookups.put(repository, cache);
+			}
+		}
+
+		GenericResolveContext.CacheKey key = GenericResolveContext.getCacheKey(requirement);
+		List<Capability> capabilities = cache.get(key);
+		if (capabilities == null) {
+			Map<Requirement,Collection<Capability>> providers = repository.findProviders(Collections
+					.singleton(requirement));
+			Collection<Capability> found = providers.get(requirement);
+			if (found == null || found.isEmpty())
+				capabilities = Collections.emptyList();
+			else
+				capabilities = new ArrayList<Capability>(found);
+			cache.putIfAbsent(key, capabilities);
+		}
+
+		if (capabilities.isEmpty())
+			return Collections.emptyMap();
+
+		Map<Requirement,Collection<Capability>> result = new HashMap<Requirement,Collection<Capability>>();
+		result.put(requirement, new ArrayList<Capability>(capabilities));
+		return result;
+	}
+
+	public synchronized void clear() {
+		lookups.clear();
+	}
+}
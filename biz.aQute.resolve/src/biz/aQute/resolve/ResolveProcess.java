@@ -23,11 +23,37 @@ public class ResolveProcess {
 
 	private ResolutionException			resolutionException;
 
+	private ResolverInstrumentation		instrumentation;
+
+	private ProviderLookupCache			providerLookupCache;
+
+	/**
+	 * Record the provider lookups of the resolves in the instrumentation. A
+	 * summary is logged at the end of each resolve.
+	 */
+	public void setInstrumentation(ResolverInstrumentation instrumentation) {
+		this.instrumentation = instrumentation;
+	}
+
+	public ResolverInstrumentation getInstrumentation() {
+		return instrumentation;
+	}
+
+	/**
+	 * Share the repository lookups of the resolves with other resolve
+	 * processes that use the same cache.
+	 */
+	public void setProviderLookupCache(ProviderLookupCache providerLookupCache) {
+		this.providerLookupCache = providerLookupCache;
+	}
+
 	public Map<Resource,List<Wire>> resolveRequired(BndEditModel inputModel, Registry plugins, Resolver resolver,
 			Collection<ResolutionCallback> callbacks, LogService log) throws ResolutionException {
 		// 1. Resolve initial requirements
 		BndrunResolveContext rc = new BndrunResolveContext(inputModel, plugins, log);
 		rc.addCallbacks(callbacks);
+		rc.setInstrumentation(instrumentation);
+		rc.setProviderLookupCache(providerLookupCache);
 		try {
 			Map<Resource,List<Wire>> wirings = resolver.resolve(rc);
 
@@ -92,6 +118,8 @@ public class ResolveProcess {
 			};
 
 			rc2.addCallbacks(callbacks);
+			rc2.setInstrumentation(instrumentation);
+			rc2.setProviderLookupCache(providerLookupCache);
 			wirings = resolver.resolve(rc2);
 			if (initialRequirement != null) {
 				wirings.put(initialRequirement.getFirst(), initialRequirement.getSecond());
@@ -105,6 +133,14 @@ public class ResolveProcess {
 		catch (ResolutionException re) {
 			throw augment(new BndrunResolveContext(inputModel, plugins, log), re);
 		}
+		finally {
+			report(log);
+		}
+	}
+
+	private void report(LogService log) {
+		if (instrumentation != null)
+			log.log(LogService.LOG_INFO, "Resolver statistics\n" + instrumentation.report());
 	}
 
 	/*
@@ -252,8 +288,16 @@ public class ResolveProcess {
 		BndrunResolveContext rc = new BndrunResolveContext(inputModel, plugins, log);
 		rc.addCallbacks(callbacks);
 		rc.setOptionalRoots(requiredResources);
+		rc.setInstrumentation(instrumentation);
+		rc.setProviderLookupCache(providerLookupCache);
 
-		Map<Resource,List<Wire>> wirings = resolver.resolve(rc);
+		Map<Resource,List<Wire>> wirings;
+		try {
+			wirings = resolver.resolve(rc);
+		}
+		finally {
+			report(log);
+		}
 		removeFrameworkAndInputResources(wirings, rc);
 
 		// Remove requiredResources
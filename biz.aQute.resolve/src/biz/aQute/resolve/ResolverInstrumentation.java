@@ -0,0 +1,204 @@
+package biz.aQute.resolve;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.osgi.resource.*;
+
+/**
+ * Records where a resolve spends its time. The statistics are kept per
+ * requirement namespace and filter: the number of provider lookups, how many
+ * of them were answered from the cache of the resolve context, the number of
+ * candidates found, the time spent in repository queries and the time spent
+ * in post processing the candidates, i.e. in the resolver hooks, preferences
+ * and callbacks.
+ * <p>
+ * An instrumentation can be shared by resolve contexts that run concurrently.
+ */
+public class ResolverInstrumentation {
+	private final Map<String,Statistics>	statistics	= new HashMap<String,Statistics>();
+
+	/**
+	 * The statistics of one requirement namespace and filter
+	 */
+	public static class Statistics {
+		final String	namespace;
+		final String	filter;
+		int				calls;
+		int				hits;
+		int				repositoryQueries;
+		long			candidates;
+		int				maxCandidates;
+		long			repositoryTime;
+		long			postProcessTime;
+
+		Statistics(String namespace, String filter) {
+			this.namespace = namespace;
+			this.filter = filter;
+		}
+
+		public String getNamespace() {
+			return namespace;
+		}
+
+		public String getFilter() {
+			return filter;
+		}
+
+		/**
+		 * The number of provider lookups
+		 */
+		public int getCalls() {
+			return calls;
+		}
+
+		/**
+		 * The number of provider lookups answered from the cache of the
+		 * resolve context
+		 */
+		public int getHits() {
+			return hits;
+		}
+
+		public int getMisses() {
+			return calls - hits;
+		}
+
+		public int getRepositoryQueries() {
+			return repositoryQueries;
+		}
+
+		/**
+		 * The total number of candidates returned by the provider lookups
+		 */
+		public long getCandidates() {
+			return candidates;
+		}
+
+		public int getMaxCandidates() {
+			return maxCandidates;
+		}
+
+		/**
+		 * The time spent in repository queries in nanoseconds
+		 */
+		public long getRepositoryTime() {
+			return repositoryTime;
+		}
+
+		/**
+		 * The time spent in post processing the candidates in nanoseconds
+		 */
+		public long getPostProcessTime() {
+			return postProcessTime;
+		}
+
+		public String toString() {
+			return filter == null ? namespace : namespace + ": " + filter;
+		}
+	}
+
+	/**
+	 * Record a provider lookup
+	 *
+	 * @param hit
+	 *            the lookup was answered from the cache
+	 * @param candidates
+	 *            the number of candidates found
+	 */
+	public synchronized void lookup(Requirement requirement, boolean hit, int candidates) {
+		Statistics s = get(requirement);
+		s.calls++;
+		if (hit)
+			s.hits++;
+		s.candidates += candidates;
+		if (candidates > s.maxCandidates)
+			s.maxCandidates = candidates;
+	}
+
+	/**
+	 * Record a query of a repository that took the given nanoseconds
+	 */
+	public synchronized void repositoryQuery(Requirement requirement, long nanos) {
+		Statistics s = get(requirement);
+		s.repositoryQueries++;
+		s.repositoryTime += nanos;
+	}
+
+	/**
+	 * Record the post processing of candidates that took the given
+	 * nanoseconds
+	 */
+	public synchronized void postProcess(Requirement requirement, long nanos) {
+		get(requirement).postProcessTime += nanos;
+	}
+
+	private Statistics get(Requirement requirement) {
+		String namespace = requirement.getNamespace();
+		String filter = requirement.getDirectives().get(Namespace.REQUIREMENT_FILTER_DIRECTIVE);
+		String key = namespace + "\u0000" + filter;
+		Statistics s = statistics.get(key);
+		if (s == null) {
+			s = new Statistics(namespace, filter);
+			statistics.put(key, s);
+		}
+		return s;
+	}
+
+	/**
+	 * Answer the statistics, the most expensive requirements first
+	 */
+	public synchronized List<Statistics> getStatistics() {
+		List<Statistics> list = new ArrayList<Statistics>(statistics.values());
+		Collections.sort(list, new Comparator<Statistics>() {
+			public int compare(Statistics a, Statistics b) {
+				long ta = a.repositoryTime + a.postProcessTime;
+				long tb = b.repositoryTime + b.postProcessTime;
+				if (ta != tb)
+					return ta < tb ? 1 : -1;
+				return b.calls - a.calls;
+			}
+		});
+		return list;
+	}
+
+	public synchronized void clear() {
+		statistics.clear();
+	}
+
+	/**
+	 * Answer a table with the statistics, the most expensive requirements
+	 * first, followed by the totals.
+	 */
+	public String report() {
+		List<Statistics> list = getStatistics();
+
+		Formatter f = new Formatter();
+		f.format("%6s %6s %6s %7s %8s %6s %10s %10s  %s%n", "calls", "hits", "misses", "queries", "cands", "max",
+				"repo ms", "post ms", "requirement");
+
+		int calls = 0, hits = 0, queries = 0, max = 0;
+		long candidates = 0, repositoryTime = 0, postProcessTime = 0;
+		for (Statistics s : list) {
+			format(f, s.calls, s.hits, s.repositoryQueries, s.candidates, s.maxCandidates, s.repositoryTime,
+					s.postProcessTime, s.toString());
+			calls += s.calls;
+			hits += s.hits;
+			queries += s.repositoryQueries;
+			candidates += s.candidates;
+			max = Math.max(max, s.maxCandidates);
+			repositoryTime += s.repositoryTime;
+			postProcessTime += s.postProcessTime;
+		}
+		format(f, calls, hits, queries, candidates, max, repositoryTime, postProcessTime, "total of " + list.size()
+				+ " requirements");
+		return f.toString();
+	}
+
+	private static void format(Formatter f, int calls, int hits, int queries, long candidates, int max,
+			long repositoryTime, long postProcessTime, String requirement) {
+		f.format("%6d %6d %6d %7d %8d %6d %10.2f %10.2f  %s%n", calls, hits, calls - hits, queries, candidates, max,
+				repositoryTime / (double) TimeUnit.MILLISECONDS.toNanos(1), postProcessTime
+						/ (double) TimeUnit.MILLISECONDS.toNanos(1), requirement);
+	}
+}
@@ -0,0 +1,132 @@
+package biz.aQute.resolve;
+
+import static test.lib.Utils.*;
+
+import java.io.*;
+import java.util.*;
+
+import junit.framework.*;
+
+import org.osgi.resource.*;
+import org.osgi.service.repository.*;
+
+import aQute.bnd.build.*;
+import aQute.lib.io.*;
+
+public class BatchResolveProcessTest extends TestCase {
+	File		tmp	= new File("tmp");
+	Workspace	ws;
+
+	public void setUp() throws Exception {
+		IO.delete(tmp);
+		File cnf = new File(tmp, "cnf");
+		cnf.mkdirs();
+		IO.store("-plugin: aQute.bnd.deployer.repository.FixedIndexedRepo;name=Repo3;locations="
+				+ IO.getFile("testdata/repo3.index.xml").toURI() + "\n", new File(cnf, "build.bnd"));
+
+		File run = new File(tmp, "run");
+		run.mkdirs();
+		for (String name : new String[] {
+				"a", "b", "c"
+		}) {
+			IO.store("-runfw: org.apache.felix.framework\n-runee: JavaSE-1.7\n"
+					+ "-runrequires: osgi.identity;filter:='(osgi.identity=org.apache.felix.gogo.shell)'\n", new File(
+					run, name + ".bndrun"));
+		}
+		IO.store("-runfw: org.apache.felix.framework\n-runee: JavaSE-1.7\n"
+				+ "-runrequires: osgi.identity;filter:='(osgi.identity=no.such.bundle)'\n", new File(run,
+				"missing.bndrun"));
+
+		ws = new Workspace(tmp);
+	}
+
+	public void tearDown() throws Exception {
+		ws.close();
+		IO.delete(tmp);
+	}
+
+	/**
+	 * A repository that hides the resources with some identities
+	 */
+	static class HidingRepository implements Repository {
+		final Repository	repository;
+		final Set<String>	hidden	= new HashSet<String>();
+
+		HidingRepository(Repository repository) {
+			this.repository = repository;
+		}
+
+		public Map<Requirement,Collection<Capability>> findProviders(Collection< ? extends Requirement> requirements) {
+			Map<Requirement,Collection<Capability>> result = new HashMap<Requirement,Collection<Capability>>();
+			for (Map.Entry<Requirement,Collection<Capability>> entry : repository.findProviders(requirements)
+					.entrySet()) {
+				List<Capability> capabilities = new ArrayList<Capability>();
+				for (Capability capability : entry.getValue()) {
+					if (!hidden.contains(GenericResolveContext.getResourceIdentity(capability.getResource())))
+						capabilities.add(capability);
+				}
+				result.put(entry.getKey(), capabilities);
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * The next batch sees the changes in the repositories
+	 */
+	public void testRepositoryChange() throws Exception {
+		File dir = new File(tmp, "changing");
+		new File(dir, "cnf").mkdirs();
+		IO.store("", new File(dir, "cnf/build.bnd"));
+		Workspace changing = new Workspace(dir);
+		try {
+			HidingRepository repository = new HidingRepository(createRepo(IO.getFile("testdata/repo3.index.xml")));
+			repository.hidden.add("org.apache.felix.gogo.shell");
+			changing.addBasicPlugin(repository);
+
+			List<File> bndruns = Arrays.asList(IO.getFile(tmp, "run/a.bndrun"));
+			BatchResolveProcess process = new BatchResolveProcess(changing, 1);
+			assertFalse(process.resolve(bndruns).get(0).isOk());
+
+			repository.hidden.clear();
+			BatchResolveProcess.Result result = process.resolve(bndruns).get(0);
+			assertTrue(result.getReporter().getErrors().toString(), result.isOk());
+		}
+		finally {
+			changing.close();
+		}
+	}
+
+	public void testResolve() throws Exception {
+		List<File> bndruns = Arrays.asList(IO.getFile(tmp, "run/a.bndrun"), IO.getFile(tmp, "run/missing.bndrun"),
+				IO.getFile(tmp, "run/b.bndrun"), IO.getFile(tmp, "run/c.bndrun"));
+
+		List<BatchResolveProcess.Result> results = new BatchResolveProcess(ws, 4).resolve(bndruns);
+		assertEquals(4, results.size());
+
+		Set<String> first = null;
+		for (int i = 0; i < bndruns.size(); i++) {
+			BatchResolveProcess.Result result = results.get(i);
+			assertEquals(bndruns.get(i), result.getBndrun());
+			assertTrue(result.getTime() >= 0);
+
+			if (result.getBndrun().getName().equals("missing.bndrun")) {
+				assertFalse(result.isOk());
+				assertNull(result.getRequired());
+				assertNotNull(result.getResolutionException());
+				assertEquals(1, result.getReporter().getErrors().size());
+				continue;
+			}
+
+			assertTrue(result.getReporter().getErrors().toString(), result.isOk());
+			Set<String> resolved = new TreeSet<String>();
+			for (Resource resource : result.getRequired().keySet())
+				resolved.add(GenericResolveContext.getResourceIdentity(resource));
+			assertTrue(resolved.contains("org.apache.felix.gogo.shell"));
+			if (first == null)
+				first = resolved;
+			else
+				assertEquals(first, resolved);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package biz.aQute.resolve;
+
+import static test.lib.Utils.*;
+
+import java.util.*;
+
+import junit.framework.*;
+
+import org.osgi.resource.*;
+import org.osgi.service.log.*;
+import org.osgi.service.repository.*;
+import org.osgi.service.resolver.*;
+
+import test.lib.*;
+import aQute.bnd.build.model.*;
+import aQute.lib.io.*;
+
+public class ProviderLookupCacheTest extends TestCase {
+
+	private static final LogService	log	= new NullLogService();
+
+	static class CountingRepository implements Repository {
+		final Repository	repository;
+		int					lookups;
+
+		CountingRepository(Repository repository) {
+			this.repository = repository;
+		}
+
+		public Map<Requirement,Collection<Capability>> findProviders(Collection< ? extends Requirement> requirements) {
+			lookups += requirements.size();
+			return repository.findProviders(requirements);
+		}
+	}
+
+	public static void testSharedLookups() throws Exception {
+		Repository repo = createRepo(IO.getFile("testdata/repo3.index.xml"));
+		Resource framework = new GenericResolveContext(log).getFrameworkResource(Arrays.asList(repo),
+				"org.apache.felix.framework", null);
+		CountingRepository repository = new CountingRepository(repo);
+		ProviderLookupCache cache = new ProviderLookupCache();
+
+		Set<String> first = resolve(framework, repository, cache);
+		int lookups = repository.lookups;
+		assertTrue(lookups > 0);
+
+		Set<String> second = resolve(framework, repository, cache);
+		assertEquals(lookups, repository.lookups);
+		assertEquals(first, second);
+
+		// A cleared cache asks the repository again
+		cache.clear();
+		Set<String> third = resolve(framework, repository, cache);
+		assertEquals(2 * lookups, repository.lookups);
+		assertEquals(first, third);
+
+		// Without a cache every resolve asks the repository
+		resolve(framework, repository, null);
+		assertEquals(3 * lookups, repository.lookups);
+	}
+
+	public static void testResultCanBeModified() throws Exception {
+		Repository repository = createRepo(IO.getFile("testdata/repo3.index.xml"));
+		ProviderLookupCache cache = new ProviderLookupCache();
+		Requirement requirement = GenericResolveContext.createBundleRequirement("org.apache.felix.gogo.shell", "[0,1)");
+
+		Collection<Capability> capabilities = cache.findProviders(repository, requirement).get(requirement);
+		assertEquals(1, capabilities.size());
+		capabilities.clear();
+		assertEquals(1, cache.findProviders(repository, requirement).get(requirement).size());
+
+		Requirement missing = GenericResolveContext.createBundleRequirement("no.such.bundle", null);
+		assertTrue(cache.findProviders(repository, missing).isEmpty());
+	}
+
+	private static Set<String> resolve(Resource framework, Repository repository, ProviderLookupCache cache)
+			throws ResolutionException {
+		List<Requirement> systemRequirements = new ArrayList<Requirement>(framework.getRequirements(null));
+		List<Capability> systemCapabilities = new ArrayList<Capability>(framework.getCapabilities(null));
+		systemCapabilities.addAll(GenericResolveContext.getEECapabilities(EE.JavaSE_1_7));
+
+		GenericResolveContext context = new GenericResolveContext(systemCapabilities, systemRequirements, log);
+		context.setProviderLookupCache(cache);
+		context.addRepository(repository);
+		context.addInputRequirement(GenericResolveContext.createBundleRequirement("org.apache.felix.gogo.shell",
+				"[0,1)"));
+
+		Resolver resolver = new BndResolver(new ResolverLogger(4));
+		Set<String> identities = new TreeSet<String>();
+		for (Resource resource : resolver.resolve(context).keySet())
+			identities.add(GenericResolveContext.getResourceIdentity(resource));
+		return identities;
+	}
+}
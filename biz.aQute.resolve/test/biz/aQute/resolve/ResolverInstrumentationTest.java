@@ -0,0 +1,61 @@
+package biz.aQute.resolve;
+
+import static test.lib.Utils.*;
+
+import java.util.*;
+
+import junit.framework.*;
+
+import org.osgi.resource.*;
+import org.osgi.service.repository.*;
+
+import test.lib.*;
+import aQute.bnd.build.model.*;
+import aQute.lib.io.*;
+
+public class ResolverInstrumentationTest extends TestCase {
+
+	public static void testInstrumentation() throws Exception {
+		Repository repository = createRepo(IO.getFile("testdata/repo3.index.xml"));
+		GenericResolveContext context = new GenericResolveContext(new NullLogService());
+		Resource framework = context.getFrameworkResource(Arrays.asList(repository), "org.apache.felix.framework",
+				null);
+
+		List<Capability> systemCapabilities = new ArrayList<Capability>(framework.getCapabilities(null));
+		systemCapabilities.addAll(GenericResolveContext.getEECapabilities(EE.JavaSE_1_7));
+		context = new GenericResolveContext(systemCapabilities, new ArrayList<Requirement>(
+				framework.getRequirements(null)), new NullLogService());
+		context.addRepository(repository);
+		context.addInputRequirement(GenericResolveContext.createBundleRequirement("org.apache.felix.gogo.shell",
+				"[0,1)"));
+
+		ResolverInstrumentation instrumentation = new ResolverInstrumentation();
+		context.setInstrumentation(instrumentation);
+		new BndResolver(new ResolverLogger(4)).resolve(context);
+
+		List<ResolverInstrumentation.Statistics> statistics = instrumentation.getStatistics();
+		assertFalse(statistics.isEmpty());
+
+		ResolverInstrumentation.Statistics shell = null;
+		for (ResolverInstrumentation.Statistics s : statistics) {
+			assertEquals(s.getCalls(), s.getHits() + s.getMisses());
+			assertTrue(s.getMaxCandidates() * (long) s.getCalls() >= s.getCandidates());
+			if (s.getFilter() != null && s.getFilter().contains("(osgi.identity=org.apache.felix.gogo.shell)"))
+				shell = s;
+		}
+		assertNotNull(shell);
+		assertEquals("osgi.identity", shell.getNamespace());
+		assertEquals(1, shell.getMisses());
+		assertEquals(1, shell.getRepositoryQueries());
+		assertEquals(1, shell.getMaxCandidates());
+
+		// Asking again is answered from the cache of the context
+		context.findProviders(GenericResolveContext.createBundleRequirement("org.apache.felix.gogo.shell", "[0,1)"));
+		assertEquals(1, shell.getHits());
+		assertEquals(1, shell.getRepositoryQueries());
+
+		String report = instrumentation.report();
+		assertTrue(report.contains(shell.toString()));
+		assertTrue(report.contains("total of " + statistics.size() + " requirements"));
+	}
+}